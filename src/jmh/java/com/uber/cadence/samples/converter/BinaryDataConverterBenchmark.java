@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.JsonDataConverter;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link BinaryDataConverter} with JsonDataConverter on activity arguments made of
+ * strings and numbers, and on a small class with a registered codec. Run with:
+ *
+ * <pre>
+ *   ./gradlew jmh -PjmhInclude=BinaryDataConverterBenchmark
+ * </pre>
+ *
+ * Payload sizes of both converters are printed once per trial, the gc profiler configured in
+ * build.gradle reports the bytes allocated per round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BinaryDataConverterBenchmark {
+
+  @Param({"arguments", "struct"})
+  public String payload;
+
+  private Object[] values;
+  private Type[] types;
+  private DataConverter json;
+  private DataConverter binary;
+  private byte[] jsonData;
+  private byte[] binaryData;
+
+  @Setup
+  public void setUp() {
+    if ("arguments".equals(payload)) {
+      values = new Object[] {"Hello", "Cadence Java samples", 42, 1234567890123L};
+      types = new Type[] {String.class, String.class, int.class, long.class};
+    } else {
+      values = new Object[] {new Order(1234567890123L, "customer-42", 3, 19.99)};
+      types = new Type[] {Order.class};
+    }
+    json = JsonDataConverter.getInstance();
+    binary = BinaryDataConverter.newBuilder().register(Order.class, Order.CODEC).build();
+    jsonData = json.toData(values);
+    binaryData = binary.toData(values);
+    System.out.printf(
+        "%n%s payload bytes: json=%d binary=%d%n", payload, jsonData.length, binaryData.length);
+  }
+
+  @Benchmark
+  public byte[] jsonToData() {
+    return json.toData(values);
+  }
+
+  @Benchmark
+  public byte[] binaryToData() {
+    return binary.toData(values);
+  }
+
+  @Benchmark
+  public Object[] jsonFromData() {
+    return json.fromDataArray(jsonData, types);
+  }
+
+  @Benchmark
+  public Object[] binaryFromData() {
+    return binary.fromDataArray(binaryData, types);
+  }
+
+  public static class Order {
+    static final Codec<Order> CODEC =
+        new Codec<Order>() {
+          @Override
+          public void encode(Order value, BinaryWriter out) {
+            out.writeLong(value.id);
+            out.writeString(value.customer);
+            out.writeInt(value.quantity);
+            out.writeDouble(value.price);
+          }
+
+          @Override
+          public Order decode(BinaryReader in) {
+            return new Order(in.readLong(), in.readString(), in.readInt(), in.readDouble());
+          }
+        };
+
+    public long id;
+    public String customer;
+    public int quantity;
+    public double price;
+
+    public Order() {}
+
+    Order(long id, String customer, int quantity, double price) {
+      this.id = id;
+      this.customer = customer;
+      this.quantity = quantity;
+      this.price = price;
+    }
+  }
+}
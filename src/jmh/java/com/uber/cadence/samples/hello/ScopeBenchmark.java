@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.hello;
+
+import com.uber.m3.tally.Counter;
+import com.uber.m3.tally.NullStatsReporter;
+import com.uber.m3.tally.RootScopeBuilder;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.tally.ScopeCloseException;
+import com.uber.m3.util.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares metric lookups on {@link PrometheusScope} with and without the {@link CachingScope} in
+ * front of it, using the names and tags a worker looks up for every task. Run with:
+ *
+ * <pre>
+ *   ./gradlew jmh -PjmhInclude=ScopeBenchmark
+ * </pre>
+ *
+ * The gc profiler configured in build.gradle reports gc.alloc.rate.norm, the bytes allocated per
+ * lookup, which should be close to zero for the cached scope.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScopeBenchmark {
+
+  private static final String COUNTER = "cadence-decision-poll-total";
+
+  private Scope root;
+  private Scope prometheusScope;
+  private Scope cachingScope;
+  private Map<String, String> tags;
+
+  @Setup
+  public void setUp() {
+    root =
+        new RootScopeBuilder()
+            .separator("_")
+            .reporter(new NullStatsReporter())
+            .reportEvery(Duration.ofSeconds(1));
+    prometheusScope = new PrometheusScope(root);
+    cachingScope = new CachingScope(new PrometheusScope(root));
+    tags = new HashMap<>();
+    tags.put("Domain", "sample");
+    tags.put("TaskList", "HelloActivity");
+    tags.put("WorkflowType", "GreetingWorkflow::getGreeting");
+  }
+
+  @TearDown
+  public void tearDown() throws ScopeCloseException {
+    root.close();
+  }
+
+  @Benchmark
+  public Counter counter() {
+    return prometheusScope.counter(COUNTER);
+  }
+
+  @Benchmark
+  public Counter cachedCounter() {
+    return cachingScope.counter(COUNTER);
+  }
+
+  @Benchmark
+  public Counter taggedCounter() {
+    return prometheusScope.tagged(tags).counter(COUNTER);
+  }
+
+  @Benchmark
+  public Counter cachedTaggedCounter() {
+    return cachingScope.tagged(tags).counter(COUNTER);
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.hello;
+
+import com.uber.cadence.activity.ActivityOptions;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowClientOptions;
+import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.samples.common.WorkerTelemetry;
+import com.uber.cadence.testing.TestEnvironmentOptions;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
+import com.uber.cadence.worker.Worker;
+import com.uber.cadence.worker.WorkerFactoryOptions;
+import com.uber.cadence.workflow.SignalMethod;
+import com.uber.cadence.workflow.Workflow;
+import com.uber.cadence.workflow.WorkflowMethod;
+import com.uber.m3.tally.NoopScope;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Sweeps the sticky cache size and workflow thread count of a worker that hosts many long lived
+ * workflows, to pick the values HelloWorkerSetup passes to WorkerFactoryOptions. Half of the
+ * workflows behave like HelloPeriodic: one activity and one timer per iteration. The other half
+ * behave like SignalWorkflowImpl: they wait for signals and run an activity for each. Everything
+ * runs in process on TestWorkflowEnvironment. Run with:
+ *
+ * <pre>
+ *   ./gradlew jmh -PjmhInclude=StickyCacheBenchmark
+ * </pre>
+ *
+ * Every operation is one round in which each workflow wakes up once, so the score divided by the
+ * number of workflows is the worker time per wake up. A workflow that is still in the sticky cache
+ * only applies the new events; one that was evicted replays its whole history first. Each trial
+ * prints one point of the sizing curve:
+ *
+ * <ul>
+ *   <li>full replays: share of decision tasks that missed the sticky cache
+ *   <li>decision schedule-to-start p90: how long decision tasks waited for a workflow thread
+ *   <li>retained heap after GC and heap per cached workflow. The test service keeps all histories
+ *       in the same heap, so the difference between points with different cache sizes is the
+ *       more accurate cost of a cached workflow.
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StickyCacheBenchmark {
+
+  static final String TASK_LIST = "StickyCacheBenchmark";
+  private static final Duration PERIOD = Duration.ofMinutes(1);
+  /** Iterations per run, long enough for replays of an evicted workflow to be expensive. */
+  private static final int ITERATIONS_PER_RUN = 50;
+
+  private static final int INBOX_HISTORY_LENGTH = 1000;
+
+  /** Released once per activity, a round waits for one per workflow. */
+  private static final Semaphore COMPLETED_ACTIVITIES = new Semaphore(0);
+
+  @Param({"10", "100", "1000"})
+  public int stickyCacheSize;
+
+  @Param({"200", "1000"})
+  public int maxWorkflowThreads;
+
+  @Param({"400"})
+  public int workflows;
+
+  public interface PeriodicWorkflow {
+    @WorkflowMethod
+    void run(int iteration);
+  }
+
+  public interface InboxWorkflow {
+    @WorkflowMethod
+    void run();
+
+    @SignalMethod
+    void deliver(String item);
+  }
+
+  public interface BenchmarkActivities {
+    void process(String item);
+  }
+
+  /** Like HelloPeriodic.GreetingWorkflowImpl. */
+  public static class PeriodicWorkflowImpl implements PeriodicWorkflow {
+    private final BenchmarkActivities activities =
+        Workflow.newActivityStub(BenchmarkActivities.class, activityOptions());
+
+    @Override
+    public void run(int iteration) {
+      for (int i = 0; i < ITERATIONS_PER_RUN; i++) {
+        activities.process("iteration " + (iteration + i));
+        Workflow.sleep(PERIOD);
+      }
+      Workflow.newContinueAsNewStub(PeriodicWorkflow.class).run(iteration + ITERATIONS_PER_RUN);
+    }
+  }
+
+  /** Like SignalWorkflowImpl. */
+  public static class InboxWorkflowImpl implements InboxWorkflow {
+    private final BenchmarkActivities activities =
+        Workflow.newActivityStub(BenchmarkActivities.class, activityOptions());
+    private final Queue<String> inbox = new ArrayDeque<>();
+
+    @Override
+    public void run() {
+      while (Workflow.getWorkflowInfo().getHistoryLength() < INBOX_HISTORY_LENGTH) {
+        Workflow.await(() -> !inbox.isEmpty());
+        while (!inbox.isEmpty()) {
+          activities.process(inbox.poll());
+        }
+      }
+      Workflow.newContinueAsNewStub(InboxWorkflow.class).run();
+    }
+
+    @Override
+    public void deliver(String item) {
+      inbox.add(item);
+    }
+  }
+
+  static class BenchmarkActivitiesImpl implements BenchmarkActivities {
+    @Override
+    public void process(String item) {
+      COMPLETED_ACTIVITIES.release();
+    }
+  }
+
+  private TestWorkflowEnvironment testEnv;
+  private WorkerTelemetry telemetry;
+  private List<InboxWorkflow> inboxes;
+  private WorkerTelemetry.Snapshot lastSnapshot;
+  private long baselineHeap;
+
+  @Setup(Level.Trial)
+  public void setUp() throws InterruptedException {
+    COMPLETED_ACTIVITIES.drainPermits();
+    telemetry = new WorkerTelemetry(NoopScope.getInstance(), maxWorkflowThreads, 100);
+    testEnv =
+        TestWorkflowEnvironment.newInstance(
+            new TestEnvironmentOptions.Builder()
+                .setWorkflowClientOptions(
+                    WorkflowClientOptions.newBuilder().setMetricsScope(telemetry).build())
+                .setWorkerFactoryOptions(
+                    WorkerFactoryOptions.newBuilder()
+                        .setMaxWorkflowThreadCount(maxWorkflowThreads)
+                        .setStickyCacheSize(stickyCacheSize)
+                        .build())
+                .build());
+    Worker worker = testEnv.newWorker(TASK_LIST);
+    worker.registerWorkflowImplementationTypes(PeriodicWorkflowImpl.class, InboxWorkflowImpl.class);
+    worker.registerActivitiesImplementations(new BenchmarkActivitiesImpl());
+    testEnv.start();
+    baselineHeap = usedHeapAfterGc();
+
+    WorkflowClient workflowClient = testEnv.newWorkflowClient();
+    int periodic = workflows / 2;
+    for (int i = 0; i < periodic; i++) {
+      PeriodicWorkflow workflow =
+          workflowClient.newWorkflowStub(PeriodicWorkflow.class, workflowOptions("periodic-" + i));
+      WorkflowClient.start(workflow::run, 0);
+    }
+    inboxes = new ArrayList<>();
+    for (int i = periodic; i < workflows; i++) {
+      InboxWorkflow workflow =
+          workflowClient.newWorkflowStub(InboxWorkflow.class, workflowOptions("inbox-" + i));
+      WorkflowClient.start(workflow::run);
+      inboxes.add(workflow);
+    }
+    // Periodic workflows run their first activity right away.
+    COMPLETED_ACTIVITIES.acquire(periodic);
+  }
+
+  @TearDown(Level.Iteration)
+  public void takeSnapshot() {
+    // The last measurement iteration is the steady state that the sizing curve reports.
+    lastSnapshot = telemetry.snapshot();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    long retainedHeap = usedHeapAfterGc() - baselineHeap;
+    // Every cached workflow holds a thread, so the thread pool bounds the cache too.
+    int cached = Math.min(workflows, Math.min(stickyCacheSize, maxWorkflowThreads));
+    System.out.printf(
+        "%nsizing: stickyCacheSize=%d maxWorkflowThreads=%d workflows=%d fullReplays=%.1f%%"
+            + " decisionScheduleToStartP90=%.1fms retainedHeap=%.1fMB"
+            + " heapPerCachedWorkflow=%.1fKB%n",
+        stickyCacheSize,
+        maxWorkflowThreads,
+        workflows,
+        100 * (1 - lastSnapshot.getStickyCacheHitRatio()),
+        lastSnapshot.getMaxScheduleToStartP90Nanos("decision") / 1e6,
+        retainedHeap / 1e6,
+        retainedHeap / 1e3 / cached);
+    testEnv.close();
+  }
+
+  /** Wakes up every workflow once and waits until all of them ran their activity. */
+  @Benchmark
+  public void round() throws InterruptedException {
+    for (InboxWorkflow inbox : inboxes) {
+      inbox.deliver("item");
+    }
+    testEnv.sleep(PERIOD);
+    COMPLETED_ACTIVITIES.acquire(workflows);
+  }
+
+  private static WorkflowOptions workflowOptions(String workflowId) {
+    return new WorkflowOptions.Builder()
+        .setWorkflowId(workflowId)
+        .setTaskList(TASK_LIST)
+        .setExecutionStartToCloseTimeout(Duration.ofDays(365))
+        .build();
+  }
+
+  private static ActivityOptions activityOptions() {
+    return new ActivityOptions.Builder()
+        .setTaskList(TASK_LIST)
+        .setScheduleToCloseTimeout(Duration.ofMinutes(1))
+        .build();
+  }
+
+  private static long usedHeapAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.cadence;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapterFactory;
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.JsonDataConverter;
+import com.uber.cadence.samples.spring.models.SampleMessage;
+import java.lang.reflect.Type;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the cached, streaming {@link CadenceDataConverter} with the previous implementation,
+ * which built a new converter on every call and used tree based adapters. Run with:
+ *
+ * <pre>
+ *   ./gradlew jmh -PjmhInclude=CadenceDataConverterBenchmark
+ * </pre>
+ *
+ * The gc profiler configured in build.gradle reports gc.alloc.rate.norm, the bytes allocated per
+ * round trip, next to the ns/op score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CadenceDataConverterBenchmark {
+
+  @Param({"ZonedDateTime", "SampleMessage"})
+  public String payload;
+
+  private Object value;
+  private Class<?> valueClass;
+  private DataConverter treeConverter;
+  private DataConverter streamingConverter;
+
+  @Setup
+  public void setUp() {
+    if ("ZonedDateTime".equals(payload)) {
+      value = ZonedDateTime.parse("2021-06-01T10:15:30+02:00[Europe/Paris]");
+      valueClass = ZonedDateTime.class;
+    } else {
+      value = new SampleMessage("Hello from the Cadence Java samples");
+      valueClass = SampleMessage.class;
+    }
+    treeConverter = newTreeConverter();
+    streamingConverter = CadenceDataConverter.cadenceJsonDataConverter();
+  }
+
+  /** The old behaviour: a ServiceLoader scan and a new Gson for every converter lookup. */
+  @Benchmark
+  public Object converterPerCall() {
+    return roundTrip(newTreeConverter());
+  }
+
+  /** Tree based adapters on a converter that is built only once. */
+  @Benchmark
+  public Object cachedTreeConverter() {
+    return roundTrip(treeConverter);
+  }
+
+  /** The singleton converter with streaming adapters. */
+  @Benchmark
+  public Object cachedStreamingConverter() {
+    return roundTrip(streamingConverter);
+  }
+
+  private Object roundTrip(DataConverter converter) {
+    byte[] data = converter.toData(value);
+    return converter.fromData(data, valueClass, valueClass);
+  }
+
+  private static JsonDataConverter newTreeConverter() {
+    return new JsonDataConverter(
+        gsonBuilder -> {
+          for (TypeAdapterFactory factory : ServiceLoader.load(TypeAdapterFactory.class)) {
+            gsonBuilder.registerTypeAdapterFactory(factory);
+          }
+          return gsonBuilder.registerTypeAdapter(ZonedDateTime.class, new TreeZonedDateTime());
+        });
+  }
+
+  /** Copy of the JsonSerializer based ZonedDatetimeConverter this module used to ship. */
+  private static class TreeZonedDateTime
+      implements JsonSerializer<ZonedDateTime>, JsonDeserializer<ZonedDateTime> {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+
+    @Override
+    public JsonElement serialize(ZonedDateTime src, Type type, JsonSerializationContext context) {
+      return new JsonPrimitive(FORMATTER.format(src));
+    }
+
+    @Override
+    public ZonedDateTime deserialize(
+        JsonElement json, Type type, JsonDeserializationContext context) {
+      return FORMATTER.parse(json.getAsString(), ZonedDateTime::from);
+    }
+  }
+}
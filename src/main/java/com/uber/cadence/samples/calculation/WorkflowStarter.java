@@ -17,24 +17,17 @@
 
 package com.uber.cadence.samples.calculation;
 
-import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
-
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.WorkflowIdReusePolicy;
 import com.uber.cadence.client.WorkflowClient;
-import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.client.WorkflowOptions;
-import com.uber.cadence.serviceclient.ClientOptions;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
 
 public class WorkflowStarter {
 
   @SuppressWarnings("CatchAndPrintStackTrace")
   public static void main(String[] args) {
-    final WorkflowClient workflowClient =
-        WorkflowClient.newInstance(
-            new WorkflowServiceTChannel(ClientOptions.defaultInstance()),
-            WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    final WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
 
     WorkflowOptions workflowOptions =
         new WorkflowOptions.Builder()
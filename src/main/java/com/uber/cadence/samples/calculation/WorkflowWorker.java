@@ -17,12 +17,8 @@
 
 package com.uber.cadence.samples.calculation;
 
-import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
-
 import com.uber.cadence.client.WorkflowClient;
-import com.uber.cadence.client.WorkflowClientOptions;
-import com.uber.cadence.serviceclient.ClientOptions;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 
@@ -33,10 +29,7 @@ public class WorkflowWorker {
   @SuppressWarnings("CatchAndPrintStackTrace")
   public static void main(String[] args) {
     // Get a new client
-    WorkflowClient workflowClient =
-        WorkflowClient.newInstance(
-            new WorkflowServiceTChannel(ClientOptions.defaultInstance()),
-            WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
 
     // Get worker to poll the common task list.
     WorkerFactory factory = WorkerFactory.newInstance(workflowClient);
@@ -21,13 +21,143 @@ import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
 import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowClientOptions;
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
+import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
 import com.uber.cadence.serviceclient.ClientOptions;
+import com.uber.cadence.serviceclient.IWorkflowService;
 import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Process wide registry of Cadence service connections. Every endpoint and transport pair gets one
+ * pool of connections that is created on first use, shared by all callers and closed on JVM
+ * shutdown.
+ *
+ * <p>Each returned client is bound to a single connection of the pool, and successive calls to
+ * getWorkflowClient hand out the connections round robin. A single client therefore sends all of
+ * its calls over one connection; to spread load over the pool, take a client per thread or per
+ * unit of work instead of sharing one.
+ *
+ * <p>Clients use the default JsonDataConverter unless another converter is passed, for example
+ * the one of the Spring Boot samples, whose workers decode with it.
+ *
+ * <p>The pool size defaults to 1 and can be changed with -Dcadence.client.poolSize=N.
+ */
 public class CadenceUtil {
+
+  public enum Transport {
+    TCHANNEL,
+    GRPC
+  }
+
+  static final int POOL_SIZE = Math.max(1, Integer.getInteger("cadence.client.poolSize", 1));
+
+  private static final ConcurrentMap<String, ServicePool> POOLS = new ConcurrentHashMap<>();
+
+  static {
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(CadenceUtil::shutdown, "cadence-client-shutdown"));
+  }
+
+  /** @return client for the samples domain on the default local TChannel endpoint */
   public static WorkflowClient getWorkflowClient() {
+    ClientOptions defaults = ClientOptions.defaultInstance();
+    return getWorkflowClient(defaults.getHost(), defaults.getPort(), Transport.TCHANNEL);
+  }
+
+  public static WorkflowClient getWorkflowClient(String host, int port, Transport transport) {
+    return getPool(host, port, transport).next().client;
+  }
+
+  /**
+   * @return client for the samples domain on the default local TChannel endpoint that encodes
+   *     with the given converter
+   */
+  public static WorkflowClient getWorkflowClient(DataConverter dataConverter) {
+    ClientOptions defaults = ClientOptions.defaultInstance();
+    IWorkflowService service =
+        getPool(defaults.getHost(), defaults.getPort(), Transport.TCHANNEL).next().service;
     return WorkflowClient.newInstance(
-        new WorkflowServiceTChannel(ClientOptions.defaultInstance()),
-        WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+        service,
+        WorkflowClientOptions.newBuilder()
+            .setDomain(DOMAIN)
+            .setDataConverter(dataConverter)
+            .build());
+  }
+
+  /** @return service stub of the default local TChannel endpoint for raw API calls */
+  public static IWorkflowService getService() {
+    return getWorkflowClient().getService();
+  }
+
+  /** Closes all pooled connections. Later calls open new ones. */
+  public static void shutdown() {
+    for (String key : POOLS.keySet()) {
+      ServicePool pool = POOLS.remove(key);
+      if (pool != null) {
+        pool.close();
+      }
+    }
+  }
+
+  private static ServicePool getPool(String host, int port, Transport transport) {
+    String key = transport + "://" + host + ":" + port;
+    ServicePool pool = POOLS.get(key);
+    if (pool == null) {
+      pool = POOLS.computeIfAbsent(key, k -> new ServicePool(host, port, transport, POOL_SIZE));
+    }
+    return pool;
+  }
+
+  private static IWorkflowService newService(String host, int port, Transport transport) {
+    ClientOptions options = ClientOptions.newBuilder().setHost(host).setPort(port).build();
+    switch (transport) {
+      case GRPC:
+        return new Thrift2ProtoAdapter(IGrpcServiceStubs.newInstance(options));
+      case TCHANNEL:
+      default:
+        return new WorkflowServiceTChannel(options);
+    }
+  }
+
+  private static class ServicePool {
+    private final List<PooledClient> clients;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ServicePool(String host, int port, Transport transport, int size) {
+      clients = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        IWorkflowService service = newService(host, port, transport);
+        WorkflowClient client =
+            WorkflowClient.newInstance(
+                service, WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+        clients.add(new PooledClient(service, client));
+      }
+    }
+
+    PooledClient next() {
+      return clients.get(Math.floorMod(next.getAndIncrement(), clients.size()));
+    }
+
+    void close() {
+      for (PooledClient pooled : clients) {
+        pooled.service.close();
+      }
+    }
+  }
+
+  private static class PooledClient {
+    private final IWorkflowService service;
+    private final WorkflowClient client;
+
+    PooledClient(IWorkflowService service, WorkflowClient client) {
+      this.service = service;
+      this.client = client;
+    }
   }
 }
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.clientsamples;
+
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.samples.spring.cadence.CadenceDataConverter;
+import com.uber.cadence.samples.spring.common.Constant;
+import com.uber.cadence.samples.spring.models.FanOutRequest;
+import com.uber.cadence.samples.spring.workflows.FanOutWorkflow;
+import java.time.Duration;
+
+// This binary processes one million items with a tree of FanOutWorkflow children. With at most 100
+// children per workflow and 1000 items per leaf it builds a tree of depth two, and no history grows
+// beyond a few hundred events.
+public class FanOutSample {
+  public static void main(String[] args) {
+    WorkflowClient workflowClient =
+        CadenceUtil.getWorkflowClient(CadenceDataConverter.cadenceJsonDataConverter());
+    WorkflowOptions workflowOptions =
+        new WorkflowOptions.Builder()
+            .setExecutionStartToCloseTimeout(Duration.ofHours(1))
+            .setTaskList(Constant.TASK_LIST)
+            .build();
+
+    FanOutWorkflow fanOutWorkflow =
+        workflowClient.newWorkflowStub(FanOutWorkflow.class, workflowOptions);
+    long processed = fanOutWorkflow.process(new FanOutRequest(0, 1_000_000, 100, 10, 1000));
+    System.out.printf("Processed %d items%n", processed);
+    System.exit(0);
+  }
+}
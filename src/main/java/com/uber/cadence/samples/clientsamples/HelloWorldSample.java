@@ -20,6 +20,7 @@ package com.uber.cadence.samples.clientsamples;
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.samples.spring.cadence.CadenceDataConverter;
 import com.uber.cadence.samples.spring.common.Constant;
 import com.uber.cadence.samples.spring.models.SampleMessage;
 import com.uber.cadence.samples.spring.workflows.HelloWorldWorkflow;
@@ -27,7 +28,8 @@ import java.time.Duration;
 
 public class HelloWorldSample {
   public static void main(String[] args) {
-    WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
+    WorkflowClient workflowClient =
+        CadenceUtil.getWorkflowClient(CadenceDataConverter.cadenceJsonDataConverter());
     WorkflowOptions workflowOptions =
         new WorkflowOptions.Builder()
             .setExecutionStartToCloseTimeout(Duration.ofSeconds(30))
@@ -17,18 +17,36 @@
 
 package com.uber.cadence.samples.clientsamples;
 
+import com.google.common.util.concurrent.RateLimiter;
+import com.uber.cadence.InternalServiceError;
+import com.uber.cadence.ServiceBusyError;
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowNotFoundException;
 import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.samples.common.LatencyRecorder;
+import com.uber.cadence.samples.spring.cadence.CadenceDataConverter;
 import com.uber.cadence.samples.spring.common.Constant;
 import com.uber.cadence.samples.spring.models.SampleMessage;
 import com.uber.cadence.samples.spring.workflows.SignalWorkflow;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.thrift.transport.TTransportException;
 
 // This class is a placeholder. Run the two binaries below to play with the
 // signal workflow sample.
@@ -38,7 +56,8 @@ public class SignalSample {}
 // for future usage. It must be run first.
 class SignalWorkflowStarter {
   public static void main(String[] args) throws IOException {
-    WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
+    WorkflowClient workflowClient =
+        CadenceUtil.getWorkflowClient(CadenceDataConverter.cadenceJsonDataConverter());
     WorkflowOptions workflowOptions =
         new WorkflowOptions.Builder()
             .setExecutionStartToCloseTimeout(Duration.ofSeconds(60))
@@ -75,7 +94,8 @@ class SignalSender {
     scanner.close();
 
     // create a new stub using the retrieved workflowID
-    WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
+    WorkflowClient workflowClient =
+        CadenceUtil.getWorkflowClient(CadenceDataConverter.cadenceJsonDataConverter());
     // To send a signal, only workflowID is needed.
     SignalWorkflow signalWorkflow =
         workflowClient.newWorkflowStub(SignalWorkflow.class, workflowID);
@@ -86,3 +106,139 @@ class SignalSender {
     // signalWorkflow.cancel();
   }
 }
+
+// This binary sends the greeting signal to every workflow ID listed in a file, one ID per line.
+// IDs are streamed from the file, so its size does not matter. Signals are sent concurrently under
+// a global rate limit and retried with exponential backoff on transient errors.
+//
+// Usage: BulkSignalSender <workflowIdFile> [<signalsPerSecond>] [<concurrency>]
+class BulkSignalSender {
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long INITIAL_BACKOFF_MILLIS = 100;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1 || args.length > 3) {
+      System.err.println(
+          "Usage: java "
+              + BulkSignalSender.class.getName()
+              + " <workflowIdFile> [<signalsPerSecond>] [<concurrency>]");
+      System.exit(1);
+    }
+    double signalsPerSecond = args.length > 1 ? Double.parseDouble(args[1]) : 500;
+    int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+    WorkflowClient workflowClient =
+        CadenceUtil.getWorkflowClient(CadenceDataConverter.cadenceJsonDataConverter());
+    // Token bucket shared by all senders. Retries take a token as well, so a struggling cluster
+    // is never hit harder than the configured rate.
+    RateLimiter rateLimiter = RateLimiter.create(signalsPerSecond);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    // Bounds how far the file reader can run ahead of the senders.
+    Semaphore pending = new Semaphore(concurrency * 2);
+    // Duration of each signal RPC, without the wait for a token or a retry.
+    LatencyRecorder latencies = new LatencyRecorder();
+    // Time each workflow spent waiting for tokens and retry backoff.
+    LatencyRecorder waits = new LatencyRecorder();
+    AtomicLong signalled = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong retries = new AtomicLong();
+
+    long startTime = System.nanoTime();
+    try (BufferedReader reader =
+        Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String workflowID = line.trim();
+        if (workflowID.isEmpty()) {
+          continue;
+        }
+        pending.acquire();
+        executor.execute(
+            () -> {
+              try {
+                if (signal(workflowClient, workflowID, rateLimiter, latencies, waits, retries)) {
+                  signalled.incrementAndGet();
+                } else {
+                  failed.incrementAndGet();
+                }
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.incrementAndGet();
+              } finally {
+                pending.release();
+              }
+            });
+      }
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+
+    System.out.printf(
+        "Signalled %d workflows in %.1fs (%.1f signals/s), %d failed, %d retries%n",
+        signalled.get(), seconds, signalled.get() / seconds, failed.get(), retries.get());
+    System.out.println("Signal RPC latency per attempt: " + latencies.summary());
+    System.out.println("Rate limit and backoff wait per workflow: " + waits.summary());
+    System.exit(failed.get() == 0 ? 0 : 1);
+  }
+
+  /**
+   * Signals one workflow, retrying transient failures.
+   *
+   * @param latencies receives the duration of every signal RPC
+   * @param waits receives the total time spent waiting for tokens and backoff
+   */
+  private static boolean signal(
+      WorkflowClient workflowClient,
+      String workflowID,
+      RateLimiter rateLimiter,
+      LatencyRecorder latencies,
+      LatencyRecorder waits,
+      AtomicLong retries)
+      throws InterruptedException {
+    // To send a signal, only workflowID is needed.
+    SignalWorkflow signalWorkflow =
+        workflowClient.newWorkflowStub(SignalWorkflow.class, workflowID);
+    long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    long waitNanos = 0;
+    for (int attempt = 1; ; attempt++) {
+      long waitStart = System.nanoTime();
+      rateLimiter.acquire();
+      long attemptStart = System.nanoTime();
+      waitNanos += attemptStart - waitStart;
+      try {
+        signalWorkflow.waitForGreeting("Hello");
+        latencies.record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS);
+        waits.record(waitNanos, TimeUnit.NANOSECONDS);
+        return true;
+      } catch (WorkflowNotFoundException e) {
+        System.err.println("Workflow " + workflowID + " is not running, skipping it");
+        return false;
+      } catch (RuntimeException e) {
+        latencies.record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS);
+        if (attempt == MAX_ATTEMPTS || !isTransient(e)) {
+          System.err.println("Failed to signal " + workflowID + ": " + e);
+          return false;
+        }
+      }
+      retries.incrementAndGet();
+      // Full jitter keeps retries of many senders from arriving in waves.
+      long backoffStart = System.nanoTime();
+      Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis) + 1);
+      waitNanos += System.nanoTime() - backoffStart;
+      backoffMillis *= 2;
+    }
+  }
+
+  private static boolean isTransient(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ServiceBusyError
+          || cause instanceof InternalServiceError
+          || cause instanceof TTransportException
+          || cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.uber.cadence.QueryConsistencyLevel;
+import com.uber.cadence.QueryRejectCondition;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.QueryOptions;
+import com.uber.cadence.client.WorkflowStub;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers repeated workflow queries from a client side cache. Every query that reaches Cadence is
+ * dispatched to a worker as a decision task, so read heavy clients polling the same value put load
+ * on workers that does not depend on how often the value actually changes.
+ *
+ * <p>Results are cached per workflow execution, query type, arguments and result type for a fixed
+ * time to live. Concurrent identical queries that miss the cache wait for a single request instead
+ * of each sending their own. Failed queries are not cached. Queries with {@link
+ * QueryConsistencyLevel#STRONG} always go to the workflow, as their callers expect to observe every
+ * signal accepted before the query.
+ *
+ * <p>Cached results are shared between callers and should not be modified. Query arguments are
+ * compared with equals.
+ */
+public class CachingQueryClient {
+
+  private final Cache<QueryKey, Optional<Object>> cache;
+
+  public CachingQueryClient(Duration timeToLive, long maximumSize) {
+    this(timeToLive, maximumSize, Ticker.systemTicker());
+  }
+
+  CachingQueryClient(Duration timeToLive, long maximumSize, Ticker ticker) {
+    cache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+            .maximumSize(maximumSize)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+  }
+
+  /** Cached equivalent of {@link WorkflowStub#query(String, Class, Object...)}. */
+  public <R> R query(
+      WorkflowStub workflow, String queryType, Class<R> resultClass, Object... args) {
+    return load(
+        new QueryKey(workflow.getExecution(), queryType, null, resultClass, args),
+        () -> workflow.query(queryType, resultClass, args));
+  }
+
+  /**
+   * Cached equivalent of {@link WorkflowStub#queryWithOptions(String, QueryOptions, Type, Class,
+   * Object...)}.
+   */
+  public <R> R queryWithOptions(
+      WorkflowStub workflow,
+      String queryType,
+      QueryOptions options,
+      Type resultType,
+      Class<R> resultClass,
+      Object... args) {
+    if (options.getQueryConsistencyLevel() == QueryConsistencyLevel.STRONG) {
+      return workflow.queryWithOptions(queryType, options, resultType, resultClass, args);
+    }
+    return load(
+        new QueryKey(
+            workflow.getExecution(),
+            queryType,
+            options.getQueryRejectCondition(),
+            resultType,
+            args),
+        () -> workflow.queryWithOptions(queryType, options, resultType, resultClass, args));
+  }
+
+  /** Drops all cached results of an execution, for example after signalling it. */
+  public void invalidate(WorkflowExecution execution) {
+    cache.asMap().keySet().removeIf(key -> key.execution.equals(execution));
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <R> R load(QueryKey key, QueryCall<R> call) {
+    try {
+      // Concurrent loads of the same key wait for the first one to complete. The cache cannot
+      // hold null, so results are wrapped, which also caches queries that returned null.
+      return (R) cache.get(key, () -> Optional.ofNullable(call.call())).orElse(null);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private interface QueryCall<R> {
+    R call();
+  }
+
+  private static class QueryKey {
+    private final WorkflowExecution execution;
+    private final String queryType;
+    private final QueryRejectCondition rejectCondition;
+    private final Type resultType;
+    private final List<Object> args;
+    private final int hashCode;
+
+    QueryKey(
+        WorkflowExecution execution,
+        String queryType,
+        QueryRejectCondition rejectCondition,
+        Type resultType,
+        Object[] args) {
+      // Thrift objects are mutable, keep a copy.
+      this.execution = new WorkflowExecution(execution);
+      this.queryType = queryType;
+      this.rejectCondition = rejectCondition;
+      this.resultType = resultType;
+      this.args = Arrays.asList(args.clone());
+      this.hashCode = Objects.hash(execution, queryType, rejectCondition, resultType, this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof QueryKey)) {
+        return false;
+      }
+      QueryKey that = (QueryKey) o;
+      return execution.equals(that.execution)
+          && queryType.equals(that.queryType)
+          && rejectCondition == that.rejectCondition
+          && resultType.equals(that.resultType)
+          && args.equals(that.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.workflow.Workflow;
+import java.time.Duration;
+
+/**
+ * Decides when a long running workflow should continue as new from how large its history has
+ * grown, instead of after a fixed number of iterations. Cheap iterations then share one run, and
+ * iterations that add many events or large payloads roll over sooner. A run continues as new
+ * before the next iteration would take it past any of these limits:
+ *
+ * <ul>
+ *   <li>number of history events, as reported by WorkflowInfo
+ *   <li>estimated history size in bytes, from the payload sizes the workflow reports
+ *   <li>estimated time to replay the history, which is what a worker pays whenever the workflow
+ *       is not in its sticky cache
+ * </ul>
+ *
+ * <p>The policy is used from workflow code, so every input must be deterministic: the replay time
+ * is modeled from event count and bytes rather than measured while the workflow runs. Measure the
+ * cost per event offline, for example from the replays per second that OfflineShadowing reports
+ * for production histories, and configure it with {@link Builder#setReplayCostPerEvent}.
+ *
+ * <p>Switching an existing workflow to this policy changes when its runs continue as new, so guard
+ * the switch with Workflow.getVersion as HelloPeriodic does.
+ */
+public final class ContinueAsNewPolicy {
+
+  private final long maxHistoryLength;
+  private final long maxHistoryBytes;
+  private final long maxReplayNanos;
+  private final long replayNanosPerEvent;
+  private final double replayNanosPerByte;
+
+  private ContinueAsNewPolicy(Builder builder) {
+    this.maxHistoryLength = builder.maxHistoryLength;
+    this.maxHistoryBytes = builder.maxHistoryBytes;
+    this.maxReplayNanos = builder.maxReplayTime.toNanos();
+    this.replayNanosPerEvent = builder.replayCostPerEvent.toNanos();
+    this.replayNanosPerByte = builder.replayNanosPerByte;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Starts tracking the current run. Call it from the workflow method. */
+  public Run newRun() {
+    return newRun(Workflow.getWorkflowInfo().getHistoryLength());
+  }
+
+  Run newRun(long historyLength) {
+    return new Run(historyLength);
+  }
+
+  /** @return modeled time to replay a history of the given size */
+  Duration estimateReplayTime(long historyLength, long historyBytes) {
+    return Duration.ofNanos(
+        historyLength * replayNanosPerEvent + (long) (historyBytes * replayNanosPerByte));
+  }
+
+  /** Tracks the growth of one run. Not thread safe, like any workflow state. */
+  public final class Run {
+    private long historyLength;
+    private long payloadBytes;
+    private long checkedPayloadBytes;
+    // Largest growth of a single iteration, which the next one is assumed not to exceed.
+    private long maxIterationEvents;
+    private long maxIterationBytes;
+
+    private Run(long historyLength) {
+      this.historyLength = historyLength;
+    }
+
+    /**
+     * Adds the size of payloads that the workflow put into history, such as activity arguments
+     * and results or signal inputs.
+     */
+    public void addPayloadBytes(long bytes) {
+      payloadBytes += bytes;
+    }
+
+    /** Call once per iteration. @return whether the next iteration would exceed a limit */
+    public boolean shouldContinueAsNew() {
+      return shouldContinueAsNew(Workflow.getWorkflowInfo().getHistoryLength());
+    }
+
+    boolean shouldContinueAsNew(long currentHistoryLength) {
+      maxIterationEvents = Math.max(maxIterationEvents, currentHistoryLength - historyLength);
+      maxIterationBytes = Math.max(maxIterationBytes, payloadBytes - checkedPayloadBytes);
+      historyLength = currentHistoryLength;
+      checkedPayloadBytes = payloadBytes;
+
+      long nextLength = historyLength + maxIterationEvents;
+      long nextBytes = payloadBytes + maxIterationBytes;
+      return nextLength > maxHistoryLength
+          || nextBytes > maxHistoryBytes
+          || estimateReplayTime(nextLength, nextBytes).toNanos() > maxReplayNanos;
+    }
+
+    public long getPayloadBytes() {
+      return payloadBytes;
+    }
+  }
+
+  /**
+   * Defaults keep runs well below the history size at which the Cadence service starts warning,
+   * 10,000 events or 10MB.
+   */
+  public static final class Builder {
+    private long maxHistoryLength = 5_000;
+    private long maxHistoryBytes = 5 * 1024 * 1024;
+    private Duration maxReplayTime = Duration.ofSeconds(1);
+    private Duration replayCostPerEvent = Duration.ofNanos(50_000);
+    private double replayNanosPerByte = 1;
+
+    private Builder() {}
+
+    public Builder setMaxHistoryLength(long maxHistoryLength) {
+      this.maxHistoryLength = maxHistoryLength;
+      return this;
+    }
+
+    public Builder setMaxHistoryBytes(long maxHistoryBytes) {
+      this.maxHistoryBytes = maxHistoryBytes;
+      return this;
+    }
+
+    /** Longest replay of a run that is acceptable when it is not in the sticky cache. */
+    public Builder setMaxReplayTime(Duration maxReplayTime) {
+      this.maxReplayTime = maxReplayTime;
+      return this;
+    }
+
+    /** Measured replay time per history event. Default is 50 microseconds. */
+    public Builder setReplayCostPerEvent(Duration replayCostPerEvent) {
+      this.replayCostPerEvent = replayCostPerEvent;
+      return this;
+    }
+
+    /** Measured replay time per payload byte, for deserialization. Default is 1 nanosecond. */
+    public Builder setReplayNanosPerByte(double replayNanosPerByte) {
+      this.replayNanosPerByte = replayNanosPerByte;
+      return this;
+    }
+
+    public ContinueAsNewPolicy build() {
+      if (maxHistoryLength <= 0 || maxHistoryBytes <= 0) {
+        throw new IllegalArgumentException("history limits must be positive");
+      }
+      return new ContinueAsNewPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.workflow.Workflow;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Spreads the runs of many cron workflows that share a schedule, so that they don't all fire at
+ * the same moment and swamp the task list and the services their activities call. Offsets are
+ * derived from the workflow ID: they are the same for every run and on replay, and IDs hash
+ * uniformly over the available offsets.
+ *
+ * <p>Cron has a granularity of one minute. {@link #spreadSchedule} moves the minute at which the
+ * server starts a run, which also spreads the decision tasks. For offsets below one minute, such
+ * as for schedules that fire every minute, a run sleeps its offset with {@link #sleep} before it
+ * does its work.
+ */
+public final class CronJitter {
+
+  private static final Pattern STEP = Pattern.compile("\\*/(\\d+)");
+  private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+  private CronJitter() {}
+
+  /**
+   * Moves the minute field of a cron schedule by a per workflow offset. A fixed minute, as in
+   * "0 * * * *", becomes any minute of the hour. A step that divides the hour, such as every fifth
+   * minute, becomes a start offset within the step, as in "3/5 * * * *". Other schedules are
+   * returned unchanged.
+   *
+   * <p>That includes schedules that fire every minute, such as "* * * * *" or "*&#47;1 * * * *":
+   * cron cannot start runs at different seconds, so the first decision tasks of all such workflows
+   * are still scheduled together, and {@link #sleep} only spreads the work that follows.
+   */
+  public static String spreadSchedule(String cronSchedule, String workflowId) {
+    String[] fields = cronSchedule.trim().split("\\s+");
+    if (fields.length != 5) {
+      throw new IllegalArgumentException("Expected 5 cron fields: " + cronSchedule);
+    }
+    String minute = fields[0];
+    Matcher step = STEP.matcher(minute);
+    if (NUMBER.matcher(minute).matches()) {
+      fields[0] = String.valueOf(Math.floorMod(hash(workflowId), 60));
+    } else if (step.matches()) {
+      int period = Integer.parseInt(step.group(1));
+      if (period > 1 && 60 % period == 0) {
+        fields[0] = Math.floorMod(hash(workflowId), period) + "/" + period;
+      }
+    }
+    return String.join(" ", fields);
+  }
+
+  /** @return offset of the workflow in [0, window), with millisecond granularity */
+  public static Duration offset(String workflowId, Duration window) {
+    long windowMillis = window.toMillis();
+    if (windowMillis <= 0) {
+      return Duration.ZERO;
+    }
+    return Duration.ofMillis(Math.floorMod(subMinuteHash(workflowId), windowMillis));
+  }
+
+  /**
+   * Assigns the workflow to one of a number of evenly spaced offsets in [0, window). Fewer distinct
+   * offsets let the services downstream see a predictable number of batches.
+   */
+  public static Duration shardOffset(String workflowId, int shards, Duration window) {
+    if (shards <= 0) {
+      throw new IllegalArgumentException("shards must be positive: " + shards);
+    }
+    long shard = Math.floorMod(subMinuteHash(workflowId), shards);
+    return window.multipliedBy(shard).dividedBy(shards);
+  }
+
+  /**
+   * Sleeps the offset of the current workflow within the window. Call it from the workflow method
+   * before the run does its work. The window must leave the run enough time to finish before its
+   * execution timeout.
+   *
+   * <p>This spreads the activities only. The first decision task of every run is still scheduled
+   * at the cron minute, so the decision load on the task list is spread by {@link
+   * #spreadSchedule} alone.
+   */
+  public static void sleep(Duration window) {
+    Duration offset = offset(Workflow.getWorkflowInfo().getWorkflowId(), window);
+    if (!offset.isZero()) {
+      Workflow.sleep(offset);
+    }
+  }
+
+  /** String.hashCode is specified, the finalizer of MurmurHash3 spreads similar IDs apart. */
+  private static int hash(String workflowId) {
+    int h = workflowId.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  // Independent of the minute offset, so that workflows sharing a minute don't share a second.
+  private static long subMinuteHash(String workflowId) {
+    return hash(workflowId + "#") & 0xffffffffL;
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes a latency breakdown from exported workflow histories without a Cadence service. Each
+ * history is parsed in a single streaming pass, so its size does not matter. Accepts JSON arrays of
+ * events, like the files in src/test/resources, and the NDJSON written by {@link
+ * WorkflowExecutionHistoryExporter}, optionally gzip compressed. Directories are scanned
+ * recursively and their histories are analyzed in parallel.
+ *
+ * <p>The report contains a histogram of event types, schedule-to-start and start-to-close
+ * latencies per activity type, decision task latencies and the time spent in each phase.
+ */
+public class HistoryAnalyzer {
+
+  public static void main(String[] args) throws Exception {
+    List<Path> inputs = new ArrayList<>();
+    int threads = Runtime.getRuntime().availableProcessors();
+    String outputFile = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--threads".equals(args[i]) && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if ("--output".equals(args[i]) && i + 1 < args.length) {
+        outputFile = args[++i];
+      } else {
+        inputs.add(Paths.get(args[i]));
+      }
+    }
+    if (inputs.isEmpty()) {
+      System.err.println(
+          "Usage: java "
+              + HistoryAnalyzer.class.getName()
+              + " <historyFileOrDirectory>... [--threads <n>] [--output <file>]");
+      System.exit(1);
+    }
+
+    List<Path> files = new ArrayList<>();
+    for (Path input : inputs) {
+      try (Stream<Path> paths = Files.walk(input)) {
+        files.addAll(
+            paths
+                .filter(Files::isRegularFile)
+                .filter(HistoryFiles::isHistoryFile)
+                .collect(Collectors.toList()));
+      }
+    }
+
+    long startTime = System.nanoTime();
+    HistoryStats total = new HistoryStats();
+    int failed = 0;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<HistoryStats>> results = new ArrayList<>(files.size());
+      for (Path file : files) {
+        results.add(executor.submit(() -> analyze(file)));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          total.merge(results.get(i).get());
+        } catch (Exception e) {
+          failed++;
+          System.err.println("Failed to analyze " + files.get(i) + ": " + e);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+
+    try (PrintStream out =
+        outputFile == null
+            ? new PrintStream(System.out, true, "UTF-8")
+            : new PrintStream(new FileOutputStream(outputFile), false, "UTF-8")) {
+      total.report(out);
+    }
+    System.err.printf(
+        "Analyzed %d histories (%d failed) with %d events in %.2fs (%.0f events/s)%n",
+        total.histories, failed, total.events, seconds, total.events / seconds);
+    System.exit(failed == 0 ? 0 : 1);
+  }
+
+  /** Parses one history file in a single streaming pass. */
+  public static HistoryStats analyze(Path file) throws IOException {
+    HistoryStats stats = new HistoryStats();
+    HistoryState state = new HistoryState(stats);
+    HistoryFiles.read(file, state::onEvent);
+    state.finish();
+    return stats;
+  }
+
+  /** Phases that a workflow spends its time in. Parallel work is counted once per task. */
+  public enum Phase {
+    DECISION_SCHEDULE_TO_START,
+    DECISION_START_TO_CLOSE,
+    ACTIVITY_SCHEDULE_TO_START,
+    ACTIVITY_START_TO_CLOSE,
+    TIMER,
+    CHILD_WORKFLOW
+  }
+
+  /** Aggregated statistics of one or more histories. */
+  public static class HistoryStats {
+    private long histories;
+    private long events;
+    private long wallTimeNanos;
+    private final Map<EventType, Long> eventTypes = new EnumMap<>(EventType.class);
+    private final Map<String, ActivityStats> activities = new TreeMap<>();
+    private final LatencyRecorder decisionScheduleToStart = new LatencyRecorder();
+    private final LatencyRecorder decisionStartToClose = new LatencyRecorder();
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    public long getHistories() {
+      return histories;
+    }
+
+    public long getEvents() {
+      return events;
+    }
+
+    public long getEventCount(EventType eventType) {
+      return eventTypes.getOrDefault(eventType, 0L);
+    }
+
+    /** @return start-to-close latencies of the activity type, null if it never ran */
+    public LatencyRecorder getActivityStartToClose(String activityType) {
+      ActivityStats stats = activities.get(activityType);
+      return stats == null ? null : stats.startToClose;
+    }
+
+    public LatencyRecorder getDecisionStartToClose() {
+      return decisionStartToClose;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+      return phaseNanos.getOrDefault(phase, 0L);
+    }
+
+    synchronized void merge(HistoryStats other) {
+      histories += other.histories;
+      events += other.events;
+      wallTimeNanos += other.wallTimeNanos;
+      other.eventTypes.forEach((type, count) -> eventTypes.merge(type, count, Long::sum));
+      other.activities.forEach(
+          (type, stats) -> activities.computeIfAbsent(type, t -> new ActivityStats()).merge(stats));
+      decisionScheduleToStart.merge(other.decisionScheduleToStart);
+      decisionStartToClose.merge(other.decisionStartToClose);
+      other.phaseNanos.forEach((phase, nanos) -> phaseNanos.merge(phase, nanos, Long::sum));
+    }
+
+    void report(PrintStream out) {
+      out.printf(
+          "Histories: %d, events: %d, wall time: %.3fs%n",
+          histories, events, wallTimeNanos / 1e9);
+
+      out.println();
+      out.println("Event types:");
+      eventTypes.entrySet().stream()
+          .sorted(Map.Entry.<EventType, Long>comparingByValue().reversed())
+          .forEach(e -> out.printf("  %-45s %d%n", e.getKey(), e.getValue()));
+
+      out.println();
+      out.println("Activities:");
+      activities.forEach(
+          (type, stats) -> {
+            out.printf("  %s (%d failed or timed out)%n", type, stats.failures);
+            out.println("    schedule-to-start: " + stats.scheduleToStart.summary());
+            out.println("    start-to-close:    " + stats.startToClose.summary());
+          });
+
+      out.println();
+      out.println("Decision tasks:");
+      out.println("  schedule-to-start: " + decisionScheduleToStart.summary());
+      out.println("  start-to-close:    " + decisionStartToClose.summary());
+
+      out.println();
+      out.println("Where the time went (summed over tasks, parallel tasks overlap):");
+      for (Phase phase : Phase.values()) {
+        long nanos = getPhaseNanos(phase);
+        out.printf(
+            "  %-28s %10.3fs %6.1f%% of wall time%n",
+            phase.name().toLowerCase(),
+            nanos / 1e9,
+            wallTimeNanos == 0 ? 0.0 : 100.0 * nanos / wallTimeNanos);
+      }
+    }
+  }
+
+  private static class ActivityStats {
+    private final LatencyRecorder scheduleToStart = new LatencyRecorder();
+    private final LatencyRecorder startToClose = new LatencyRecorder();
+    private long failures;
+
+    void merge(ActivityStats other) {
+      scheduleToStart.merge(other.scheduleToStart);
+      startToClose.merge(other.startToClose);
+      failures += other.failures;
+    }
+  }
+
+  /** Matches the events of a single history with the events that scheduled them. */
+  private static class HistoryState {
+    private final HistoryStats stats;
+    private final Map<Long, Long> timestamps = new HashMap<>();
+    private final Map<Long, String> activityTypes = new HashMap<>();
+    private long firstTimestamp = -1;
+    private long lastTimestamp;
+
+    HistoryState(HistoryStats stats) {
+      this.stats = stats;
+    }
+
+    void onEvent(HistoryEvent event) {
+      long timestamp = event.getTimestamp();
+      if (firstTimestamp < 0) {
+        firstTimestamp = timestamp;
+      }
+      lastTimestamp = Math.max(lastTimestamp, timestamp);
+      stats.events++;
+      if (event.getEventType() == null) {
+        return;
+      }
+      stats.eventTypes.merge(event.getEventType(), 1L, Long::sum);
+
+      switch (event.getEventType()) {
+        case DecisionTaskScheduled:
+        case TimerStarted:
+        case StartChildWorkflowExecutionInitiated:
+          timestamps.put(event.getEventId(), timestamp);
+          break;
+        case DecisionTaskStarted:
+          timestamps.put(event.getEventId(), timestamp);
+          record(
+              Phase.DECISION_SCHEDULE_TO_START,
+              stats.decisionScheduleToStart,
+              event.getDecisionTaskStartedEventAttributes().getScheduledEventId(),
+              timestamp);
+          break;
+        case DecisionTaskCompleted:
+        case DecisionTaskFailed:
+        case DecisionTaskTimedOut:
+          record(
+              Phase.DECISION_START_TO_CLOSE,
+              stats.decisionStartToClose,
+              decisionStartedEventId(event),
+              timestamp);
+          break;
+        case ActivityTaskScheduled:
+          timestamps.put(event.getEventId(), timestamp);
+          activityTypes.put(
+              event.getEventId(),
+              event.getActivityTaskScheduledEventAttributes().getActivityType().getName());
+          break;
+        case ActivityTaskStarted:
+          {
+            long scheduledEventId =
+                event.getActivityTaskStartedEventAttributes().getScheduledEventId();
+            timestamps.put(event.getEventId(), timestamp);
+            record(
+                Phase.ACTIVITY_SCHEDULE_TO_START,
+                activity(scheduledEventId).scheduleToStart,
+                scheduledEventId,
+                timestamp);
+            break;
+          }
+        case ActivityTaskCompleted:
+          onActivityClosed(
+              event.getActivityTaskCompletedEventAttributes().getScheduledEventId(),
+              event.getActivityTaskCompletedEventAttributes().getStartedEventId(),
+              timestamp,
+              false);
+          break;
+        case ActivityTaskFailed:
+          onActivityClosed(
+              event.getActivityTaskFailedEventAttributes().getScheduledEventId(),
+              event.getActivityTaskFailedEventAttributes().getStartedEventId(),
+              timestamp,
+              true);
+          break;
+        case ActivityTaskTimedOut:
+          onActivityClosed(
+              event.getActivityTaskTimedOutEventAttributes().getScheduledEventId(),
+              event.getActivityTaskTimedOutEventAttributes().getStartedEventId(),
+              timestamp,
+              true);
+          break;
+        case TimerFired:
+          addPhase(
+              Phase.TIMER, event.getTimerFiredEventAttributes().getStartedEventId(), timestamp);
+          break;
+        case ChildWorkflowExecutionCompleted:
+          addPhase(
+              Phase.CHILD_WORKFLOW,
+              event.getChildWorkflowExecutionCompletedEventAttributes().getInitiatedEventId(),
+              timestamp);
+          break;
+        case ChildWorkflowExecutionFailed:
+          addPhase(
+              Phase.CHILD_WORKFLOW,
+              event.getChildWorkflowExecutionFailedEventAttributes().getInitiatedEventId(),
+              timestamp);
+          break;
+        default:
+          break;
+      }
+    }
+
+    void finish() {
+      stats.histories++;
+      if (firstTimestamp >= 0) {
+        stats.wallTimeNanos += lastTimestamp - firstTimestamp;
+      }
+    }
+
+    private void onActivityClosed(
+        long scheduledEventId, long startedEventId, long timestamp, boolean failed) {
+      ActivityStats activity = activity(scheduledEventId);
+      if (failed) {
+        activity.failures++;
+      }
+      // An activity that timed out before it started has no started event.
+      if (timestamps.containsKey(startedEventId)) {
+        record(Phase.ACTIVITY_START_TO_CLOSE, activity.startToClose, startedEventId, timestamp);
+      }
+    }
+
+    private ActivityStats activity(long scheduledEventId) {
+      String type = activityTypes.getOrDefault(scheduledEventId, "unknown");
+      return stats.activities.computeIfAbsent(type, t -> new ActivityStats());
+    }
+
+    private void record(Phase phase, LatencyRecorder recorder, long fromEventId, long timestamp) {
+      Long from = timestamps.get(fromEventId);
+      if (from != null) {
+        recorder.record(timestamp - from, TimeUnit.NANOSECONDS);
+        stats.phaseNanos.merge(phase, timestamp - from, Long::sum);
+      }
+    }
+
+    private void addPhase(Phase phase, long fromEventId, long timestamp) {
+      Long from = timestamps.get(fromEventId);
+      if (from != null) {
+        stats.phaseNanos.merge(phase, timestamp - from, Long::sum);
+      }
+    }
+
+    private static long decisionStartedEventId(HistoryEvent event) {
+      switch (event.getEventType()) {
+        case DecisionTaskCompleted:
+          return event.getDecisionTaskCompletedEventAttributes().getStartedEventId();
+        case DecisionTaskFailed:
+          return event.getDecisionTaskFailedEventAttributes().getStartedEventId();
+        default:
+          return event.getDecisionTaskTimedOutEventAttributes().getStartedEventId();
+      }
+    }
+  }
+}
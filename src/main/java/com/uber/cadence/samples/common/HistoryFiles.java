@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static com.uber.cadence.samples.common.WorkflowExecutionHistoryExporter.HISTORY_GSON;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.uber.cadence.HistoryEvent;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/** Reads history files such as those written by {@link WorkflowExecutionHistoryExporter}. */
+public final class HistoryFiles {
+
+  private HistoryFiles() {}
+
+  /**
+   * Reads a history file event by event. Accepts JSON arrays of events, the format downloaded by
+   * the Cadence CLI, and the NDJSON written by the exporter. Files ending with .gz are
+   * decompressed.
+   */
+  public static void read(Path file, Consumer<HistoryEvent> consumer) throws IOException {
+    try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        InputStream in = isGzip(file) ? new GZIPInputStream(raw) : raw;
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      // NDJSON is a sequence of top level values, which only a lenient reader accepts.
+      reader.setLenient(true);
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          consumer.accept(HISTORY_GSON.fromJson(reader, HistoryEvent.class));
+        }
+        reader.endArray();
+      } else {
+        while (reader.peek() != JsonToken.END_DOCUMENT) {
+          consumer.accept(HISTORY_GSON.fromJson(reader, HistoryEvent.class));
+        }
+      }
+    }
+  }
+
+  /** @return whether the file name has the extension of a history file accepted by read */
+  public static boolean isHistoryFile(Path file) {
+    String name = file.getFileName().toString();
+    return name.endsWith(".json")
+        || name.endsWith(".ndjson")
+        || name.endsWith(".json.gz")
+        || name.endsWith(".ndjson.gz");
+  }
+
+  private static boolean isGzip(Path file) {
+    return file.getFileName().toString().endsWith(".gz");
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects latency samples from any number of threads and reports percentiles. Samples are kept in
+ * a primitive array, so recording a few million of them costs a few megabytes and no boxing.
+ */
+public class LatencyRecorder {
+  private long[] samples = new long[1024];
+  private int count;
+
+  public synchronized void record(long duration, TimeUnit unit) {
+    if (count == samples.length) {
+      samples = Arrays.copyOf(samples, count * 2);
+    }
+    samples[count++] = unit.toNanos(duration);
+  }
+
+  /** Adds all samples of another recorder to this one. */
+  public void merge(LatencyRecorder other) {
+    long[] otherSamples;
+    int otherCount;
+    synchronized (other) {
+      otherSamples = other.samples;
+      otherCount = other.count;
+    }
+    for (int i = 0; i < otherCount; i++) {
+      record(otherSamples[i], TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public synchronized int count() {
+    return count;
+  }
+
+  /** @return sum of all samples in nanoseconds */
+  public synchronized long total() {
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      total += samples[i];
+    }
+    return total;
+  }
+
+  /**
+   * @param percentile value in [0, 100]
+   * @return latency in nanoseconds at the given percentile, 0 when nothing has been recorded
+   */
+  public long percentile(double percentile) {
+    long[] sorted = sortedSnapshot();
+    return percentile(sorted, percentile);
+  }
+
+  /** @return count, p50, p90, p99 and max latencies in milliseconds */
+  public String summary() {
+    long[] sorted = sortedSnapshot();
+    if (sorted.length == 0) {
+      return "count=0";
+    }
+    return String.format(
+        "count=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+        sorted.length,
+        toMillis(percentile(sorted, 50)),
+        toMillis(percentile(sorted, 90)),
+        toMillis(percentile(sorted, 99)),
+        toMillis(sorted[sorted.length - 1]));
+  }
+
+  private synchronized long[] sortedSnapshot() {
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private static long percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
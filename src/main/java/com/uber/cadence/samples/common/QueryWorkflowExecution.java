@@ -19,49 +19,334 @@ package com.uber.cadence.samples.common;
 
 import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.uber.cadence.ListWorkflowExecutionsRequest;
+import com.uber.cadence.ListWorkflowExecutionsResponse;
 import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionInfo;
 import com.uber.cadence.client.WorkflowClient;
-import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.client.WorkflowStub;
-import com.uber.cadence.serviceclient.ClientOptions;
-import com.uber.cadence.serviceclient.IWorkflowService;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.thrift.TException;
 
 /**
  * Queries a workflow execution using the Cadence query API. Cadence redirects a query to any
  * currently running workflow worker for the workflow type of the requested workflow execution.
  *
+ * <p>In bulk mode the query is sent to every workflow listed in a file, one workflow ID optionally
+ * followed by a run ID per line, or to every workflow matching a visibility query. Queries run
+ * concurrently through the shared client, each under its own timeout, and every result is written
+ * as one JSON line as soon as it arrives.
+ *
  * @author fateev
  */
 public class QueryWorkflowExecution {
 
+  private static final int LIST_PAGE_SIZE = 1000;
+
   public static void main(String[] args) throws Exception {
+    if (args.length >= 2 && args[1].startsWith("--")) {
+      bulkMain(args);
+      return;
+    }
     if (args.length < 2 || args.length > 3) {
-      System.err.println(
-          "Usage: java "
-              + QueryWorkflowExecution.class.getName()
-              + " <queryType> <workflowId> [<runId>]");
+      printUsage();
       System.exit(1);
     }
-    IWorkflowService cadenceService = new WorkflowServiceTChannel(ClientOptions.defaultInstance());
-
     String queryType = args[0];
 
     WorkflowExecution workflowExecution = new WorkflowExecution();
     String workflowId = args[1];
     workflowExecution.setWorkflowId(workflowId);
     if (args.length == 3) {
-      String runId = args[1];
+      String runId = args[2];
       workflowExecution.setRunId(runId);
     }
-    WorkflowClient client =
-        WorkflowClient.newInstance(
-            cadenceService, WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    WorkflowClient client = CadenceUtil.getWorkflowClient();
     WorkflowStub workflow = client.newUntypedWorkflowStub(workflowExecution, Optional.empty());
     String result = workflow.query(queryType, String.class);
 
     System.out.println("Query result for " + workflowExecution + ":");
     System.out.println(result);
   }
+
+  private static void printUsage() {
+    String name = QueryWorkflowExecution.class.getName();
+    System.err.println("Usage: java " + name + " <queryType> <workflowId> [<runId>]");
+    System.err.println(
+        "       java "
+            + name
+            + " <queryType> (--ids <file> | --query <visibilityQuery>)"
+            + " [--concurrency <n>] [--timeout <seconds>] [--output <file>]");
+  }
+
+  private static void bulkMain(String[] args) throws Exception {
+    String queryType = args[0];
+    String idFile = null;
+    String visibilityQuery = null;
+    String outputFile = null;
+    int concurrency = 64;
+    long timeoutSeconds = 10;
+    for (int i = 1; i < args.length; i++) {
+      if (i + 1 == args.length) {
+        printUsage();
+        System.exit(1);
+      }
+      switch (args[i]) {
+        case "--ids":
+          idFile = args[++i];
+          break;
+        case "--query":
+          visibilityQuery = args[++i];
+          break;
+        case "--concurrency":
+          concurrency = Integer.parseInt(args[++i]);
+          break;
+        case "--timeout":
+          timeoutSeconds = Long.parseLong(args[++i]);
+          break;
+        case "--output":
+          outputFile = args[++i];
+          break;
+        default:
+          printUsage();
+          System.exit(1);
+      }
+    }
+    if ((idFile == null) == (visibilityQuery == null)) {
+      printUsage();
+      System.exit(1);
+    }
+
+    long startTime = System.nanoTime();
+    OutputStream out = outputFile == null ? System.out : new FileOutputStream(outputFile);
+    BulkQuery bulk;
+    try (Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+      bulk =
+          new BulkQuery(
+              CadenceUtil.getWorkflowClient(),
+              queryType,
+              concurrency,
+              Duration.ofSeconds(timeoutSeconds),
+              writer);
+      try {
+        if (idFile != null) {
+          queryIds(bulk, idFile);
+        } else {
+          queryVisibility(bulk, visibilityQuery);
+        }
+      } finally {
+        bulk.close();
+      }
+    }
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    System.err.printf(
+        "Queried %d workflows in %.1fs (%.1f queries/s): %d ok, %d failed, %d timed out%n",
+        bulk.latencies.count(),
+        seconds,
+        bulk.latencies.count() / seconds,
+        bulk.succeeded.get(),
+        bulk.failed.get(),
+        bulk.timedOut.get());
+    System.err.println("Latency: " + bulk.latencies.summary());
+  }
+
+  private static void queryIds(BulkQuery bulk, String idFile)
+      throws IOException, InterruptedException {
+    try (BufferedReader reader =
+        Files.newBufferedReader(Paths.get(idFile), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] ids = line.trim().split("\\s+");
+        if (ids[0].isEmpty()) {
+          continue;
+        }
+        WorkflowExecution execution = new WorkflowExecution().setWorkflowId(ids[0]);
+        if (ids.length > 1) {
+          execution.setRunId(ids[1]);
+        }
+        bulk.submit(execution);
+      }
+    }
+  }
+
+  private static void queryVisibility(BulkQuery bulk, String visibilityQuery)
+      throws TException, InterruptedException {
+    ListWorkflowExecutionsRequest request =
+        new ListWorkflowExecutionsRequest()
+            .setDomain(DOMAIN)
+            .setQuery(visibilityQuery)
+            .setPageSize(LIST_PAGE_SIZE);
+    do {
+      // Pages are requested only as fast as the queries drain, so the listing never runs far
+      // ahead of the queries.
+      ListWorkflowExecutionsResponse response =
+          CadenceUtil.getService().ListWorkflowExecutions(request);
+      for (WorkflowExecutionInfo info : response.getExecutions()) {
+        bulk.submit(info.getExecution());
+      }
+      request.setNextPageToken(response.getNextPageToken());
+    } while (request.getNextPageToken() != null && request.getNextPageToken().length > 0);
+  }
+
+  /** Runs at most a fixed number of queries at a time and streams their results. */
+  static class BulkQuery {
+    private static final Gson GSON = new Gson();
+
+    private final WorkflowClient client;
+    private final String queryType;
+    private final long timeoutMillis;
+    private final Writer writer;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor();
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    BulkQuery(
+        WorkflowClient client,
+        String queryType,
+        int concurrency,
+        Duration timeout,
+        Writer writer) {
+      this.client = client;
+      this.queryType = queryType;
+      this.timeoutMillis = timeout.toMillis();
+      this.writer = writer;
+      this.inFlight = new Semaphore(concurrency);
+      this.executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    /** Blocks while the concurrency cap is reached. */
+    void submit(WorkflowExecution execution) throws InterruptedException {
+      inFlight.acquire();
+      try {
+        executor.execute(new QueryTask(execution));
+      } catch (RuntimeException e) {
+        inFlight.release();
+        throw e;
+      }
+    }
+
+    /** Reports the outcome of a query unless it was already reported. */
+    private boolean complete(
+        WorkflowExecution execution,
+        AtomicBoolean done,
+        long startTime,
+        String status,
+        String value) {
+      if (!done.compareAndSet(false, true)) {
+        return false;
+      }
+      latencies.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+      switch (status) {
+        case "OK":
+          succeeded.incrementAndGet();
+          break;
+        case "TIMEOUT":
+          timedOut.incrementAndGet();
+          break;
+        default:
+          failed.incrementAndGet();
+      }
+      JsonObject line = new JsonObject();
+      line.addProperty("workflowId", execution.getWorkflowId());
+      line.addProperty("runId", execution.getRunId());
+      line.addProperty("status", status);
+      line.addProperty("OK".equals(status) ? "result" : "error", value);
+      try {
+        synchronized (writer) {
+          GSON.toJson(line, writer);
+          writer.write('\n');
+        }
+      } catch (IOException e) {
+        System.err.println("Failed to write the result of " + execution + ": " + e);
+      }
+      return true;
+    }
+
+    /**
+     * Runs one query. Its timeout is measured from the moment it starts running, and its permit is
+     * only returned once its thread is free again, so a query that ignores the interrupt still
+     * counts against the concurrency cap.
+     */
+    private class QueryTask implements Runnable {
+      private final WorkflowExecution execution;
+      private final AtomicBoolean done = new AtomicBoolean();
+      private Thread thread;
+
+      QueryTask(WorkflowExecution execution) {
+        this.execution = execution;
+      }
+
+      @Override
+      public void run() {
+        long startTime = System.nanoTime();
+        synchronized (this) {
+          thread = Thread.currentThread();
+        }
+        ScheduledFuture<?> timeout =
+            timeouts.schedule(() -> timeOut(startTime), timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+          WorkflowStub workflow = client.newUntypedWorkflowStub(execution, Optional.empty());
+          String result = workflow.query(queryType, String.class);
+          complete(execution, done, startTime, "OK", result);
+        } catch (Exception e) {
+          complete(execution, done, startTime, "FAILED", String.valueOf(e));
+        } finally {
+          timeout.cancel(false);
+          synchronized (this) {
+            thread = null;
+            // Clears an interrupt that arrived after the query returned, so that it does not
+            // abort the next query run by this thread.
+            Thread.interrupted();
+          }
+          inFlight.release();
+        }
+      }
+
+      private void timeOut(long startTime) {
+        if (complete(execution, done, startTime, "TIMEOUT", null)) {
+          // Interrupting the query thread aborts the pending RPC and frees the thread for the
+          // next query.
+          synchronized (this) {
+            if (thread != null) {
+              thread.interrupt();
+            }
+          }
+        }
+      }
+    }
+
+    /** Waits for all submitted queries to be reported. */
+    void close() throws InterruptedException {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      timeouts.shutdownNow();
+    }
+  }
 }
@@ -21,9 +21,8 @@ import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
 import com.uber.cadence.DomainAlreadyExistsError;
 import com.uber.cadence.RegisterDomainRequest;
-import com.uber.cadence.serviceclient.ClientOptions;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
 import com.uber.cadence.serviceclient.IWorkflowService;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
 import java.io.IOException;
 import org.apache.thrift.TException;
 
@@ -35,7 +34,7 @@ import org.apache.thrift.TException;
 public class RegisterDomain {
 
   public static void main(String[] args) throws TException, IOException {
-    IWorkflowService cadenceService = new WorkflowServiceTChannel(ClientOptions.defaultInstance());
+    IWorkflowService cadenceService = CadenceUtil.getService();
     RegisterDomainRequest request = new RegisterDomainRequest();
     request.setDescription("Java Samples");
     request.setEmitMetric(false);
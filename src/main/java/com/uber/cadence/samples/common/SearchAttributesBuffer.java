@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.workflow.Async;
+import com.uber.cadence.workflow.Workflow;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Merges search attribute changes of a workflow into few upserts. Every call to
+ * Workflow.upsertSearchAttributes becomes its own decision and history event, so a workflow that
+ * updates its status 100 times writes 100 events. Through this buffer it writes one event per
+ * decision task at most, with the last value of every changed attribute. Values equal to the ones
+ * already upserted through the buffer are not written again.
+ *
+ * <p>Pending changes are upserted once all workflow threads are blocked, that is when the
+ * decision task that made them has done its work, or only at the checkpoints where the workflow
+ * calls {@link #flush()}. Either way call flush before the workflow method returns or continues as
+ * new, changes still pending at that point would be lost.
+ *
+ * <p>Use it from workflow code only, it is not thread safe like any workflow state.
+ */
+public final class SearchAttributesBuffer {
+
+  private final boolean flushEveryDecisionTask;
+  private final Map<String, Object> pending = new LinkedHashMap<>();
+  private final Map<String, Object> upserted = new HashMap<>();
+  private boolean flusherStarted;
+  private int upsertCount;
+
+  /** Creates a buffer that is flushed once per decision task. */
+  public SearchAttributesBuffer() {
+    this(true);
+  }
+
+  /**
+   * @param flushEveryDecisionTask whether pending changes are upserted at the end of the decision
+   *     task that made them, otherwise they are upserted by {@link #flush()} only
+   */
+  public SearchAttributesBuffer(boolean flushEveryDecisionTask) {
+    this.flushEveryDecisionTask = flushEveryDecisionTask;
+  }
+
+  public void put(String key, Object value) {
+    pending.put(key, value);
+    if (flushEveryDecisionTask && !flusherStarted) {
+      flusherStarted = true;
+      // The thread wakes up after the threads that changed attributes are blocked.
+      Async.procedure(
+          () -> {
+            while (true) {
+              Workflow.await(() -> !pending.isEmpty());
+              flush();
+            }
+          });
+    }
+  }
+
+  public void putAll(Map<String, ?> attributes) {
+    attributes.forEach(this::put);
+  }
+
+  /** Upserts the pending changes now. Does nothing when no attribute changed. */
+  public void flush() {
+    Map<String, Object> changes = new HashMap<>();
+    pending.forEach(
+        (key, value) -> {
+          if (!upserted.containsKey(key) || !Objects.deepEquals(upserted.get(key), value)) {
+            changes.put(key, value);
+          }
+        });
+    pending.clear();
+    if (changes.isEmpty()) {
+      return;
+    }
+    Workflow.upsertSearchAttributes(changes);
+    upserted.putAll(changes);
+    upsertCount++;
+  }
+
+  /** @return whether changes wait for the next flush */
+  public boolean hasPending() {
+    return !pending.isEmpty();
+  }
+
+  /** @return number of upserts this buffer made */
+  public int getUpsertCount() {
+    return upsertCount;
+  }
+}
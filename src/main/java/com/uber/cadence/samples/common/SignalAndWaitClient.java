@@ -0,0 +1,384 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.DescribeWorkflowExecutionRequest;
+import com.uber.cadence.DescribeWorkflowExecutionResponse;
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionSignaledEventAttributes;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.thrift.TException;
+
+/**
+ * Sends signals and waits until the workflow has processed them, that is until the first decision
+ * task completed after the signal was recorded in history. This is usually much faster than
+ * polling with queries after a signal.
+ *
+ * <p>All callers waiting on the same workflow share a single {@link WorkflowHistoryStream}
+ * subscription, so no thread blocks per caller. A watched workflow costs one pending poll, which
+ * holds a thread only with transports that lack the asynchronous history call, see {@link
+ * WorkflowHistoryStream}. A watcher subscribes when the first caller registers and unsubscribes
+ * once no caller has used it for the idle timeout. Cadence has no way to read history starting at a
+ * given event, so a new subscription pages through the whole history before it sees new events.
+ * Keeping idle watchers for a while lets back-to-back signals to the same workflow skip that. A
+ * signal is matched by its name and serialized input, so concurrent callers should send
+ * distinguishable signals.
+ *
+ * <p>The signal must not be deduplicated by a request ID: a deduplicated signal is never recorded
+ * again and the caller would wait until the workflow closes.
+ */
+public class SignalAndWaitClient implements AutoCloseable {
+
+  private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(30);
+
+  private final IWorkflowService service;
+  private final String domain;
+  private final Duration idleTimeout;
+  private final WorkflowHistoryStream stream;
+  // Completes futures, so that callers' continuations never delay the delivery of events, and
+  // stops idle watchers.
+  private final ScheduledThreadPoolExecutor executor;
+  // Guarded by itself.
+  private final Map<String, Watcher> watchers = new HashMap<>();
+  // Guarded by watchers.
+  private boolean closed;
+
+  public SignalAndWaitClient(IWorkflowService service, String domain) {
+    this(service, domain, DEFAULT_IDLE_TIMEOUT);
+  }
+
+  /**
+   * @param idleTimeout how long a watcher keeps following the history of a workflow after its last
+   *     caller is done, zero stops it right away
+   */
+  public SignalAndWaitClient(IWorkflowService service, String domain, Duration idleTimeout) {
+    if (idleTimeout.isNegative()) {
+      throw new IllegalArgumentException("negative idleTimeout: " + idleTimeout);
+    }
+    this.service = service;
+    this.domain = domain;
+    this.idleTimeout = idleTimeout;
+    this.stream = new WorkflowHistoryStream(service, domain);
+    this.executor =
+        new ScheduledThreadPoolExecutor(
+            2,
+            r -> {
+              Thread thread = new Thread(r, "signal-and-wait");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+  }
+
+  /** Outcome of a signal, see {@link #signalAndWait}. */
+  public static class SignalWaitResult {
+    private final boolean signalReceived;
+    private final boolean signalProcessed;
+    private final boolean workflowRunning;
+    private final String runId;
+
+    SignalWaitResult(
+        boolean signalReceived, boolean signalProcessed, boolean workflowRunning, String runId) {
+      this.signalReceived = signalReceived;
+      this.signalProcessed = signalProcessed;
+      this.workflowRunning = workflowRunning;
+      this.runId = runId;
+    }
+
+    /** @return whether the signal was recorded in history */
+    public boolean isSignalReceived() {
+      return signalReceived;
+    }
+
+    /** @return whether a decision task completed after the signal was recorded */
+    public boolean isSignalProcessed() {
+      return signalProcessed;
+    }
+
+    public boolean isWorkflowRunning() {
+      return workflowRunning;
+    }
+
+    /** @return run that received the signal, use it to read results from that run */
+    public String getRunId() {
+      return runId;
+    }
+
+    @Override
+    public String toString() {
+      return "SignalWaitResult{signalReceived="
+          + signalReceived
+          + ", signalProcessed="
+          + signalProcessed
+          + ", workflowRunning="
+          + workflowRunning
+          + ", runId="
+          + runId
+          + '}';
+    }
+  }
+
+  /**
+   * Runs the signal operation and returns a future that completes once the signal is processed or
+   * the workflow closes. Cancel the future to stop waiting.
+   *
+   * @param workflowId workflow that receives the signal, the current run is watched
+   * @param signalOperation sends the signal, called on the calling thread
+   * @param signalName name of the signal as recorded in history, for example
+   *     "GreetingWorkflow::receiveName"
+   * @param signalInput signal arguments serialized by the client's DataConverter
+   */
+  public CompletableFuture<SignalWaitResult> signalAndWait(
+      String workflowId, Runnable signalOperation, String signalName, byte[] signalInput) {
+    Watcher watcher = acquire(workflowId);
+    Waiter waiter;
+    try {
+      waiter = watcher.register(signalName, signalInput);
+    } catch (RuntimeException e) {
+      release(watcher);
+      throw e;
+    }
+    waiter.future.whenComplete((result, failure) -> watcher.unregister(waiter));
+    try {
+      signalOperation.run();
+    } catch (RuntimeException e) {
+      waiter.future.completeExceptionally(e);
+    }
+    return waiter.future;
+  }
+
+  /** Stops all watchers. Pending futures fail. */
+  @Override
+  public void close() {
+    synchronized (watchers) {
+      closed = true;
+      for (Watcher watcher : watchers.values()) {
+        watcher.fail(new IllegalStateException("client closed"));
+      }
+      watchers.clear();
+    }
+    stream.close();
+    executor.shutdown();
+  }
+
+  private Watcher acquire(String workflowId) {
+    Watcher watcher;
+    synchronized (watchers) {
+      watcher = watchers.get(workflowId);
+      // A stopped watcher has seen its run close or its stream fail, a new one looks for the
+      // current run.
+      if (watcher == null || watcher.stopped) {
+        watcher = new Watcher(workflowId);
+        watchers.put(workflowId, watcher);
+      }
+      if (watcher.idleStop != null) {
+        watcher.idleStop.cancel(false);
+        watcher.idleStop = null;
+      }
+      watcher.references++;
+    }
+    try {
+      watcher.start();
+    } catch (RuntimeException e) {
+      release(watcher);
+      throw e;
+    }
+    return watcher;
+  }
+
+  private void release(Watcher watcher) {
+    synchronized (watchers) {
+      if (--watcher.references > 0) {
+        return;
+      }
+      if (closed || idleTimeout.isZero()) {
+        stopIdle(watcher);
+      } else {
+        watcher.idleStop =
+            executor.schedule(
+                () -> stopIdle(watcher), idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private void stopIdle(Watcher watcher) {
+    synchronized (watchers) {
+      if (watcher.references == 0) {
+        watchers.remove(watcher.workflowId, watcher);
+        watcher.stop();
+      }
+    }
+  }
+
+  private static class Waiter {
+    private final String signalName;
+    private final byte[] signalInput;
+    // Events up to this one were recorded before the signal was sent.
+    private final long afterEventId;
+    private final CompletableFuture<SignalWaitResult> future = new CompletableFuture<>();
+    // Written only by the watcher's listener, which is never called concurrently.
+    private volatile boolean received;
+
+    Waiter(String signalName, byte[] signalInput, long afterEventId) {
+      this.signalName = signalName;
+      this.signalInput = signalInput;
+      this.afterEventId = afterEventId;
+    }
+  }
+
+  /** Follows the history of one workflow run on behalf of all its waiters. */
+  private class Watcher implements WorkflowHistoryStream.Listener {
+    private final String workflowId;
+    private final List<Waiter> waiters = new CopyOnWriteArrayList<>();
+    // Guarded by watchers.
+    private int references;
+    // Guarded by watchers.
+    private ScheduledFuture<?> idleStop;
+    private volatile boolean stopped;
+    private WorkflowExecution execution;
+    private long startEventId;
+    private volatile long lastEventId;
+    private WorkflowHistoryStream.Subscription subscription;
+
+    Watcher(String workflowId) {
+      this.workflowId = workflowId;
+    }
+
+    /** Describes the workflow once to learn the current run and history length, then subscribes. */
+    synchronized void start() {
+      if (execution != null) {
+        return;
+      }
+      DescribeWorkflowExecutionResponse response;
+      try {
+        response =
+            service.DescribeWorkflowExecution(
+                new DescribeWorkflowExecutionRequest()
+                    .setDomain(domain)
+                    .setExecution(new WorkflowExecution().setWorkflowId(workflowId)));
+      } catch (TException e) {
+        throw new IllegalStateException("failed to describe workflow " + workflowId, e);
+      }
+      startEventId = response.getWorkflowExecutionInfo().getHistoryLength();
+      execution = response.getWorkflowExecutionInfo().getExecution();
+      if (response.getWorkflowExecutionInfo().isSetCloseStatus()) {
+        // Nothing will be recorded any more, waiters complete on registration.
+        stopped = true;
+        return;
+      }
+      subscription = stream.subscribe(execution, startEventId, false, this);
+    }
+
+    synchronized void stop() {
+      stopped = true;
+      if (subscription != null) {
+        subscription.close();
+      }
+    }
+
+    synchronized Waiter register(String signalName, byte[] signalInput) {
+      Waiter waiter = new Waiter(signalName, signalInput, Math.max(startEventId, lastEventId));
+      waiters.add(waiter);
+      if (stopped) {
+        completeAll(false);
+      }
+      return waiter;
+    }
+
+    void unregister(Waiter waiter) {
+      if (waiters.remove(waiter)) {
+        release(this);
+      }
+    }
+
+    @Override
+    public void onEvent(WorkflowExecution run, HistoryEvent event) {
+      dispatch(event);
+      lastEventId = event.getEventId();
+    }
+
+    @Override
+    public void onClosed(WorkflowExecution lastRun) {
+      // The run is closed, no more events will arrive.
+      completeAll(false);
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+      fail(failure);
+    }
+
+    private void dispatch(HistoryEvent event) {
+      for (Waiter waiter : waiters) {
+        if (event.getEventId() <= waiter.afterEventId) {
+          continue;
+        }
+        if (!waiter.received && event.getEventType() == EventType.WorkflowExecutionSignaled) {
+          WorkflowExecutionSignaledEventAttributes attributes =
+              event.getWorkflowExecutionSignaledEventAttributes();
+          waiter.received =
+              waiter.signalName.equals(attributes.getSignalName())
+                  && Arrays.equals(waiter.signalInput, attributes.getInput());
+        } else if (waiter.received && event.getEventType() == EventType.DecisionTaskCompleted) {
+          complete(waiter, new SignalWaitResult(true, true, true, execution.getRunId()));
+        }
+      }
+    }
+
+    private void completeAll(boolean workflowRunning) {
+      stopped = true;
+      String runId = execution == null ? null : execution.getRunId();
+      for (Waiter waiter : waiters) {
+        complete(waiter, new SignalWaitResult(waiter.received, false, workflowRunning, runId));
+      }
+    }
+
+    // Waiters are unregistered before their future completes, so a caller that signals again
+    // right after the result is in never finds a watcher that is about to stop.
+    private void complete(Waiter waiter, SignalWaitResult result) {
+      executor.execute(
+          () -> {
+            unregister(waiter);
+            waiter.future.complete(result);
+          });
+    }
+
+    void fail(Throwable failure) {
+      stopped = true;
+      for (Waiter waiter : waiters) {
+        executor.execute(
+            () -> {
+              unregister(waiter);
+              waiter.future.completeExceptionally(failure);
+            });
+      }
+    }
+  }
+}
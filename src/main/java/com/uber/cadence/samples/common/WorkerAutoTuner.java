@@ -0,0 +1,656 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.internal.worker.PollerOptions;
+import com.uber.cadence.samples.common.WorkerTelemetry.Snapshot;
+import com.uber.cadence.worker.Worker;
+import com.uber.cadence.worker.WorkerFactory;
+import com.uber.cadence.worker.WorkerFactoryOptions;
+import com.uber.cadence.worker.WorkerOptions;
+import com.uber.m3.tally.Scope;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a worker and adjusts its concurrency options to the load it sees, within configured bounds.
+ * Every interval it takes a {@link WorkerTelemetry} snapshot, measures process CPU and heap usage,
+ * and changes at most one setting, checked in this order:
+ *
+ * <ol>
+ *   <li>heap above its threshold: shrink the sticky cache, then the workflow thread pool
+ *   <li>activity slots saturated and CPU below its threshold: more concurrent activities
+ *   <li>workflow threads saturated: more workflow threads
+ *   <li>activity or decision tasks wait while slots are free and CPU is below its threshold: one
+ *       more poller for that task kind
+ *   <li>low sticky cache hit ratio: a larger sticky cache, at most one entry per workflow thread
+ * </ol>
+ *
+ * <p>The client cannot change the options of a running worker, so every change restarts it. When a
+ * limit grows, a factory with the new options starts polling before the old one is shut down, so
+ * no task waits for the switch. When a limit shrinks, for example under heap pressure, the old
+ * factory is drained first, as running both would briefly use more threads and memory than either.
+ * The sticky cache does not survive a restart and cached workflows are replayed from history,
+ * which is why restarts are at least a cooldown apart.
+ *
+ * <p>Each decision is logged, counted in worker-autotuner-decisions tagged with its reason, and
+ * the current settings are exported as worker-autotuner-* gauges. The tuner takes the telemetry
+ * snapshots itself, so do not call {@link WorkerTelemetry#startReporting} as well.
+ */
+public class WorkerAutoTuner implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(WorkerAutoTuner.class);
+
+  static final String DECISIONS = "worker-autotuner-decisions";
+  static final String REASON_TAG = "Reason";
+
+  private static final double GROWTH_FACTOR = 1.5;
+  private static final double SHRINK_FACTOR = 0.75;
+
+  /** Registers workflow and activity implementations with each newly created worker. */
+  public interface WorkerRegistrar {
+    void register(Worker worker);
+  }
+
+  enum Reason {
+    HEAP_PRESSURE,
+    ACTIVITY_SLOTS_SATURATED,
+    WORKFLOW_THREADS_SATURATED,
+    ACTIVITY_TASKS_WAIT,
+    DECISION_TASKS_WAIT,
+    STICKY_CACHE_MISSES
+  }
+
+  /** A change of settings and why it was made. */
+  static final class Decision {
+    final Reason reason;
+    final Settings settings;
+
+    Decision(Reason reason, Settings settings) {
+      this.reason = reason;
+      this.settings = settings;
+    }
+
+    @Override
+    public String toString() {
+      return reason + " -> " + settings;
+    }
+  }
+
+  /** Worker options that the tuner adjusts. */
+  public static final class Settings {
+    private final int maxWorkflowThreads;
+    private final int stickyCacheSize;
+    private final int maxConcurrentActivities;
+    private final int maxConcurrentWorkflows;
+    private final int activityPollers;
+    private final int decisionPollers;
+
+    private Settings(Builder builder) {
+      this.maxWorkflowThreads = builder.maxWorkflowThreads;
+      this.stickyCacheSize = builder.stickyCacheSize;
+      this.maxConcurrentActivities = builder.maxConcurrentActivities;
+      this.maxConcurrentWorkflows = builder.maxConcurrentWorkflows;
+      this.activityPollers = builder.activityPollers;
+      this.decisionPollers = builder.decisionPollers;
+    }
+
+    public static Builder newBuilder() {
+      return new Builder();
+    }
+
+    public Builder toBuilder() {
+      return new Builder()
+          .setMaxWorkflowThreads(maxWorkflowThreads)
+          .setStickyCacheSize(stickyCacheSize)
+          .setMaxConcurrentActivities(maxConcurrentActivities)
+          .setMaxConcurrentWorkflows(maxConcurrentWorkflows)
+          .setActivityPollers(activityPollers)
+          .setDecisionPollers(decisionPollers);
+    }
+
+    public int getMaxWorkflowThreads() {
+      return maxWorkflowThreads;
+    }
+
+    public int getStickyCacheSize() {
+      return stickyCacheSize;
+    }
+
+    public int getMaxConcurrentActivities() {
+      return maxConcurrentActivities;
+    }
+
+    public int getMaxConcurrentWorkflows() {
+      return maxConcurrentWorkflows;
+    }
+
+    public int getActivityPollers() {
+      return activityPollers;
+    }
+
+    public int getDecisionPollers() {
+      return decisionPollers;
+    }
+
+    /** @return whether any limit is lower than in the other settings */
+    boolean isBelow(Settings other) {
+      return maxWorkflowThreads < other.maxWorkflowThreads
+          || stickyCacheSize < other.stickyCacheSize
+          || maxConcurrentActivities < other.maxConcurrentActivities
+          || maxConcurrentWorkflows < other.maxConcurrentWorkflows
+          || activityPollers < other.activityPollers
+          || decisionPollers < other.decisionPollers;
+    }
+
+    WorkerFactoryOptions toFactoryOptions() {
+      return WorkerFactoryOptions.newBuilder()
+          .setMaxWorkflowThreadCount(maxWorkflowThreads)
+          .setStickyCacheSize(stickyCacheSize)
+          .setDisableStickyExecution(false)
+          .build();
+    }
+
+    WorkerOptions toWorkerOptions() {
+      return WorkerOptions.newBuilder()
+          .setMaxConcurrentActivityExecutionSize(maxConcurrentActivities)
+          .setMaxConcurrentWorkflowExecutionSize(maxConcurrentWorkflows)
+          .setActivityPollerOptions(
+              PollerOptions.newBuilder().setPollThreadCount(activityPollers).build())
+          .setWorkflowPollerOptions(
+              PollerOptions.newBuilder().setPollThreadCount(decisionPollers).build())
+          .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Settings)) {
+        return false;
+      }
+      Settings that = (Settings) o;
+      return maxWorkflowThreads == that.maxWorkflowThreads
+          && stickyCacheSize == that.stickyCacheSize
+          && maxConcurrentActivities == that.maxConcurrentActivities
+          && maxConcurrentWorkflows == that.maxConcurrentWorkflows
+          && activityPollers == that.activityPollers
+          && decisionPollers == that.decisionPollers;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          maxWorkflowThreads,
+          stickyCacheSize,
+          maxConcurrentActivities,
+          maxConcurrentWorkflows,
+          activityPollers,
+          decisionPollers);
+    }
+
+    @Override
+    public String toString() {
+      return "Settings{maxWorkflowThreads="
+          + maxWorkflowThreads
+          + ", stickyCacheSize="
+          + stickyCacheSize
+          + ", maxConcurrentActivities="
+          + maxConcurrentActivities
+          + ", maxConcurrentWorkflows="
+          + maxConcurrentWorkflows
+          + ", activityPollers="
+          + activityPollers
+          + ", decisionPollers="
+          + decisionPollers
+          + '}';
+    }
+
+    /** Defaults are the values HelloWorkerSetup used to hardcode and the client's poller count. */
+    public static final class Builder {
+      private int maxWorkflowThreads = 1000;
+      private int stickyCacheSize = 100;
+      private int maxConcurrentActivities = 100;
+      private int maxConcurrentWorkflows = 100;
+      private int activityPollers = 1;
+      private int decisionPollers = 1;
+
+      private Builder() {}
+
+      /** WorkerFactoryOptions maxWorkflowThreadCount. */
+      public Builder setMaxWorkflowThreads(int maxWorkflowThreads) {
+        this.maxWorkflowThreads = maxWorkflowThreads;
+        return this;
+      }
+
+      /** WorkerFactoryOptions stickyCacheSize. */
+      public Builder setStickyCacheSize(int stickyCacheSize) {
+        this.stickyCacheSize = stickyCacheSize;
+        return this;
+      }
+
+      /** WorkerOptions maxConcurrentActivityExecutionSize. */
+      public Builder setMaxConcurrentActivities(int maxConcurrentActivities) {
+        this.maxConcurrentActivities = maxConcurrentActivities;
+        return this;
+      }
+
+      /** WorkerOptions maxConcurrentWorkflowExecutionSize, not tuned. */
+      public Builder setMaxConcurrentWorkflows(int maxConcurrentWorkflows) {
+        this.maxConcurrentWorkflows = maxConcurrentWorkflows;
+        return this;
+      }
+
+      /** Poll threads of the activity task list. */
+      public Builder setActivityPollers(int activityPollers) {
+        this.activityPollers = activityPollers;
+        return this;
+      }
+
+      /** Poll threads of the decision task list. */
+      public Builder setDecisionPollers(int decisionPollers) {
+        this.decisionPollers = decisionPollers;
+        return this;
+      }
+
+      public Settings build() {
+        if (maxWorkflowThreads <= 0
+            || stickyCacheSize <= 0
+            || maxConcurrentActivities <= 0
+            || maxConcurrentWorkflows <= 0
+            || activityPollers <= 0
+            || decisionPollers <= 0) {
+          throw new IllegalArgumentException("settings must be positive");
+        }
+        return new Settings(this);
+      }
+    }
+  }
+
+  private final WorkflowClient workflowClient;
+  private final WorkerTelemetry telemetry;
+  private final String taskList;
+  private final WorkerRegistrar registrar;
+  private final Settings min;
+  private final Settings max;
+  private final Duration interval;
+  private final long cooldownNanos;
+  private final double cpuThreshold;
+  private final double heapThreshold;
+  private final Scope metricsScope;
+  private final DoubleSupplier cpuUsage;
+  private final DoubleSupplier heapUsage;
+  private final ScheduledExecutorService executor;
+
+  // Guarded by this.
+  private volatile Settings settings;
+  private WorkerFactory factory;
+  private long lastRestartNanos;
+
+  private WorkerAutoTuner(Builder builder) {
+    this.workflowClient = builder.workflowClient;
+    this.telemetry = builder.telemetry;
+    this.taskList = builder.taskList;
+    this.registrar = builder.registrar;
+    this.settings = builder.initial;
+    this.min = builder.min;
+    this.max = builder.max;
+    this.interval = builder.interval;
+    this.cooldownNanos = builder.cooldown.toNanos();
+    this.cpuThreshold = builder.cpuThreshold;
+    this.heapThreshold = builder.heapThreshold;
+    this.metricsScope = builder.metricsScope;
+    this.cpuUsage = builder.cpuUsage;
+    this.heapUsage = builder.heapUsage;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "worker-autotuner");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * @param workflowClient client whose metrics scope is the telemetry
+   * @param telemetry created with the limits of the initial settings
+   * @param registrar registers implementations with the worker of each restart
+   */
+  public static Builder newBuilder(
+      WorkflowClient workflowClient,
+      WorkerTelemetry telemetry,
+      String taskList,
+      WorkerRegistrar registrar) {
+    return new Builder(workflowClient, telemetry, taskList, registrar);
+  }
+
+  /** Starts the worker with the initial settings and begins tuning. */
+  public synchronized void start() {
+    restart(settings);
+    executor.scheduleWithFixedDelay(
+        this::tune, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /** @return settings of the running worker */
+  public Settings getSettings() {
+    return settings;
+  }
+
+  /** Stops tuning and shuts the worker down. */
+  @Override
+  public synchronized void close() {
+    executor.shutdownNow();
+    if (factory != null) {
+      factory.shutdown();
+    }
+  }
+
+  private synchronized void tune() {
+    try {
+      Snapshot snapshot = telemetry.snapshot();
+      if (System.nanoTime() - lastRestartNanos < cooldownNanos) {
+        return;
+      }
+      double cpu = cpuUsage.getAsDouble();
+      double heap = heapUsage.getAsDouble();
+      Decision decision = decide(snapshot, cpu, heap);
+      if (decision == null) {
+        return;
+      }
+      log.info(
+          "Worker auto-tuner: {} (CPU {}%, heap {}%, {})",
+          decision,
+          Math.round(100 * cpu),
+          Math.round(100 * heap),
+          snapshot);
+      metricsScope
+          .tagged(Collections.singletonMap(REASON_TAG, decision.reason.name()))
+          .counter(DECISIONS)
+          .inc(1);
+      restart(decision.settings);
+    } catch (RuntimeException e) {
+      // A failed round must not end the schedule.
+      log.warn("Worker auto-tuner round failed", e);
+    }
+  }
+
+  /** @return the next change of settings, or null when nothing should change */
+  Decision decide(Snapshot snapshot, double cpu, double heap) {
+    Settings current = settings;
+    boolean cpuAvailable = cpu < cpuThreshold;
+    if (heap > heapThreshold) {
+      int stickyCacheSize = shrink(current.stickyCacheSize, min.stickyCacheSize);
+      if (stickyCacheSize != current.stickyCacheSize) {
+        return new Decision(
+            Reason.HEAP_PRESSURE, current.toBuilder().setStickyCacheSize(stickyCacheSize).build());
+      }
+      int threads = shrink(current.maxWorkflowThreads, min.maxWorkflowThreads);
+      if (threads != current.maxWorkflowThreads) {
+        return new Decision(
+            Reason.HEAP_PRESSURE,
+            current
+                .toBuilder()
+                .setMaxWorkflowThreads(threads)
+                .setStickyCacheSize(Math.min(current.stickyCacheSize, threads))
+                .build());
+      }
+      // Nothing left to give back, more memory or hosts are needed.
+      return null;
+    }
+    boolean slotsSaturated =
+        snapshot.getActivitySlotSaturation() > WorkerTelemetry.SATURATION_THRESHOLD;
+    if (slotsSaturated && cpuAvailable) {
+      int activities = grow(current.maxConcurrentActivities, max.maxConcurrentActivities);
+      if (activities != current.maxConcurrentActivities) {
+        return new Decision(
+            Reason.ACTIVITY_SLOTS_SATURATED,
+            current.toBuilder().setMaxConcurrentActivities(activities).build());
+      }
+    }
+    boolean threadsSaturated =
+        snapshot.getWorkflowThreadUtilization() > WorkerTelemetry.SATURATION_THRESHOLD;
+    if (threadsSaturated) {
+      int threads = grow(current.maxWorkflowThreads, max.maxWorkflowThreads);
+      if (threads != current.maxWorkflowThreads) {
+        return new Decision(
+            Reason.WORKFLOW_THREADS_SATURATED,
+            current.toBuilder().setMaxWorkflowThreads(threads).build());
+      }
+    }
+    if (cpuAvailable
+        && !slotsSaturated
+        && snapshot.getMaxScheduleToStartP90Nanos("activity") > WorkerTelemetry.LAG_THRESHOLD_NANOS
+        && current.activityPollers < max.activityPollers) {
+      return new Decision(
+          Reason.ACTIVITY_TASKS_WAIT,
+          current.toBuilder().setActivityPollers(current.activityPollers + 1).build());
+    }
+    if (cpuAvailable
+        && !threadsSaturated
+        && snapshot.getMaxScheduleToStartP90Nanos("decision") > WorkerTelemetry.LAG_THRESHOLD_NANOS
+        && current.decisionPollers < max.decisionPollers) {
+      return new Decision(
+          Reason.DECISION_TASKS_WAIT,
+          current.toBuilder().setDecisionPollers(current.decisionPollers + 1).build());
+    }
+    if (snapshot.getStickyCacheHitRatio() < WorkerTelemetry.STICKY_CACHE_HIT_RATIO_THRESHOLD) {
+      // Every cached workflow holds a thread, a cache larger than the pool cannot fill up.
+      int limit = Math.min(max.stickyCacheSize, current.maxWorkflowThreads);
+      int stickyCacheSize = grow(current.stickyCacheSize, limit);
+      if (stickyCacheSize != current.stickyCacheSize) {
+        return new Decision(
+            Reason.STICKY_CACHE_MISSES,
+            current.toBuilder().setStickyCacheSize(stickyCacheSize).build());
+      }
+    }
+    return null;
+  }
+
+  private static int grow(int value, int max) {
+    return Math.max(value, Math.min(max, (int) Math.ceil(value * GROWTH_FACTOR)));
+  }
+
+  private static int shrink(int value, int min) {
+    return Math.min(value, Math.max(min, (int) (value * SHRINK_FACTOR)));
+  }
+
+  /**
+   * Replaces the worker with one using the given settings. The previous worker is drained before
+   * the new one starts when the settings shrink, and after it started otherwise.
+   */
+  private void restart(Settings next) {
+    WorkerFactory previous = factory;
+    boolean shrinks = previous != null && next.isBelow(settings);
+    if (shrinks) {
+      drain(previous);
+    }
+    WorkerFactory started = WorkerFactory.newInstance(workflowClient, next.toFactoryOptions());
+    Worker worker = started.newWorker(taskList, next.toWorkerOptions());
+    registrar.register(worker);
+    started.start();
+    factory = started;
+    settings = next;
+    lastRestartNanos = System.nanoTime();
+    telemetry.setLimits(next.maxWorkflowThreads, next.maxConcurrentActivities);
+    exportSettings(next);
+    if (previous != null && !shrinks) {
+      // The new worker already polls.
+      drain(previous);
+    }
+  }
+
+  /** Shuts a worker down and lets its running tasks finish, for at most one interval. */
+  private void drain(WorkerFactory previous) {
+    previous.shutdown();
+    try {
+      previous.awaitTermination(interval.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void exportSettings(Settings settings) {
+    metricsScope.gauge("worker-autotuner-max-workflow-threads").update(settings.maxWorkflowThreads);
+    metricsScope.gauge("worker-autotuner-sticky-cache-size").update(settings.stickyCacheSize);
+    metricsScope
+        .gauge("worker-autotuner-max-concurrent-activities")
+        .update(settings.maxConcurrentActivities);
+    metricsScope.gauge("worker-autotuner-activity-pollers").update(settings.activityPollers);
+    metricsScope.gauge("worker-autotuner-decision-pollers").update(settings.decisionPollers);
+  }
+
+  /** @return CPU load of this process from 0 to 1 */
+  static double processCpuUsage() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      double load = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+      if (load >= 0) {
+        return load;
+      }
+    }
+    double loadAverage = os.getSystemLoadAverage();
+    return loadAverage < 0 ? 0 : Math.min(1, loadAverage / os.getAvailableProcessors());
+  }
+
+  /**
+   * @return heap in use after the last collection of each pool, over the maximum heap size, so
+   *     that garbage that is about to be collected does not count
+   */
+  static double heapUsage() {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        MemoryUsage usage = pool.getCollectionUsage();
+        used += (usage != null ? usage : pool.getUsage()).getUsed();
+      }
+    }
+    long maxHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+    return maxHeap <= 0 ? 0 : (double) used / maxHeap;
+  }
+
+  public static final class Builder {
+    private final WorkflowClient workflowClient;
+    private final WorkerTelemetry telemetry;
+    private final String taskList;
+    private final WorkerRegistrar registrar;
+    private Settings initial = Settings.newBuilder().build();
+    private Settings min;
+    private Settings max;
+    private Duration interval = Duration.ofSeconds(30);
+    private Duration cooldown = Duration.ofMinutes(2);
+    private double cpuThreshold = 0.8;
+    private double heapThreshold = 0.8;
+    private Scope metricsScope;
+    private DoubleSupplier cpuUsage = WorkerAutoTuner::processCpuUsage;
+    private DoubleSupplier heapUsage = WorkerAutoTuner::heapUsage;
+
+    private Builder(
+        WorkflowClient workflowClient,
+        WorkerTelemetry telemetry,
+        String taskList,
+        WorkerRegistrar registrar) {
+      this.workflowClient = Objects.requireNonNull(workflowClient);
+      this.telemetry = Objects.requireNonNull(telemetry);
+      this.taskList = Objects.requireNonNull(taskList);
+      this.registrar = Objects.requireNonNull(registrar);
+      this.metricsScope = telemetry;
+    }
+
+    /** Settings the worker starts with. Default is {@link Settings.Builder}'s defaults. */
+    public Builder setInitialSettings(Settings initial) {
+      this.initial = Objects.requireNonNull(initial);
+      return this;
+    }
+
+    /** Lower bounds that shrinking stops at. Default is the initial settings. */
+    public Builder setMinSettings(Settings min) {
+      this.min = Objects.requireNonNull(min);
+      return this;
+    }
+
+    /** Upper bounds that growing stops at. Default is the initial settings. */
+    public Builder setMaxSettings(Settings max) {
+      this.max = Objects.requireNonNull(max);
+      return this;
+    }
+
+    /** Time between decisions. Default is 30 seconds. */
+    public Builder setInterval(Duration interval) {
+      this.interval = Objects.requireNonNull(interval);
+      return this;
+    }
+
+    /** Minimum time between two restarts of the worker. Default is 2 minutes. */
+    public Builder setCooldown(Duration cooldown) {
+      this.cooldown = Objects.requireNonNull(cooldown);
+      return this;
+    }
+
+    /** Process CPU load from 0 to 1 above which nothing grows that adds work. Default is 0.8. */
+    public Builder setCpuThreshold(double cpuThreshold) {
+      this.cpuThreshold = cpuThreshold;
+      return this;
+    }
+
+    /** Heap usage from 0 to 1 above which caches and thread pools shrink. Default is 0.8. */
+    public Builder setHeapThreshold(double heapThreshold) {
+      this.heapThreshold = heapThreshold;
+      return this;
+    }
+
+    /** Scope that decisions and settings are reported to. Default is the telemetry. */
+    public Builder setMetricsScope(Scope metricsScope) {
+      this.metricsScope = Objects.requireNonNull(metricsScope);
+      return this;
+    }
+
+    Builder setCpuUsage(DoubleSupplier cpuUsage) {
+      this.cpuUsage = cpuUsage;
+      return this;
+    }
+
+    Builder setHeapUsage(DoubleSupplier heapUsage) {
+      this.heapUsage = heapUsage;
+      return this;
+    }
+
+    public WorkerAutoTuner build() {
+      if (min == null) {
+        min = initial;
+      }
+      if (max == null) {
+        max = initial;
+      }
+      return new WorkerAutoTuner(this);
+    }
+  }
+}
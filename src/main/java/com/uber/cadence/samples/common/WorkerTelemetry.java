@@ -0,0 +1,452 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.m3.tally.Buckets;
+import com.uber.m3.tally.Capabilities;
+import com.uber.m3.tally.Counter;
+import com.uber.m3.tally.DurationBuckets;
+import com.uber.m3.tally.Gauge;
+import com.uber.m3.tally.Histogram;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.tally.ScopeCloseException;
+import com.uber.m3.tally.Stopwatch;
+import com.uber.m3.tally.StopwatchRecorder;
+import com.uber.m3.tally.Timer;
+import com.uber.m3.util.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Derives worker health signals from the metrics the Cadence client already emits. Pass it as the
+ * metrics scope of the WorkflowClient that the WorkerFactory is created from; it forwards every
+ * metric to the wrapped scope unchanged and additionally exports:
+ *
+ * <ul>
+ *   <li>worker-telemetry-poll-to-task-latency: how long a poll waited for a task, per task kind
+ *   <li>worker-telemetry-schedule-to-start-lag: per task kind and task list
+ *   <li>worker-telemetry-sticky-cache-hit-ratio
+ *   <li>worker-telemetry-workflow-thread-utilization: active workflow threads over the maximum
+ *   <li>worker-telemetry-activity-slot-saturation: activity slots in use over the maximum
+ * </ul>
+ *
+ * <p>The client does not report how many activities run at once, so slot usage is derived with
+ * Little's law: the average number of activities in flight equals the total execution time of the
+ * activities completed in an interval divided by the length of the interval.
+ *
+ * <p>Ratios are computed per interval by {@link #snapshot()}, which {@link #startReporting} calls
+ * periodically. {@link Snapshot#getRecommendation()} turns a snapshot into advice on whether to add
+ * pollers, threads or hosts.
+ */
+public class WorkerTelemetry implements Scope {
+
+  private static final Logger log = LoggerFactory.getLogger(WorkerTelemetry.class);
+
+  // Metric and tag names used by the Cadence client, see
+  // com.uber.cadence.internal.metrics.MetricsType and MetricsTag.
+  static final String DECISION_POLL_LATENCY = "cadence-decision-poll-latency";
+  static final String ACTIVITY_POLL_LATENCY = "cadence-activity-poll-latency";
+  static final String DECISION_SCHEDULE_TO_START_LATENCY =
+      "cadence-decision-scheduled-to-start-latency";
+  static final String ACTIVITY_SCHEDULE_TO_START_LATENCY =
+      "cadence-activity-scheduled-to-start-latency";
+  static final String ACTIVITY_EXECUTION_LATENCY = "cadence-activity-execution-latency";
+  static final String STICKY_CACHE_HIT = "cadence-sticky-cache-hit";
+  static final String STICKY_CACHE_MISS = "cadence-sticky-cache-miss";
+  static final String WORKFLOW_ACTIVE_THREAD_COUNT = "cadence-workflow-active-thread-count";
+  static final String TASK_LIST_TAG = "TaskList";
+
+  static final String POLL_TO_TASK_LATENCY = "worker-telemetry-poll-to-task-latency";
+  static final String SCHEDULE_TO_START_LAG = "worker-telemetry-schedule-to-start-lag";
+  static final String STICKY_CACHE_HIT_RATIO = "worker-telemetry-sticky-cache-hit-ratio";
+  static final String WORKFLOW_THREAD_UTILIZATION =
+      "worker-telemetry-workflow-thread-utilization";
+  static final String ACTIVITY_SLOT_SATURATION = "worker-telemetry-activity-slot-saturation";
+
+  private static final Buckets LATENCY_BUCKETS =
+      DurationBuckets.exponential(Duration.ofMillis(1), 2, 18);
+
+  /** Above this p90 schedule-to-start lag tasks are considered to be waiting for workers. */
+  static final long LAG_THRESHOLD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  static final double SATURATION_THRESHOLD = 0.8;
+
+  static final double STICKY_CACHE_HIT_RATIO_THRESHOLD = 0.8;
+
+  private final Scope scope;
+  private final Map<String, String> tags;
+  private final State state;
+
+  /**
+   * @param maxWorkflowThreads WorkerFactoryOptions maxWorkflowThreadCount of the factory
+   * @param maxConcurrentActivities sum of WorkerOptions maxConcurrentActivityExecutionSize over the
+   *     workers of the factory
+   */
+  public WorkerTelemetry(Scope scope, int maxWorkflowThreads, int maxConcurrentActivities) {
+    this(scope, maxWorkflowThreads, maxConcurrentActivities, System::nanoTime);
+  }
+
+  WorkerTelemetry(
+      Scope scope, int maxWorkflowThreads, int maxConcurrentActivities, LongSupplier clock) {
+    this(
+        scope,
+        Collections.emptyMap(),
+        new State(scope, maxWorkflowThreads, maxConcurrentActivities, clock));
+  }
+
+  private WorkerTelemetry(Scope scope, Map<String, String> tags, State state) {
+    this.scope = scope;
+    this.tags = tags;
+    this.state = state;
+  }
+
+  /** Takes a snapshot every interval and logs the recommendation whenever it changes. */
+  public void startReporting(java.time.Duration interval) {
+    ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "worker-telemetry");
+              thread.setDaemon(true);
+              return thread;
+            });
+    AtomicReference<String> lastRecommendation = new AtomicReference<>();
+    executor.scheduleAtFixedRate(
+        () -> {
+          Snapshot snapshot = snapshot();
+          String recommendation = snapshot.getRecommendation();
+          if (!recommendation.equals(lastRecommendation.getAndSet(recommendation))) {
+            log.info("Worker telemetry: {}", snapshot);
+          }
+        },
+        interval.toNanos(),
+        interval.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  /** Updates the limits that utilization and saturation are relative to, after a restart. */
+  void setLimits(int maxWorkflowThreads, int maxConcurrentActivities) {
+    state.maxWorkflowThreads = maxWorkflowThreads;
+    state.maxConcurrentActivities = maxConcurrentActivities;
+  }
+
+  /**
+   * Computes and exports the ratios over the time since the previous snapshot, and starts a new
+   * interval.
+   */
+  public Snapshot snapshot() {
+    return state.snapshot();
+  }
+
+  @Override
+  public Counter counter(String name) {
+    Counter counter = scope.counter(name);
+    switch (name) {
+      case STICKY_CACHE_HIT:
+        return delta -> {
+          state.stickyHits.add(delta);
+          counter.inc(delta);
+        };
+      case STICKY_CACHE_MISS:
+        return delta -> {
+          state.stickyMisses.add(delta);
+          counter.inc(delta);
+        };
+      default:
+        return counter;
+    }
+  }
+
+  @Override
+  public Gauge gauge(String name) {
+    Gauge gauge = scope.gauge(name);
+    if (!WORKFLOW_ACTIVE_THREAD_COUNT.equals(name)) {
+      return gauge;
+    }
+    return value -> {
+      state.activeWorkflowThreads.set((long) value);
+      gauge.update(value);
+    };
+  }
+
+  @Override
+  public Timer timer(String name) {
+    Timer timer = scope.timer(name);
+    String taskList = tags.getOrDefault(TASK_LIST_TAG, "unknown");
+    switch (name) {
+      case DECISION_POLL_LATENCY:
+        return new ObservedTimer(timer, state.pollToTask("decision"));
+      case ACTIVITY_POLL_LATENCY:
+        return new ObservedTimer(timer, state.pollToTask("activity"));
+      case DECISION_SCHEDULE_TO_START_LATENCY:
+        return new ObservedTimer(timer, state.scheduleToStart("decision", taskList));
+      case ACTIVITY_SCHEDULE_TO_START_LATENCY:
+        return new ObservedTimer(timer, state.scheduleToStart("activity", taskList));
+      case ACTIVITY_EXECUTION_LATENCY:
+        return new ObservedTimer(timer, state.activityExecutionNanos::add);
+      default:
+        return timer;
+    }
+  }
+
+  @Override
+  public Histogram histogram(String name, Buckets buckets) {
+    return scope.histogram(name, buckets);
+  }
+
+  @Override
+  public Scope tagged(Map<String, String> tags) {
+    Map<String, String> merged = new HashMap<>(this.tags);
+    merged.putAll(tags);
+    return new WorkerTelemetry(scope.tagged(tags), merged, state);
+  }
+
+  @Override
+  public Scope subScope(String name) {
+    return new WorkerTelemetry(scope.subScope(name), tags, state);
+  }
+
+  @Override
+  public Capabilities capabilities() {
+    return scope.capabilities();
+  }
+
+  @Override
+  public void close() throws ScopeCloseException {
+    scope.close();
+  }
+
+  /** Worker health over one reporting interval. */
+  public static class Snapshot {
+    private final double intervalSeconds;
+    private final double stickyCacheHitRatio;
+    private final double workflowThreadUtilization;
+    private final double activitySlotSaturation;
+    private final Map<String, Long> scheduleToStartP90Nanos;
+
+    Snapshot(
+        double intervalSeconds,
+        double stickyCacheHitRatio,
+        double workflowThreadUtilization,
+        double activitySlotSaturation,
+        Map<String, Long> scheduleToStartP90Nanos) {
+      this.intervalSeconds = intervalSeconds;
+      this.stickyCacheHitRatio = stickyCacheHitRatio;
+      this.workflowThreadUtilization = workflowThreadUtilization;
+      this.activitySlotSaturation = activitySlotSaturation;
+      this.scheduleToStartP90Nanos = scheduleToStartP90Nanos;
+    }
+
+    public double getIntervalSeconds() {
+      return intervalSeconds;
+    }
+
+    /** @return NaN if there were no sticky lookups in the interval */
+    public double getStickyCacheHitRatio() {
+      return stickyCacheHitRatio;
+    }
+
+    public double getWorkflowThreadUtilization() {
+      return workflowThreadUtilization;
+    }
+
+    public double getActivitySlotSaturation() {
+      return activitySlotSaturation;
+    }
+
+    /** @return p90 schedule-to-start lag keyed by "decision:taskList" and "activity:taskList" */
+    public Map<String, Long> getScheduleToStartP90Nanos() {
+      return scheduleToStartP90Nanos;
+    }
+
+    /** @return the largest p90 schedule-to-start lag of the given task kind */
+    public long getMaxScheduleToStartP90Nanos(String kind) {
+      long max = 0;
+      for (Map.Entry<String, Long> entry : scheduleToStartP90Nanos.entrySet()) {
+        if (entry.getKey().startsWith(kind + ":")) {
+          max = Math.max(max, entry.getValue());
+        }
+      }
+      return max;
+    }
+
+    /**
+     * Tasks that wait while the worker still has capacity point to too few pollers. Tasks that
+     * wait while the worker is at capacity point to too few slots or threads, or to too few hosts
+     * when the limits cannot be raised.
+     */
+    public String getRecommendation() {
+      boolean activitiesLag = getMaxScheduleToStartP90Nanos("activity") > LAG_THRESHOLD_NANOS;
+      boolean decisionsLag = getMaxScheduleToStartP90Nanos("decision") > LAG_THRESHOLD_NANOS;
+      if (activitySlotSaturation > SATURATION_THRESHOLD) {
+        return "activity slots are saturated: raise maxConcurrentActivityExecutionSize if CPU"
+            + " allows, otherwise add hosts";
+      }
+      if (workflowThreadUtilization > SATURATION_THRESHOLD) {
+        return "workflow threads are saturated: raise maxWorkflowThreadCount if memory allows,"
+            + " otherwise add hosts";
+      }
+      if (activitiesLag || decisionsLag) {
+        return "tasks wait while the worker has spare capacity: add "
+            + (activitiesLag ? "activity" : "decision")
+            + " task list pollers";
+      }
+      if (stickyCacheHitRatio < STICKY_CACHE_HIT_RATIO_THRESHOLD) {
+        return "workflows are replayed from history often: raise the sticky cache size";
+      }
+      return "healthy";
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "sticky hit ratio %.2f, workflow threads %.0f%%, activity slots %.0f%%,"
+              + " p90 schedule-to-start ms %s: %s",
+          stickyCacheHitRatio,
+          100 * workflowThreadUtilization,
+          100 * activitySlotSaturation,
+          toMillis(scheduleToStartP90Nanos),
+          getRecommendation());
+    }
+
+    private static Map<String, Long> toMillis(Map<String, Long> nanos) {
+      Map<String, Long> millis = new TreeMap<>();
+      nanos.forEach((key, value) -> millis.put(key, TimeUnit.NANOSECONDS.toMillis(value)));
+      return millis;
+    }
+  }
+
+  /** Receives the durations recorded by an observed timer. */
+  private interface DurationObserver {
+    void observe(long nanos);
+  }
+
+  /** State shared by the root telemetry scope and all its tagged and sub scopes. */
+  private static class State {
+    private final Scope scope;
+    private volatile int maxWorkflowThreads;
+    private volatile int maxConcurrentActivities;
+    private final LongAdder stickyHits = new LongAdder();
+    private final LongAdder stickyMisses = new LongAdder();
+    private final AtomicLong activeWorkflowThreads = new AtomicLong();
+    private final LongAdder activityExecutionNanos = new LongAdder();
+    private final ConcurrentMap<String, AtomicReference<LatencyRecorder>> scheduleToStart =
+        new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private long lastSnapshotNanos;
+
+    State(Scope scope, int maxWorkflowThreads, int maxConcurrentActivities, LongSupplier clock) {
+      this.scope = scope;
+      this.maxWorkflowThreads = maxWorkflowThreads;
+      this.maxConcurrentActivities = maxConcurrentActivities;
+      this.clock = clock;
+      this.lastSnapshotNanos = clock.getAsLong();
+    }
+
+    DurationObserver pollToTask(String kind) {
+      Histogram histogram =
+          scope
+              .tagged(Collections.singletonMap("TaskKind", kind))
+              .histogram(POLL_TO_TASK_LATENCY, LATENCY_BUCKETS);
+      return nanos -> histogram.recordDuration(Duration.ofNanos(nanos));
+    }
+
+    DurationObserver scheduleToStart(String kind, String taskList) {
+      Map<String, String> tags = new HashMap<>();
+      tags.put("TaskKind", kind);
+      tags.put(TASK_LIST_TAG, taskList);
+      Histogram histogram = scope.tagged(tags).histogram(SCHEDULE_TO_START_LAG, LATENCY_BUCKETS);
+      AtomicReference<LatencyRecorder> recorder =
+          scheduleToStart.computeIfAbsent(
+              kind + ":" + taskList, k -> new AtomicReference<>(new LatencyRecorder()));
+      return nanos -> {
+        histogram.recordDuration(Duration.ofNanos(nanos));
+        recorder.get().record(nanos, TimeUnit.NANOSECONDS);
+      };
+    }
+
+    synchronized Snapshot snapshot() {
+      long now = clock.getAsLong();
+      long intervalNanos = Math.max(1, now - lastSnapshotNanos);
+      lastSnapshotNanos = now;
+
+      long hits = stickyHits.sumThenReset();
+      long misses = stickyMisses.sumThenReset();
+      double hitRatio = hits + misses == 0 ? Double.NaN : (double) hits / (hits + misses);
+      double threadUtilization = (double) activeWorkflowThreads.get() / maxWorkflowThreads;
+      // Little's law: activities in flight = completions per second * seconds per completion,
+      // which is the execution time completed in the interval over the interval.
+      double activitiesInFlight = (double) activityExecutionNanos.sumThenReset() / intervalNanos;
+      double slotSaturation = activitiesInFlight / maxConcurrentActivities;
+      Map<String, Long> lag = new TreeMap<>();
+      scheduleToStart.forEach(
+          (key, recorder) -> {
+            LatencyRecorder interval = recorder.getAndSet(new LatencyRecorder());
+            if (interval.count() > 0) {
+              lag.put(key, interval.percentile(90));
+            }
+          });
+
+      if (!Double.isNaN(hitRatio)) {
+        scope.gauge(STICKY_CACHE_HIT_RATIO).update(hitRatio);
+      }
+      scope.gauge(WORKFLOW_THREAD_UTILIZATION).update(threadUtilization);
+      scope.gauge(ACTIVITY_SLOT_SATURATION).update(slotSaturation);
+      return new Snapshot(intervalNanos / 1e9, hitRatio, threadUtilization, slotSaturation, lag);
+    }
+  }
+
+  /** Forwards to the wrapped timer and reports every recorded duration to an observer. */
+  private static class ObservedTimer implements Timer, StopwatchRecorder {
+    private final Timer timer;
+    private final DurationObserver observer;
+
+    ObservedTimer(Timer timer, DurationObserver observer) {
+      this.timer = timer;
+      this.observer = observer;
+    }
+
+    @Override
+    public void record(Duration interval) {
+      timer.record(interval);
+      observer.observe(interval.getNanos());
+    }
+
+    @Override
+    public Stopwatch start() {
+      return new Stopwatch(System.nanoTime(), this);
+    }
+
+    @Override
+    public void recordStopwatch(long startNanos) {
+      record(Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+  }
+}
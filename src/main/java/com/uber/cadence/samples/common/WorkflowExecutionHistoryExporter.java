@@ -0,0 +1,197 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.GetWorkflowExecutionHistoryResponse;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.apache.thrift.TException;
+
+/**
+ * Exports a workflow execution history as newline delimited JSON, one event per line. Unlike
+ * {@link WorkflowExecutionHistoryPrinter} the history is never held in memory as a whole: it is
+ * read one GetWorkflowExecutionHistory page at a time and every page is written out before the
+ * next one is requested. Each line uses the same event layout as the JSON histories accepted by
+ * WorkflowReplayer.
+ *
+ * <p>The output goes to stdout unless a file is given. It is gzip compressed when --gzip is passed
+ * or the file name ends with .gz. Export throughput is reported on stderr.
+ */
+public class WorkflowExecutionHistoryExporter {
+
+  static final int PAGE_SIZE = 1000;
+
+  /** Serializes thrift HistoryEvent objects to the layout used by exported history files. */
+  static final Gson HISTORY_GSON =
+      new GsonBuilder()
+          .registerTypeHierarchyAdapter(ByteBuffer.class, new Base64ByteBufferAdapter())
+          // Thrift keeps the presence of primitive fields in bookkeeping fields that are not part
+          // of the event.
+          .setExclusionStrategies(
+              new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes f) {
+                  return f.getName().startsWith("__isset");
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                  return false;
+                }
+              })
+          .create();
+
+  /** Receives the events of a history one page at a time. */
+  public interface HistoryPageHandler {
+    void onPage(List<HistoryEvent> events) throws IOException;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2 || args.length > 5) {
+      System.err.println(
+          "Usage: java "
+              + WorkflowExecutionHistoryExporter.class.getName()
+              + " <workflowId> <runId> [--gzip] [--output <file>]");
+      System.exit(1);
+    }
+    WorkflowExecution workflowExecution = new WorkflowExecution();
+    workflowExecution.setWorkflowId(args[0]);
+    workflowExecution.setRunId(args[1]);
+    boolean gzip = false;
+    String outputFile = null;
+    for (int i = 2; i < args.length; i++) {
+      if ("--gzip".equals(args[i])) {
+        gzip = true;
+      } else if ("--output".equals(args[i]) && i + 1 < args.length) {
+        outputFile = args[++i];
+      } else {
+        System.err.println("Unknown argument: " + args[i]);
+        System.exit(1);
+      }
+    }
+
+    OutputStream out = outputFile == null ? System.out : new FileOutputStream(outputFile);
+    if (gzip || (outputFile != null && outputFile.endsWith(".gz"))) {
+      out = new GZIPOutputStream(out, 64 * 1024);
+    }
+    long startTime = System.nanoTime();
+    long events;
+    try (Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+      events = export(CadenceUtil.getService(), DOMAIN, workflowExecution, writer);
+    }
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    System.err.printf(
+        "Exported %d events in %.2fs (%.0f events/s)%n", events, seconds, events / seconds);
+    System.exit(0);
+  }
+
+  /**
+   * Writes every event of the history to the writer as one line of JSON.
+   *
+   * @return number of exported events
+   */
+  public static long export(
+      IWorkflowService service, String domain, WorkflowExecution execution, Writer writer)
+      throws TException, IOException {
+    long[] count = new long[1];
+    readHistory(
+        service,
+        domain,
+        execution,
+        events -> {
+          for (HistoryEvent event : events) {
+            HISTORY_GSON.toJson(event, HistoryEvent.class, writer);
+            writer.write('\n');
+          }
+          writer.flush();
+          count[0] += events.size();
+        });
+    return count[0];
+  }
+
+  /** Reads a closed or running history page by page without waiting for new events. */
+  public static void readHistory(
+      IWorkflowService service,
+      String domain,
+      WorkflowExecution execution,
+      HistoryPageHandler handler)
+      throws TException, IOException {
+    byte[] nextPageToken = null;
+    do {
+      GetWorkflowExecutionHistoryRequest request = new GetWorkflowExecutionHistoryRequest();
+      request.setDomain(domain);
+      request.setExecution(execution);
+      request.setMaximumPageSize(PAGE_SIZE);
+      request.setNextPageToken(nextPageToken);
+      GetWorkflowExecutionHistoryResponse response = service.GetWorkflowExecutionHistory(request);
+      if (response.getHistory() != null && response.getHistory().getEvents() != null) {
+        handler.onPage(response.getHistory().getEvents());
+      }
+      nextPageToken = response.getNextPageToken();
+    } while (nextPageToken != null && nextPageToken.length > 0);
+  }
+
+  /** Writes thrift binary fields as base64 strings, the encoding used by exported histories. */
+  private static class Base64ByteBufferAdapter extends TypeAdapter<ByteBuffer> {
+    @Override
+    public void write(JsonWriter out, ByteBuffer value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      ByteBuffer buffer = value.duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      out.value(Base64.getEncoder().encodeToString(bytes));
+    }
+
+    @Override
+    public ByteBuffer read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return ByteBuffer.wrap(Base64.getDecoder().decode(in.nextString()));
+    }
+  }
+}
@@ -21,12 +21,12 @@ import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.internal.common.WorkflowExecutionUtils;
-import com.uber.cadence.serviceclient.ClientOptions;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
 import com.uber.cadence.serviceclient.IWorkflowService;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
 
 /**
- * Prints a workflow execution history to the console.
+ * Prints a workflow execution history to the console. The whole history is loaded into memory, use
+ * {@link WorkflowExecutionHistoryExporter} to stream large histories to a file instead.
  *
  * @author fateev
  */
@@ -40,7 +40,7 @@ public class WorkflowExecutionHistoryPrinter {
               + " <workflowId> <runId>");
       System.exit(1);
     }
-    IWorkflowService cadenceService = new WorkflowServiceTChannel(ClientOptions.defaultInstance());
+    IWorkflowService cadenceService = CadenceUtil.getService();
     WorkflowExecution workflowExecution = new WorkflowExecution();
     String workflowId = args[0];
     workflowExecution.setWorkflowId(workflowId);
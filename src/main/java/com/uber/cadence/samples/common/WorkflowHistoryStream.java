@@ -0,0 +1,462 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.BadRequestError;
+import com.uber.cadence.DescribeWorkflowExecutionRequest;
+import com.uber.cadence.DescribeWorkflowExecutionResponse;
+import com.uber.cadence.EntityNotExistsError;
+import com.uber.cadence.EventType;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.GetWorkflowExecutionHistoryResponse;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.HistoryEventFilterType;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+
+/**
+ * Streams the history events of a workflow run as they are recorded, optionally following the
+ * chain of runs created by continue as new and cron schedules. Progress displays and integrations
+ * can react to what a workflow does without polling it.
+ *
+ * <p>Each subscription long polls GetWorkflowExecutionHistory with waitForNewEvent through the
+ * asynchronous service API, so it does not occupy a thread while the workflow is idle. Transports
+ * without the asynchronous call, such as the gRPC Thrift2ProtoAdapter, fall back to blocking polls
+ * on a separate pool that grows as needed: there every pending poll holds a thread of its own, but
+ * never one of the pool that calls listeners. Listeners are called on a small shared pool, one
+ * event at a time per subscription. A subscription never
+ * requests the next page before the listener has asked for all buffered events, so a slow listener
+ * slows down polling instead of filling memory. Failed polls are retried with the last page token;
+ * when the server no longer accepts the token the history is read again and events up to the last
+ * delivered one are skipped.
+ *
+ * <p>Subscriptions to close events only, see {@link #subscribeToCloseEvents}, are answered by the
+ * server only when a run closes, so watching thousands of runs costs one pending poll per run. With
+ * a transport that only has blocking calls that is also one thread per run.
+ */
+public class WorkflowHistoryStream implements AutoCloseable {
+
+  static final int PAGE_SIZE = 100;
+  private static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+  private static final long MAX_RETRY_DELAY_MILLIS = 10_000;
+
+  /** Receives the events of a subscription. Methods are never called concurrently. */
+  public interface Listener {
+
+    /**
+     * Called once before any event. The default requests an unbounded number of events, override
+     * it to control the rate of events with {@link Subscription#request(long)}.
+     */
+    default void onSubscribe(Subscription subscription) {
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    /** @param run execution that recorded the event */
+    void onEvent(WorkflowExecution run, HistoryEvent event);
+
+    /** Called after the last event of a closed run that is not followed by another one. */
+    default void onClosed(WorkflowExecution lastRun) {}
+
+    /** Called when the history can no longer be read, for example because it was deleted. */
+    default void onError(Throwable failure) {}
+  }
+
+  /** Handle of a subscription, see {@link #subscribe}. */
+  public interface Subscription extends AutoCloseable {
+
+    /** Allows delivery of n more events. */
+    void request(long n);
+
+    /** @return run of the last delivered event, use it with {@link #getLastEventId} to resume */
+    WorkflowExecution getRun();
+
+    /** @return ID of the last delivered event, 0 when no event was delivered yet */
+    long getLastEventId();
+
+    /** Stops the subscription. No listener method is called after close returns on its thread. */
+    @Override
+    void close();
+  }
+
+  private final IWorkflowService service;
+  private final String domain;
+  private final ScheduledExecutorService executor;
+  // Runs the blocking polls of transports without an asynchronous history call.
+  private final ExecutorService blockingPollExecutor;
+  private final Set<StreamSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+  public WorkflowHistoryStream(IWorkflowService service, String domain) {
+    this(service, domain, 2);
+  }
+
+  /**
+   * @param threads size of the pool that calls listeners and schedules retries, blocking polls run
+   *     on their own threads
+   */
+  public WorkflowHistoryStream(IWorkflowService service, String domain, int threads) {
+    this.service = service;
+    this.domain = domain;
+    this.executor =
+        Executors.newScheduledThreadPool(
+            threads,
+            r -> {
+              Thread thread = new Thread(r, "workflow-history-stream");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.blockingPollExecutor =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread thread = new Thread(r, "workflow-history-poll");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Streams all events of a run, or of the current run when the run ID is not set. */
+  public Subscription subscribe(WorkflowExecution execution, Listener listener) {
+    return subscribe(execution, 0, false, listener);
+  }
+
+  /**
+   * Streams the events of a run that come after the given event.
+   *
+   * @param execution run to start from, the current run when the run ID is not set
+   * @param afterEventId events up to this ID are skipped, pass the last event seen before a
+   *     disconnect to resume
+   * @param followContinueAsNew whether to continue with the next run when the run continues as
+   *     new, which includes every run of a cron workflow
+   */
+  public Subscription subscribe(
+      WorkflowExecution execution,
+      long afterEventId,
+      boolean followContinueAsNew,
+      Listener listener) {
+    return subscribe(execution, afterEventId, followContinueAsNew, false, listener);
+  }
+
+  /**
+   * Streams only the event that closes a run: completed, failed, timed out, canceled, terminated
+   * or continued as new. When runs are followed the close event of every run is delivered, and
+   * {@link Listener#onClosed} is called after the close event of the last one.
+   *
+   * @param execution run to watch, the current run when the run ID is not set
+   * @param followContinueAsNew whether to continue with the next run when the run continues as
+   *     new, which includes every run of a cron workflow
+   */
+  public Subscription subscribeToCloseEvents(
+      WorkflowExecution execution, boolean followContinueAsNew, Listener listener) {
+    return subscribe(execution, 0, followContinueAsNew, true, listener);
+  }
+
+  private Subscription subscribe(
+      WorkflowExecution execution,
+      long afterEventId,
+      boolean followContinueAsNew,
+      boolean closeEventOnly,
+      Listener listener) {
+    StreamSubscription subscription =
+        new StreamSubscription(
+            new WorkflowExecution()
+                .setWorkflowId(execution.getWorkflowId())
+                .setRunId(execution.getRunId()),
+            afterEventId,
+            followContinueAsNew,
+            closeEventOnly,
+            listener);
+    subscriptions.add(subscription);
+    executor.execute(subscription::start);
+    return subscription;
+  }
+
+  /** Closes all subscriptions and releases the threads. */
+  @Override
+  public void close() {
+    for (StreamSubscription subscription : subscriptions) {
+      subscription.close();
+    }
+    executor.shutdown();
+    blockingPollExecutor.shutdownNow();
+  }
+
+  private class StreamSubscription
+      implements Subscription, AsyncMethodCallback<GetWorkflowExecutionHistoryResponse> {
+    private final boolean followContinueAsNew;
+    private final boolean closeEventOnly;
+    private final Listener listener;
+    private final AtomicLong demand = new AtomicLong();
+    // Number of pending drain requests, only the caller that raises it from 0 drains.
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    // The fields below are guarded by this.
+    private final Queue<HistoryEvent> buffer = new ArrayDeque<>();
+    private WorkflowExecution run;
+    private long afterEventId;
+    private byte[] nextPageToken;
+    private boolean polling;
+    private long retryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+    // Run that continued the current one, streamed once all events of the current run are out.
+    private WorkflowExecution nextRun;
+    // Set when the run closed and no run follows it.
+    private boolean finished;
+    private Throwable failure;
+    // Run and ID of the last event handed to the listener.
+    private volatile WorkflowExecution deliveredRun;
+    private volatile long deliveredEventId;
+
+    StreamSubscription(
+        WorkflowExecution run,
+        long afterEventId,
+        boolean followContinueAsNew,
+        boolean closeEventOnly,
+        Listener listener) {
+      this.run = run;
+      this.afterEventId = afterEventId;
+      this.deliveredRun = run;
+      this.deliveredEventId = afterEventId;
+      this.followContinueAsNew = followContinueAsNew;
+      this.closeEventOnly = closeEventOnly;
+      this.listener = listener;
+    }
+
+    void start() {
+      if (run.getRunId() == null) {
+        // Pin the current run, so that events of a run started later are not mixed into it.
+        try {
+          DescribeWorkflowExecutionResponse response =
+              service.DescribeWorkflowExecution(
+                  new DescribeWorkflowExecutionRequest().setDomain(domain).setExecution(run));
+          synchronized (this) {
+            run = response.getWorkflowExecutionInfo().getExecution();
+            deliveredRun = run;
+          }
+        } catch (TException e) {
+          synchronized (this) {
+            failure = e;
+          }
+        }
+      }
+      try {
+        listener.onSubscribe(this);
+      } finally {
+        drain();
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        throw new IllegalArgumentException("n must be positive: " + n);
+      }
+      demand.accumulateAndGet(
+          n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+      drain();
+    }
+
+    @Override
+    public WorkflowExecution getRun() {
+      return deliveredRun;
+    }
+
+    @Override
+    public long getLastEventId() {
+      return deliveredEventId;
+    }
+
+    @Override
+    public void close() {
+      cancelled = true;
+      subscriptions.remove(this);
+    }
+
+    /** Delivers buffered events as far as the demand allows and polls when the buffer is empty. */
+    private void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      executor.execute(
+          () -> {
+            int missed = 1;
+            do {
+              drainLoop();
+              missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+          });
+    }
+
+    private void drainLoop() {
+      while (!cancelled) {
+        HistoryEvent event;
+        WorkflowExecution eventRun;
+        GetWorkflowExecutionHistoryRequest request = null;
+        synchronized (this) {
+          if (failure != null || (finished && buffer.isEmpty())) {
+            break;
+          }
+          if (buffer.isEmpty() && !polling) {
+            if (nextRun != null) {
+              run = nextRun;
+              nextRun = null;
+              afterEventId = 0;
+            }
+            polling = true;
+            request = newRequest();
+          }
+          event = demand.get() == 0 ? null : buffer.poll();
+          eventRun = run;
+        }
+        if (request != null) {
+          poll(request);
+        }
+        if (event == null) {
+          return;
+        }
+        if (demand.get() != Long.MAX_VALUE) {
+          demand.decrementAndGet();
+        }
+        deliveredRun = eventRun;
+        deliveredEventId = event.getEventId();
+        listener.onEvent(eventRun, event);
+      }
+      if (cancelled) {
+        return;
+      }
+      close();
+      Throwable error;
+      synchronized (this) {
+        error = failure;
+      }
+      if (error != null) {
+        listener.onError(error);
+      } else {
+        listener.onClosed(deliveredRun);
+      }
+    }
+
+    private synchronized GetWorkflowExecutionHistoryRequest newRequest() {
+      GetWorkflowExecutionHistoryRequest request =
+          new GetWorkflowExecutionHistoryRequest()
+              .setDomain(domain)
+              .setExecution(run)
+              .setMaximumPageSize(PAGE_SIZE)
+              .setWaitForNewEvent(true)
+              .setNextPageToken(nextPageToken);
+      if (closeEventOnly) {
+        request.setHistoryEventFilterType(HistoryEventFilterType.CLOSE_EVENT);
+      }
+      return request;
+    }
+
+    private void poll(GetWorkflowExecutionHistoryRequest request) {
+      if (cancelled) {
+        return;
+      }
+      try {
+        service.GetWorkflowExecutionHistory(request, this);
+      } catch (UnsupportedOperationException e) {
+        // Transports without an asynchronous history call block a thread per poll instead. The
+        // thread is never taken from the pool that delivers events, so idle runs cannot hold up
+        // the delivery to other subscriptions.
+        blockingPollExecutor.execute(
+            () -> {
+              try {
+                onComplete(service.GetWorkflowExecutionHistory(request));
+              } catch (Exception error) {
+                onError(error);
+              }
+            });
+      } catch (TException e) {
+        onError(e);
+      }
+    }
+
+    @Override
+    public void onComplete(GetWorkflowExecutionHistoryResponse response) {
+      if (cancelled) {
+        return;
+      }
+      synchronized (this) {
+        String nextRunId = null;
+        boolean empty = true;
+        if (response.getHistory() != null && response.getHistory().getEvents() != null) {
+          for (HistoryEvent event : response.getHistory().getEvents()) {
+            empty = false;
+            if (event.getEventType() == EventType.WorkflowExecutionContinuedAsNew) {
+              nextRunId =
+                  event.getWorkflowExecutionContinuedAsNewEventAttributes().getNewExecutionRunId();
+            }
+            if (event.getEventId() > afterEventId) {
+              buffer.add(event);
+              afterEventId = event.getEventId();
+            }
+          }
+        }
+        nextPageToken = response.getNextPageToken();
+        if (nextPageToken == null || nextPageToken.length == 0) {
+          nextPageToken = null;
+          if (followContinueAsNew && nextRunId != null) {
+            nextRun =
+                new WorkflowExecution().setWorkflowId(run.getWorkflowId()).setRunId(nextRunId);
+          } else if (!closeEventOnly || !empty) {
+            // A close event poll that timed out while the run is open can come back without a
+            // token, it is simply repeated.
+            finished = true;
+          }
+        }
+        polling = false;
+        retryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+      }
+      drain();
+    }
+
+    @Override
+    public void onError(Exception e) {
+      if (cancelled) {
+        return;
+      }
+      synchronized (this) {
+        if (e instanceof EntityNotExistsError) {
+          failure = e;
+          polling = false;
+        } else {
+          if (e instanceof BadRequestError) {
+            // Most likely an expired page token: read the run again and skip what was seen.
+            nextPageToken = null;
+          }
+          executor.schedule(() -> poll(newRequest()), retryDelayMillis, TimeUnit.MILLISECONDS);
+          retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+          return;
+        }
+      }
+      drain();
+    }
+  }
+}
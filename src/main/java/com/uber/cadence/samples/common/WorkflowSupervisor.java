@@ -0,0 +1,239 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.DuplicateWorkflowException;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps singleton workflows, such as periodic workflows that continue as new forever, running. A
+ * supervised workflow is started right away, or adopted when a run with its ID is already running,
+ * and started again as soon as its last run closes.
+ *
+ * <p>Runs are watched with a {@link WorkflowHistoryStream} subscription to their close events.
+ * Nothing sleeps, and the close event answers a pending long poll, so a restart follows a close
+ * within milliseconds however many workflows are supervised. With a transport that has the
+ * asynchronous history call no thread blocks per workflow and one process can supervise thousands
+ * of workflows. With one that lacks it, such as the gRPC Thrift2ProtoAdapter, every supervised
+ * workflow holds a poll thread of the stream. Runs that continue as new are followed. Runs that
+ * close with a failure and starts that fail are retried with an exponential backoff, so a workflow
+ * that fails right away does not restart in a tight loop.
+ */
+public class WorkflowSupervisor implements AutoCloseable {
+
+  private static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+  private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+  /** Starts a new run of a supervised workflow, usually with WorkflowClient.start. */
+  public interface Starter {
+    /**
+     * @return the started execution
+     * @throws DuplicateWorkflowException if a run with the workflow ID is already running
+     */
+    WorkflowExecution start();
+  }
+
+  /**
+   * Receives what the supervisor does. Methods are called from the supervisor threads, and for
+   * different workflows concurrently.
+   */
+  public interface Listener {
+    default void onStarted(WorkflowExecution execution) {}
+
+    default void onAlreadyRunning(WorkflowExecution execution) {}
+
+    /** Called when the last run of a workflow closed, before the workflow is started again. */
+    default void onClosed(WorkflowExecution run, HistoryEvent closeEvent) {}
+
+    /** Called when a start failed, it is retried. */
+    default void onError(String workflowId, Throwable failure) {}
+  }
+
+  private final WorkflowHistoryStream stream;
+  private final Listener listener;
+  private final ScheduledExecutorService executor;
+  private final Map<String, Supervised> supervised = new ConcurrentHashMap<>();
+
+  public WorkflowSupervisor(IWorkflowService service, String domain, Listener listener) {
+    this(service, domain, listener, 2);
+  }
+
+  /**
+   * @param threads size of the pool that starts workflows and of the pool that delivers their close
+   *     events, both call the listener. Pending polls don't take threads of either pool.
+   */
+  public WorkflowSupervisor(
+      IWorkflowService service, String domain, Listener listener, int threads) {
+    this.stream = new WorkflowHistoryStream(service, domain, threads);
+    this.listener = listener;
+    this.executor =
+        Executors.newScheduledThreadPool(
+            threads,
+            r -> {
+              Thread thread = new Thread(r, "workflow-supervisor");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Starts supervising a workflow.
+   *
+   * @param workflowId ID of the workflow, the starter must start runs with this ID
+   * @throws IllegalStateException if the workflow is already supervised
+   */
+  public void supervise(String workflowId, Starter starter) {
+    Supervised workflow = new Supervised(workflowId, starter);
+    if (supervised.putIfAbsent(workflowId, workflow) != null) {
+      throw new IllegalStateException("Already supervised: " + workflowId);
+    }
+    executor.execute(workflow::start);
+  }
+
+  /** Stops supervising a workflow. Its current run keeps running. */
+  public void stopSupervising(String workflowId) {
+    Supervised workflow = supervised.remove(workflowId);
+    if (workflow != null) {
+      workflow.cancel();
+    }
+  }
+
+  /** Stops supervising all workflows and releases the threads. */
+  @Override
+  public void close() {
+    for (String workflowId : supervised.keySet()) {
+      stopSupervising(workflowId);
+    }
+    stream.close();
+    executor.shutdown();
+  }
+
+  private class Supervised implements WorkflowHistoryStream.Listener {
+    private final String workflowId;
+    private final Starter starter;
+    private volatile boolean cancelled;
+
+    // The fields below are guarded by this.
+    private WorkflowHistoryStream.Subscription subscription;
+    // Close event of the last run seen by the current subscription.
+    private HistoryEvent closeEvent;
+    // When the current run was started or adopted.
+    private long watchStartTime;
+    // Delay of the next restart after a failure, 0 restarts right away.
+    private long restartDelayMillis;
+
+    Supervised(String workflowId, Starter starter) {
+      this.workflowId = workflowId;
+      this.starter = starter;
+    }
+
+    void start() {
+      if (cancelled) {
+        return;
+      }
+      synchronized (this) {
+        watchStartTime = System.nanoTime();
+      }
+      WorkflowExecution execution;
+      try {
+        execution = starter.start();
+        listener.onStarted(execution);
+      } catch (DuplicateWorkflowException e) {
+        execution = e.getExecution();
+        listener.onAlreadyRunning(execution);
+      } catch (RuntimeException e) {
+        listener.onError(workflowId, e);
+        restart(true);
+        return;
+      }
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        closeEvent = null;
+        subscription = stream.subscribeToCloseEvents(execution, true, this);
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+      if (subscription != null) {
+        subscription.close();
+      }
+    }
+
+    @Override
+    public void onEvent(WorkflowExecution run, HistoryEvent event) {
+      // Runs that continue as new are followed by the subscription.
+      synchronized (this) {
+        closeEvent = event;
+      }
+    }
+
+    @Override
+    public void onClosed(WorkflowExecution lastRun) {
+      if (cancelled) {
+        return;
+      }
+      HistoryEvent event;
+      synchronized (this) {
+        event = closeEvent;
+      }
+      listener.onClosed(lastRun, event);
+      restart(event.getEventType() != EventType.WorkflowExecutionCompleted);
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+      // The run is gone, for example because its retention period has passed. Other failures
+      // are retried by the subscription.
+      restart(false);
+    }
+
+    /** @param failed whether the run or the start failed, which backs off the next restart */
+    private void restart(boolean failed) {
+      if (cancelled) {
+        return;
+      }
+      long delay;
+      synchronized (this) {
+        long runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - watchStartTime);
+        if (!failed || runMillis > MAX_RETRY_DELAY_MILLIS) {
+          // A run that lived long failed for reasons unrelated to the previous restarts.
+          restartDelayMillis = 0;
+        }
+        delay = restartDelayMillis;
+        if (failed) {
+          restartDelayMillis =
+              Math.min(
+                  Math.max(restartDelayMillis * 2, INITIAL_RETRY_DELAY_MILLIS),
+                  MAX_RETRY_DELAY_MILLIS);
+        }
+      }
+      executor.schedule(this::start, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.DataConverterException;
+import com.uber.cadence.converter.JsonDataConverter;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DataConverter that encodes values with registered per-class {@link Codec}s and falls back to
+ * JSON for everything else.
+ *
+ * <p>Codecs are looked up by the exact class of each value, and the result, including the absence
+ * of a codec, is cached. Every value is written with the tag of its codec, and decoded by that tag
+ * rather than by the declared type, so a registered class passed as Object, as an interface or as
+ * any other supertype reads back as the class that was written. Values are encoded into a thread
+ * local buffer that is reused between calls. A binary payload starts with a marker byte that
+ * cannot start a UTF-8 JSON document, so payloads written by the fallback converter, including
+ * those written before a codec was registered, are still decoded as JSON.
+ *
+ * <p>Layout: marker, value count, then per value a presence byte, the codec tag and the codec
+ * output.
+ */
+public class BinaryDataConverter implements DataConverter {
+
+  /** 0xC0 never occurs in UTF-8. */
+  static final byte MARKER = (byte) 0xC0;
+
+  private static final int INITIAL_BUFFER_SIZE = 512;
+  // Buffers that grew beyond this size for a large payload are not kept for the next call.
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private static final ThreadLocal<BinaryWriter> WRITER =
+      ThreadLocal.withInitial(() -> new BinaryWriter(INITIAL_BUFFER_SIZE));
+
+  private final Map<Class<?>, TaggedCodec> codecs;
+  private final Map<String, Codec<?>> codecsByTag;
+  private final ConcurrentMap<Class<?>, Optional<TaggedCodec>> resolved =
+      new ConcurrentHashMap<>();
+  private final DataConverter fallback;
+
+  private BinaryDataConverter(Builder builder) {
+    this.codecs = new HashMap<>(builder.codecs);
+    this.codecsByTag = new HashMap<>();
+    for (TaggedCodec codec : codecs.values()) {
+      codecsByTag.put(codec.tag, codec.codec);
+    }
+    this.fallback = builder.fallback;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public byte[] toData(Object... values) throws DataConverterException {
+    if (values == null || values.length == 0) {
+      return null;
+    }
+    for (Object value : values) {
+      if (value != null && !resolve(value.getClass()).isPresent()) {
+        return fallback.toData(values);
+      }
+    }
+    BinaryWriter writer = WRITER.get();
+    try {
+      writer.writeByte(MARKER);
+      writer.writeInt(values.length);
+      for (Object value : values) {
+        writer.writeBoolean(value != null);
+        if (value != null) {
+          TaggedCodec codec = resolve(value.getClass()).get();
+          writer.writeString(codec.tag);
+          encode(codec.codec, value, writer);
+        }
+      }
+      return writer.toByteArray();
+    } catch (RuntimeException e) {
+      throw new DataConverterException("failed to encode " + Arrays.toString(values), e);
+    } finally {
+      writer.reset();
+      if (writer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+        WRITER.remove();
+      }
+    }
+  }
+
+  @Override
+  public <T> T fromData(byte[] content, Class<T> valueClass, Type valueType)
+      throws DataConverterException {
+    if (!isBinary(content)) {
+      return fallback.fromData(content, valueClass, valueType);
+    }
+    @SuppressWarnings("unchecked")
+    T result = (T) decode(content, valueType)[0];
+    return result;
+  }
+
+  @Override
+  public Object[] fromDataArray(byte[] content, Type... valueTypes) throws DataConverterException {
+    if (!isBinary(content)) {
+      return fallback.fromDataArray(content, valueTypes);
+    }
+    return decode(content, valueTypes);
+  }
+
+  private Object[] decode(byte[] content, Type... valueTypes) {
+    try {
+      BinaryReader reader = new BinaryReader(content, 1);
+      int count = reader.readInt();
+      // Like the JSON converter, tolerate arguments added to or removed from the end of a
+      // signature: missing values are null and extra values are ignored.
+      Object[] result = new Object[valueTypes.length];
+      for (int i = 0; i < Math.min(count, valueTypes.length); i++) {
+        if (reader.readBoolean()) {
+          String tag = reader.readString();
+          Codec<?> codec = codecsByTag.get(tag);
+          if (codec == null) {
+            throw new IllegalArgumentException("no codec registered for " + tag);
+          }
+          result[i] = codec.decode(reader);
+        }
+      }
+      return result;
+    } catch (RuntimeException e) {
+      throw new DataConverterException(content, valueTypes, e);
+    }
+  }
+
+  private static boolean isBinary(byte[] content) {
+    return content != null && content.length > 0 && content[0] == MARKER;
+  }
+
+  private Optional<TaggedCodec> resolve(Class<?> valueClass) {
+    Optional<TaggedCodec> codec = resolved.get(valueClass);
+    if (codec == null) {
+      codec = resolved.computeIfAbsent(valueClass, c -> Optional.ofNullable(codecs.get(c)));
+    }
+    return codec;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void encode(Codec<T> codec, Object value, BinaryWriter writer) {
+    codec.encode((T) value, writer);
+  }
+
+  private static final class TaggedCodec {
+    final String tag;
+    final Codec<?> codec;
+
+    TaggedCodec(String tag, Codec<?> codec) {
+      this.tag = tag;
+      this.codec = codec;
+    }
+  }
+
+  public static class Builder {
+    private final Map<Class<?>, TaggedCodec> codecs = new HashMap<>();
+    private DataConverter fallback = JsonDataConverter.getInstance();
+
+    private Builder() {
+      // Short tags for the built in codecs keep argument lists small.
+      codecs.put(String.class, new TaggedCodec("s", Codecs.STRING));
+      codecs.put(Integer.class, new TaggedCodec("i", Codecs.INTEGER));
+      codecs.put(Long.class, new TaggedCodec("l", Codecs.LONG));
+      codecs.put(Boolean.class, new TaggedCodec("z", Codecs.BOOLEAN));
+      codecs.put(Double.class, new TaggedCodec("d", Codecs.DOUBLE));
+      codecs.put(byte[].class, new TaggedCodec("b", Codecs.BYTES));
+    }
+
+    /**
+     * Registers a codec for values of exactly this class, replacing a previous one. Values are
+     * tagged with the class name, so every worker that reads them must register the same class.
+     */
+    public <T> Builder register(Class<T> valueClass, Codec<? super T> codec) {
+      codecs.put(
+          Objects.requireNonNull(valueClass),
+          new TaggedCodec(valueClass.getName(), Objects.requireNonNull(codec)));
+      return this;
+    }
+
+    /** Converter for values without a codec, JsonDataConverter by default. */
+    public Builder setFallback(DataConverter fallback) {
+      this.fallback = Objects.requireNonNull(fallback);
+      return this;
+    }
+
+    public BinaryDataConverter build() {
+      return new BinaryDataConverter(this);
+    }
+  }
+}
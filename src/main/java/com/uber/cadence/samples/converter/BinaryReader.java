@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import java.nio.charset.StandardCharsets;
+
+/** Reads the values written by {@link BinaryWriter} from a byte array. */
+public final class BinaryReader {
+
+  private final byte[] buffer;
+  private int position;
+
+  BinaryReader(byte[] buffer, int position) {
+    this.buffer = buffer;
+    this.position = position;
+  }
+
+  public int readByte() {
+    require(1);
+    return buffer[position++];
+  }
+
+  public boolean readBoolean() {
+    return readByte() != 0;
+  }
+
+  public int readInt() {
+    require(4);
+    int value =
+        (buffer[position] & 0xff) << 24
+            | (buffer[position + 1] & 0xff) << 16
+            | (buffer[position + 2] & 0xff) << 8
+            | (buffer[position + 3] & 0xff);
+    position += 4;
+    return value;
+  }
+
+  public long readLong() {
+    long high = readInt();
+    return high << 32 | (readInt() & 0xffffffffL);
+  }
+
+  public double readDouble() {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  public byte[] readBytes() {
+    int length = readLength();
+    byte[] value = new byte[length];
+    System.arraycopy(buffer, position, value, 0, length);
+    position += length;
+    return value;
+  }
+
+  public String readString() {
+    int length = readLength();
+    String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return value;
+  }
+
+  boolean hasRemaining() {
+    return position < buffer.length;
+  }
+
+  private int readLength() {
+    int length = readInt();
+    if (length < 0) {
+      throw new IllegalArgumentException("negative length " + length);
+    }
+    require(length);
+    return length;
+  }
+
+  private void require(int bytes) {
+    if (buffer.length - position < bytes) {
+      throw new IllegalArgumentException(
+          "truncated payload: need " + bytes + " bytes at offset " + position);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Appends big endian primitives and length prefixed UTF-8 strings to a growable buffer. */
+public final class BinaryWriter {
+
+  private byte[] buffer;
+  private int size;
+
+  BinaryWriter(int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  public void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  public void writeBoolean(boolean value) {
+    writeByte(value ? 1 : 0);
+  }
+
+  public void writeInt(int value) {
+    ensureCapacity(4);
+    buffer[size++] = (byte) (value >>> 24);
+    buffer[size++] = (byte) (value >>> 16);
+    buffer[size++] = (byte) (value >>> 8);
+    buffer[size++] = (byte) value;
+  }
+
+  public void writeLong(long value) {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+
+  public void writeDouble(double value) {
+    writeLong(Double.doubleToRawLongBits(value));
+  }
+
+  /** Writes the length followed by the bytes. */
+  public void writeBytes(byte[] value) {
+    writeInt(value.length);
+    ensureCapacity(value.length);
+    System.arraycopy(value, 0, buffer, size, value.length);
+    size += value.length;
+  }
+
+  /** Writes the UTF-8 length followed by the UTF-8 bytes. */
+  public void writeString(String value) {
+    int length = value.length();
+    // Strings are mostly ASCII: encode in place and fall back to the encoder on the first non
+    // ASCII character.
+    ensureCapacity(4 + length);
+    int start = size + 4;
+    int i = 0;
+    for (; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      buffer[start + i] = (byte) c;
+    }
+    if (i == length) {
+      writeInt(length);
+      size += length;
+    } else {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return buffer.length;
+  }
+
+  void reset() {
+    size = 0;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  private void ensureCapacity(int additional) {
+    if (size + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+    }
+  }
+}
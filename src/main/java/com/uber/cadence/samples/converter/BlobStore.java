@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import java.io.IOException;
+
+/**
+ * Content addressed storage for payloads offloaded by {@link OffloadingDataConverter}. The key of
+ * a blob is derived from its content only, so storing the same content twice stores it once, and
+ * blobs are never modified after they are stored.
+ */
+public interface BlobStore {
+
+  /** Stores the blob unless a blob with the same content exists, and returns its key. */
+  String put(byte[] blob) throws IOException;
+
+  /** @throws java.io.FileNotFoundException if no blob with this key exists */
+  byte[] get(String key) throws IOException;
+}
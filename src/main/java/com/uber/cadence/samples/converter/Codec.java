@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+/**
+ * Binary encoding of one class for {@link BinaryDataConverter}. Values are written one after the
+ * other into the same buffer, so a codec must read back exactly what it wrote. Codecs never see
+ * null; the converter encodes nulls itself.
+ */
+public interface Codec<T> {
+
+  void encode(T value, BinaryWriter out);
+
+  T decode(BinaryReader in);
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+/** Codecs for the types that BinaryDataConverter supports out of the box. */
+final class Codecs {
+
+  static final Codec<String> STRING =
+      new Codec<String>() {
+        @Override
+        public void encode(String value, BinaryWriter out) {
+          out.writeString(value);
+        }
+
+        @Override
+        public String decode(BinaryReader in) {
+          return in.readString();
+        }
+      };
+
+  static final Codec<Integer> INTEGER =
+      new Codec<Integer>() {
+        @Override
+        public void encode(Integer value, BinaryWriter out) {
+          out.writeInt(value);
+        }
+
+        @Override
+        public Integer decode(BinaryReader in) {
+          return in.readInt();
+        }
+      };
+
+  static final Codec<Long> LONG =
+      new Codec<Long>() {
+        @Override
+        public void encode(Long value, BinaryWriter out) {
+          out.writeLong(value);
+        }
+
+        @Override
+        public Long decode(BinaryReader in) {
+          return in.readLong();
+        }
+      };
+
+  static final Codec<Boolean> BOOLEAN =
+      new Codec<Boolean>() {
+        @Override
+        public void encode(Boolean value, BinaryWriter out) {
+          out.writeBoolean(value);
+        }
+
+        @Override
+        public Boolean decode(BinaryReader in) {
+          return in.readBoolean();
+        }
+      };
+
+  static final Codec<Double> DOUBLE =
+      new Codec<Double>() {
+        @Override
+        public void encode(Double value, BinaryWriter out) {
+          out.writeDouble(value);
+        }
+
+        @Override
+        public Double decode(BinaryReader in) {
+          return in.readDouble();
+        }
+      };
+
+  static final Codec<byte[]> BYTES =
+      new Codec<byte[]>() {
+        @Override
+        public void encode(byte[] value, BinaryWriter out) {
+          out.writeBytes(value);
+        }
+
+        @Override
+        public byte[] decode(BinaryReader in) {
+          return in.readBytes();
+        }
+      };
+
+  private Codecs() {}
+}
@@ -0,0 +1,283 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.DataConverterException;
+import com.uber.m3.tally.NoopScope;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.util.Duration;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * DataConverter decorator that deflates the payloads of the wrapped converter once they reach a
+ * size threshold, which keeps large inputs and results from inflating history size and replay
+ * time. A compressed payload starts with the marker byte 0xC1, followed by the uncompressed length.
+ * Payloads without the marker, such as those written before compression was enabled, are passed to
+ * the wrapped converter unchanged. Payloads that do not get smaller are stored uncompressed.
+ *
+ * <p>The marker is only unambiguous if the wrapped converter never writes a payload that starts
+ * with 0xC1. That holds for converters writing UTF-8 text, such as JSON, in which 0xC1 never
+ * occurs, and for {@link BinaryDataConverter}. Converters writing other binary formats, such as
+ * protobuf, may start a payload with 0xC1 and must not be wrapped.
+ *
+ * <p>The uncompressed length is checked against a maximum before any memory is allocated, and a
+ * payload must inflate to exactly that length, so a corrupt or malicious payload cannot make the
+ * worker allocate more than the maximum.
+ *
+ * <p>Deflater and Inflater hold native memory and are expensive to create, so they are pooled.
+ *
+ * <p>Reports to the metrics scope:
+ *
+ * <ul>
+ *   <li>data-converter-compressed-payloads: number of payloads stored compressed
+ *   <li>data-converter-uncompressed-bytes and data-converter-compressed-bytes: their sizes before
+ *       and after compression, the ratio of the two is the compression ratio
+ *   <li>data-converter-compress-latency and data-converter-decompress-latency: CPU cost
+ * </ul>
+ */
+public class CompressingDataConverter implements DataConverter {
+
+  /** 0xC1 never occurs in UTF-8 and differs from {@link BinaryDataConverter#MARKER}. */
+  static final byte MARKER = (byte) 0xC1;
+
+  private static final int HEADER_SIZE = 5;
+
+  private final DataConverter delegate;
+  private final int threshold;
+  private final int level;
+  private final int maxUncompressedSize;
+  private final BlockingQueue<Deflater> deflaters;
+  private final BlockingQueue<Inflater> inflaters;
+  private final Scope metricsScope;
+
+  private CompressingDataConverter(Builder builder) {
+    this.delegate = builder.delegate;
+    this.threshold = builder.threshold;
+    this.level = builder.level;
+    this.maxUncompressedSize = builder.maxUncompressedSize;
+    this.deflaters = new ArrayBlockingQueue<>(builder.poolSize);
+    this.inflaters = new ArrayBlockingQueue<>(builder.poolSize);
+    this.metricsScope = builder.metricsScope;
+  }
+
+  public static Builder newBuilder(DataConverter delegate) {
+    return new Builder(delegate);
+  }
+
+  @Override
+  public byte[] toData(Object... values) throws DataConverterException {
+    byte[] data = delegate.toData(values);
+    // Larger payloads would not decompress, so they are left to the size limits of Cadence.
+    if (data == null || data.length < threshold || data.length > maxUncompressedSize) {
+      return data;
+    }
+    long startTime = System.nanoTime();
+    byte[] compressed = compress(data);
+    if (compressed == null) {
+      return data;
+    }
+    metricsScope.timer("data-converter-compress-latency").record(since(startTime));
+    metricsScope.counter("data-converter-compressed-payloads").inc(1);
+    metricsScope.counter("data-converter-uncompressed-bytes").inc(data.length);
+    metricsScope.counter("data-converter-compressed-bytes").inc(compressed.length);
+    return compressed;
+  }
+
+  @Override
+  public <T> T fromData(byte[] content, Class<T> valueClass, Type valueType)
+      throws DataConverterException {
+    return delegate.fromData(decompress(content), valueClass, valueType);
+  }
+
+  @Override
+  public Object[] fromDataArray(byte[] content, Type... valueTypes) throws DataConverterException {
+    return delegate.fromDataArray(decompress(content), valueTypes);
+  }
+
+  /** @return the compressed payload, or null if it would not be smaller than the input */
+  private byte[] compress(byte[] data) {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      deflater = new Deflater(level, true);
+    }
+    try {
+      // Compression only pays off if the result is smaller, so the output never needs to grow.
+      byte[] output = new byte[data.length];
+      output[0] = MARKER;
+      writeInt(output, 1, data.length);
+      deflater.setInput(data);
+      deflater.finish();
+      int length = HEADER_SIZE;
+      while (!deflater.finished() && length < output.length) {
+        length += deflater.deflate(output, length, output.length - length);
+      }
+      return deflater.finished() ? Arrays.copyOf(output, length) : null;
+    } finally {
+      release(deflater);
+    }
+  }
+
+  private byte[] decompress(byte[] content) {
+    if (content == null || content.length < HEADER_SIZE || content[0] != MARKER) {
+      return content;
+    }
+    long startTime = System.nanoTime();
+    Inflater inflater = inflaters.poll();
+    if (inflater == null) {
+      inflater = new Inflater(true);
+    }
+    try {
+      int size = readInt(content, 1);
+      if (size < 0 || size > maxUncompressedSize) {
+        throw new DataFormatException(
+            "uncompressed size " + size + " exceeds the maximum of " + maxUncompressedSize);
+      }
+      byte[] output = new byte[size];
+      inflater.setInput(content, HEADER_SIZE, content.length - HEADER_SIZE);
+      int length = 0;
+      while (length < output.length && !inflater.finished()) {
+        int inflated = inflater.inflate(output, length, output.length - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      if (length != output.length) {
+        throw new DataFormatException(
+            "expected " + output.length + " uncompressed bytes, got " + length);
+      }
+      // The stream must end exactly at the expected length.
+      if (!inflater.finished() && inflater.inflate(new byte[1]) != 0) {
+        throw new DataFormatException("more than " + output.length + " uncompressed bytes");
+      }
+      if (!inflater.finished()) {
+        throw new DataFormatException("truncated compressed stream");
+      }
+      if (inflater.getRemaining() != 0) {
+        throw new DataFormatException("unexpected data after the compressed stream");
+      }
+      metricsScope.timer("data-converter-decompress-latency").record(since(startTime));
+      return output;
+    } catch (DataFormatException | RuntimeException e) {
+      throw new DataConverterException("failed to decompress payload", e);
+    } finally {
+      release(inflater);
+    }
+  }
+
+  private void release(Deflater deflater) {
+    deflater.reset();
+    if (!deflaters.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  private void release(Inflater inflater) {
+    inflater.reset();
+    if (!inflaters.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  private static Duration since(long startNanos) {
+    return Duration.ofNanos(System.nanoTime() - startNanos);
+  }
+
+  private static void writeInt(byte[] buffer, int offset, int value) {
+    buffer[offset] = (byte) (value >>> 24);
+    buffer[offset + 1] = (byte) (value >>> 16);
+    buffer[offset + 2] = (byte) (value >>> 8);
+    buffer[offset + 3] = (byte) value;
+  }
+
+  private static int readInt(byte[] buffer, int offset) {
+    return (buffer[offset] & 0xff) << 24
+        | (buffer[offset + 1] & 0xff) << 16
+        | (buffer[offset + 2] & 0xff) << 8
+        | (buffer[offset + 3] & 0xff);
+  }
+
+  public static class Builder {
+    private final DataConverter delegate;
+    private int threshold = 4 * 1024;
+    private int level = Deflater.BEST_SPEED;
+    private int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+    private int maxUncompressedSize = 64 * 1024 * 1024;
+    private Scope metricsScope = NoopScope.getInstance();
+
+    private Builder(DataConverter delegate) {
+      this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    /** Payloads smaller than this many bytes are not compressed. Default is 4KB. */
+    public Builder setThreshold(int threshold) {
+      if (threshold < HEADER_SIZE) {
+        throw new IllegalArgumentException("threshold must be at least " + HEADER_SIZE);
+      }
+      this.threshold = threshold;
+      return this;
+    }
+
+    /** Deflate level from 1 to 9, default is {@link Deflater#BEST_SPEED}. */
+    public Builder setLevel(int level) {
+      if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+        throw new IllegalArgumentException("level must be from 1 to 9: " + level);
+      }
+      this.level = level;
+      return this;
+    }
+
+    /** Number of idle Deflater and Inflater instances kept each. */
+    public Builder setPoolSize(int poolSize) {
+      if (poolSize < 1) {
+        throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+      }
+      this.poolSize = poolSize;
+      return this;
+    }
+
+    /**
+     * Payloads that inflate to more than this many bytes are rejected, and larger payloads are not
+     * compressed. Default is 64MB, well above the payload size limits of Cadence.
+     */
+    public Builder setMaxUncompressedSize(int maxUncompressedSize) {
+      if (maxUncompressedSize < HEADER_SIZE) {
+        throw new IllegalArgumentException("maxUncompressedSize must be at least " + HEADER_SIZE);
+      }
+      this.maxUncompressedSize = maxUncompressedSize;
+      return this;
+    }
+
+    public Builder setMetricsScope(Scope metricsScope) {
+      this.metricsScope = Objects.requireNonNull(metricsScope);
+      return this;
+    }
+
+    public CompressingDataConverter build() {
+      return new CompressingDataConverter(this);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link BlobStore} on the local file system. Blobs are keyed by the hex SHA-256 of their content
+ * and stored as root/xx/key, where xx are the first two characters of the key. A blob is written
+ * to a temporary file and moved into place, so readers never see a partial blob and concurrent
+ * writers of the same content do not conflict. Recently read blobs are kept in an LRU cache bounded
+ * by total size.
+ *
+ * <p>A directory on shared storage lets workers on different hosts read each other's blobs.
+ */
+public class FileBlobStore implements BlobStore {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Path root;
+  private final long cacheCapacityBytes;
+  // Access ordered, guarded by this.
+  private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes;
+
+  /** @param cacheCapacityBytes total size of the blobs kept in memory after a read, 0 to disable */
+  public FileBlobStore(Path root, long cacheCapacityBytes) throws IOException {
+    this.root = Files.createDirectories(root);
+    this.cacheCapacityBytes = cacheCapacityBytes;
+  }
+
+  @Override
+  public String put(byte[] blob) throws IOException {
+    String key = sha256(blob);
+    Path path = path(key);
+    if (Files.exists(path)) {
+      return key;
+    }
+    Files.createDirectories(path.getParent());
+    Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+    try {
+      Files.write(temp, blob);
+      Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException e) {
+      // Another writer stored the same content first.
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return key;
+  }
+
+  @Override
+  public byte[] get(String key) throws IOException {
+    byte[] blob = getCached(key);
+    if (blob != null) {
+      return blob;
+    }
+    try {
+      blob = Files.readAllBytes(path(key));
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException("no blob " + key + " in " + root);
+    }
+    putCached(key, blob);
+    return blob;
+  }
+
+  private synchronized byte[] getCached(String key) {
+    return cache.get(key);
+  }
+
+  private synchronized void putCached(String key, byte[] blob) {
+    if (blob.length > cacheCapacityBytes || cache.containsKey(key)) {
+      return;
+    }
+    cache.put(key, blob);
+    cachedBytes += blob.length;
+    Iterator<Map.Entry<String, byte[]>> eldest = cache.entrySet().iterator();
+    while (cachedBytes > cacheCapacityBytes) {
+      cachedBytes -= eldest.next().getValue().length;
+      eldest.remove();
+    }
+  }
+
+  private Path path(String key) {
+    if (key.length() < 3 || !key.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+      throw new IllegalArgumentException("invalid blob key: " + key);
+    }
+    return root.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  private static String sha256(byte[] blob) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(blob);
+      char[] hex = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+        hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
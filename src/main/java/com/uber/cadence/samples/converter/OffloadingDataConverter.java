@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.DataConverterException;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * DataConverter decorator that moves payloads of the wrapped converter out of the workflow
+ * history once they reach a size threshold. Such a payload is put into a {@link BlobStore} and
+ * history only records a reference to it: a marker byte followed by the blob key. Identical
+ * payloads, such as the same file passed to many activities, are stored once. Payloads without
+ * the marker are passed to the wrapped converter unchanged.
+ *
+ * <p>Every worker that replays the workflow must be able to read the store. To offload compressed
+ * payloads, wrap a {@link CompressingDataConverter}.
+ */
+public class OffloadingDataConverter implements DataConverter {
+
+  /** 0xC2 never occurs at the start of UTF-8 JSON and differs from the other converter markers. */
+  static final byte MARKER = (byte) 0xC2;
+
+  private final DataConverter delegate;
+  private final BlobStore store;
+  private final int threshold;
+
+  /** @param threshold payloads of at least this many bytes are offloaded */
+  public OffloadingDataConverter(DataConverter delegate, BlobStore store, int threshold) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.store = Objects.requireNonNull(store);
+    this.threshold = threshold;
+  }
+
+  @Override
+  public byte[] toData(Object... values) throws DataConverterException {
+    byte[] data = delegate.toData(values);
+    if (data == null || data.length < threshold) {
+      return data;
+    }
+    String key;
+    try {
+      key = store.put(data);
+    } catch (IOException e) {
+      throw new DataConverterException(
+          "failed to offload a payload of " + data.length + " bytes", e);
+    }
+    byte[] keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+    byte[] reference = new byte[keyBytes.length + 1];
+    reference[0] = MARKER;
+    System.arraycopy(keyBytes, 0, reference, 1, keyBytes.length);
+    return reference;
+  }
+
+  @Override
+  public <T> T fromData(byte[] content, Class<T> valueClass, Type valueType)
+      throws DataConverterException {
+    return delegate.fromData(resolve(content), valueClass, valueType);
+  }
+
+  @Override
+  public Object[] fromDataArray(byte[] content, Type... valueTypes) throws DataConverterException {
+    return delegate.fromDataArray(resolve(content), valueTypes);
+  }
+
+  private byte[] resolve(byte[] content) {
+    if (content == null || content.length < 2 || content[0] != MARKER) {
+      return content;
+    }
+    String key = new String(content, 1, content.length - 1, StandardCharsets.US_ASCII);
+    try {
+      return store.get(key);
+    } catch (IOException e) {
+      throw new DataConverterException("failed to load offloaded payload " + key, e);
+    }
+  }
+}
@@ -17,12 +17,8 @@
 
 package com.uber.cadence.samples.fileprocessing;
 
-import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
-
 import com.uber.cadence.client.WorkflowClient;
-import com.uber.cadence.client.WorkflowClientOptions;
-import com.uber.cadence.serviceclient.ClientOptions;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
 import java.net.URL;
 
 /** Starts a file processing sample workflow. */
@@ -30,10 +26,7 @@ public class FileProcessingStarter {
 
   public static void main(String[] args) throws Exception {
     // Get a new client
-    WorkflowClient workflowClient =
-        WorkflowClient.newInstance(
-            new WorkflowServiceTChannel(ClientOptions.defaultInstance()),
-            WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
     FileProcessingWorkflow workflow = workflowClient.newWorkflowStub(FileProcessingWorkflow.class);
 
     System.out.println("Executing FileProcessingWorkflow");
@@ -28,6 +28,7 @@ import com.uber.cadence.client.WorkflowOptions;
 import com.uber.cadence.client.WorkflowStub;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.CachingQueryClient;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 import com.uber.cadence.workflow.QueryMethod;
@@ -142,6 +143,15 @@ public class HelloConsistentQuery {
                 .build(),
             Integer.class,
             Integer.class)); // Should print 5
+
+    // Pollers that can tolerate slightly stale values can answer repeated queries from a client
+    // side cache instead of dispatching every one of them to a worker.
+    CachingQueryClient cachingClient = new CachingQueryClient(Duration.ofSeconds(5), 10_000);
+    for (int i = 0; i < 3; i++) {
+      System.out.println(
+          cachingClient.query(workflow, "GreetingWorkflow::getCounter", Integer.class));
+    }
+    System.out.println("cached query stats: " + cachingClient.stats()); // Should show 2 hits
     System.exit(0);
   }
 }
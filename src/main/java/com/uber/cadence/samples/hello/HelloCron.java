@@ -19,6 +19,7 @@ package com.uber.cadence.samples.hello;
 
 import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
+import com.uber.cadence.EventType;
 import com.uber.cadence.TerminateWorkflowExecutionRequest;
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.WorkflowIdReusePolicy;
@@ -29,11 +30,14 @@ import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.common.CronSchedule;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.WorkflowHistoryStream;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 import com.uber.cadence.workflow.Workflow;
 import com.uber.cadence.workflow.WorkflowMethod;
 import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Demonstrates a cron workflow that executes activity periodically. Requires a local instance of
@@ -105,12 +109,29 @@ public class HelloCron {
 
     // Start a workflow execution async. Usually this is done from another program.
     CronWorkflow workflow = workflowClient.newWorkflowStub(CronWorkflow.class);
-    WorkflowClient.start(workflow::greetPeriodically, "World");
+    WorkflowExecution started = WorkflowClient.start(workflow::greetPeriodically, "World");
     System.out.println("Cron workflow is running");
 
+    // Every cron run continues as new when it is done. Follow the chain of runs as it grows
+    // instead of polling the workflow.
+    CountDownLatch completedRuns = new CountDownLatch(2);
+    WorkflowHistoryStream stream = new WorkflowHistoryStream(cadenceService, DOMAIN);
+    stream.subscribe(
+        started,
+        0,
+        true,
+        (run, event) -> {
+          if (event.getEventType() == EventType.ActivityTaskCompleted) {
+            System.out.println("Run " + run.getRunId() + " greeted");
+          } else if (event.getEventType() == EventType.WorkflowExecutionContinuedAsNew) {
+            completedRuns.countDown();
+          }
+        });
+
     // Cron workflow will not stop until it is terminated or cancelled.
-    // So we wait some time to see cron run twice then terminate the cron workflow.
-    Thread.sleep(90000);
+    // So we wait to see cron run twice then terminate the cron workflow.
+    completedRuns.await(90, TimeUnit.SECONDS);
+    stream.close();
 
     // execution without RunID set will be used to terminate current run
     WorkflowExecution execution = new WorkflowExecution();
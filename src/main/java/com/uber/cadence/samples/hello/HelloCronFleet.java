@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.hello;
+
+import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
+
+import com.uber.cadence.TerminateWorkflowExecutionRequest;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowIdReusePolicy;
+import com.uber.cadence.activity.Activity;
+import com.uber.cadence.activity.ActivityOptions;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowClientOptions;
+import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
+import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.CronJitter;
+import com.uber.cadence.worker.Worker;
+import com.uber.cadence.worker.WorkerFactory;
+import com.uber.cadence.workflow.Workflow;
+import com.uber.cadence.workflow.WorkflowMethod;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Demonstrates many cron workflows sharing one schedule without firing at the same moment. Each
+ * workflow gets its own minute within the schedule period and its own second within that minute,
+ * both derived from its workflow ID by {@link CronJitter}. The second within the minute is slept
+ * by the run, so it spreads the activities but not the first decision task of each run. A fleet
+ * on a schedule that fires every minute, like the one of {@link HelloCron}, gets no spread cron
+ * minute at all: its first decision tasks are all scheduled at the start of each minute. Requires a
+ * local instance of Cadence server to be running.
+ */
+public class HelloCronFleet {
+
+  static final String TASK_LIST = "HelloCronFleet";
+  static final int FLEET_SIZE = 100;
+  /** Every workflow of the fleet runs once every five minutes. */
+  static final String SCHEDULE = "*/5 * * * *";
+  /** Window of the offsets below one minute, runs start within it after their cron minute. */
+  static final Duration JITTER_WINDOW = Duration.ofMinutes(1);
+
+  public interface FleetWorkflow {
+    /** @param jitterWindow window of the offset the run sleeps first, zero to disable jitter */
+    @WorkflowMethod(executionStartToCloseTimeoutSeconds = 120, taskList = TASK_LIST)
+    void greetPeriodically(String name, Duration jitterWindow);
+  }
+
+  public interface GreetingActivities {
+    void greet(String greeting);
+  }
+
+  public static class FleetWorkflowImpl implements FleetWorkflow {
+
+    private final GreetingActivities activities =
+        Workflow.newActivityStub(
+            GreetingActivities.class,
+            new ActivityOptions.Builder()
+                .setScheduleToCloseTimeout(Duration.ofSeconds(10))
+                .build());
+
+    @Override
+    public void greetPeriodically(String name, Duration jitterWindow) {
+      CronJitter.sleep(jitterWindow);
+      activities.greet("Hello " + name + "!");
+    }
+  }
+
+  static class GreetingActivitiesImpl implements GreetingActivities {
+    private final CountDownLatch greeted;
+
+    GreetingActivitiesImpl(CountDownLatch greeted) {
+      this.greeted = greeted;
+    }
+
+    @Override
+    public void greet(String greeting) {
+      System.out.println("From " + Activity.getWorkflowExecution() + ": " + greeting);
+      greeted.countDown();
+    }
+  }
+
+  /**
+   * Starts the cron workflows of a fleet.
+   *
+   * @param jitter whether to spread the runs, otherwise all runs fire at the same time
+   */
+  static List<WorkflowExecution> startFleet(
+      WorkflowClient workflowClient, int size, boolean jitter) {
+    List<WorkflowExecution> executions = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      String workflowId = TASK_LIST + "-" + i;
+      WorkflowOptions options =
+          new WorkflowOptions.Builder()
+              .setWorkflowId(workflowId)
+              .setTaskList(TASK_LIST)
+              .setWorkflowIdReusePolicy(WorkflowIdReusePolicy.AllowDuplicate)
+              .setCronSchedule(jitter ? CronJitter.spreadSchedule(SCHEDULE, workflowId) : SCHEDULE)
+              .build();
+      FleetWorkflow workflow = workflowClient.newWorkflowStub(FleetWorkflow.class, options);
+      executions.add(
+          WorkflowClient.start(
+              workflow::greetPeriodically, "World", jitter ? JITTER_WINDOW : Duration.ZERO));
+    }
+    return executions;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    final Thrift2ProtoAdapter cadenceService =
+        new Thrift2ProtoAdapter(IGrpcServiceStubs.newInstance());
+    WorkflowClient workflowClient =
+        WorkflowClient.newInstance(
+            cadenceService, WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    CountDownLatch greeted = new CountDownLatch(FLEET_SIZE);
+    // Get worker to poll the task list.
+    WorkerFactory factory = WorkerFactory.newInstance(workflowClient);
+    Worker worker = factory.newWorker(TASK_LIST);
+    worker.registerWorkflowImplementationTypes(FleetWorkflowImpl.class);
+    worker.registerActivitiesImplementations(new GreetingActivitiesImpl(greeted));
+    factory.start();
+
+    List<WorkflowExecution> executions = startFleet(workflowClient, FLEET_SIZE, true);
+    System.out.println("Started " + executions.size() + " cron workflows");
+
+    // Wait until every workflow ran once, the runs trickle in over one schedule period.
+    greeted.await(6, TimeUnit.MINUTES);
+
+    // Cron workflows will not stop until they are terminated or cancelled.
+    for (WorkflowExecution execution : executions) {
+      TerminateWorkflowExecutionRequest request = new TerminateWorkflowExecutionRequest();
+      request.setDomain(DOMAIN);
+      // execution without RunID set will be used to terminate current run
+      request.setWorkflowExecution(
+          new WorkflowExecution().setWorkflowId(execution.getWorkflowId()));
+      try {
+        cadenceService.TerminateWorkflowExecution(request);
+      } catch (Exception e) {
+        System.out.println(e);
+      }
+    }
+    System.out.println("Cron workflows are terminated");
+    System.exit(0);
+  }
+}
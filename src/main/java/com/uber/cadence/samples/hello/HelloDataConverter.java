@@ -27,16 +27,21 @@ import com.uber.cadence.converter.DataConverterException;
 import com.uber.cadence.converter.JsonDataConverter;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.converter.BinaryDataConverter;
+import com.uber.cadence.samples.converter.CompressingDataConverter;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 import com.uber.cadence.workflow.Workflow;
 import com.uber.cadence.workflow.WorkflowMethod;
 import java.lang.reflect.Type;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * HelloDataConverter is a sample to how to implement a dataConverter to convert some objects that
  * you want to use a different way to serialize/deserialize
+ *
+ * <p>For more than a handful of classes see {@link BinaryDataConverter}, which takes a codec per
+ * class and falls back to JSON for the rest.
  */
 public class HelloDataConverter {
 
@@ -54,14 +59,15 @@ public class HelloDataConverter {
     }
 
     public static MyStruct fromBytes(byte[] content) {
-      String s = new String(content, Charset.defaultCharset());
-      String[] ss = s.split("#");
-      int num = Integer.parseInt(ss[0]);
-      return new MyStruct(num, ss[1]);
+      String s = new String(content, StandardCharsets.UTF_8);
+      // str may contain '#' itself, num cannot.
+      int separator = s.indexOf('#');
+      int num = Integer.parseInt(s.substring(0, separator));
+      return new MyStruct(num, s.substring(separator + 1));
     }
 
     public byte[] toBytes() {
-      return (this.num + "#" + this.str).getBytes(Charset.defaultCharset());
+      return (this.num + "#" + this.str).getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
@@ -145,7 +151,7 @@ public class HelloDataConverter {
     @Override
     public <T> T fromData(final byte[] content, final Class<T> valueClass, final Type valueType)
         throws DataConverterException {
-      if (valueType.getTypeName().equals(MyStruct.class.getTypeName())) {
+      if (valueType == MyStruct.class) {
         return (T) MyStruct.fromBytes(content);
       } else {
         return cadenceDefaultDataConverter.fromData(content, valueClass, valueType);
@@ -166,7 +172,7 @@ public class HelloDataConverter {
       if (valueTypes.length == 1) {
         final Object result;
         final Type valueType = valueTypes[0];
-        if (valueType.getTypeName().equals(MyStruct.class.getTypeName())) {
+        if (valueType == MyStruct.class) {
           result = MyStruct.fromBytes(content);
           return new Object[] {result};
         }
@@ -184,7 +190,8 @@ public class HelloDataConverter {
   }
 
   public static void main(String[] args) {
-    final MyStructConverter dc = new MyStructConverter();
+    // Converters compose: payloads of 4KB and more are deflated before they go into history.
+    final DataConverter dc = CompressingDataConverter.newBuilder(new MyStructConverter()).build();
     // Get a new client
     // NOTE: to set a different options, you can do like this:
     // ClientOptions.newBuilder().setRpcTimeout(5 * 1000).build();
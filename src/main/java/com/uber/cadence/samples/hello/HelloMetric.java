@@ -24,10 +24,12 @@ import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.WorkerTelemetry;
 import com.uber.cadence.serviceclient.ClientOptions;
 import com.uber.cadence.serviceclient.IWorkflowService;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
+import com.uber.cadence.worker.WorkerFactoryOptions;
 import com.uber.cadence.worker.WorkerOptions;
 import com.uber.cadence.workflow.Workflow;
 import com.uber.cadence.workflow.WorkflowMethod;
@@ -47,7 +49,10 @@ import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.exporter.HTTPServer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Hello World Cadence workflow that executes a single activity with emitting metrics to Prometheus.
@@ -57,6 +62,8 @@ import java.util.Map;
 public class HelloMetric {
 
   static final String TASK_LIST = "HelloActivity";
+  static final int MAX_WORKFLOW_THREADS = 600;
+  static final int MAX_CONCURRENT_ACTIVITIES = 100;
 
   /** Workflow interface has to have at least one method annotated with @WorkflowMethod. */
   public interface GreetingWorkflow {
@@ -98,17 +105,33 @@ public class HelloMetric {
 
   // Doesn't work
   public static void main(String[] args) throws IOException {
+    Scope metricsScope = createMetricScope();
     final ClientOptions clientOptions =
-        ClientOptions.newBuilder().setMetricsScope(createMetricScope()).setPort(7833).build();
+        ClientOptions.newBuilder().setMetricsScope(metricsScope).setPort(7833).build();
     //    final ClientOptions clientOptions = ClientOptions.newBuilder().build();
     IWorkflowService service =
         new Thrift2ProtoAdapter(IGrpcServiceStubs.newInstance(clientOptions));
+    // Workers report their metrics through the scope of the client they are created from.
     final WorkflowClient workflowClient =
         WorkflowClient.newInstance(
-            service, WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+            service,
+            WorkflowClientOptions.newBuilder()
+                .setDomain(DOMAIN)
+                .setMetricsScope(metricsScope)
+                .build());
     // Start a worker that hosts both workflow and activity implementations.
-    WorkerFactory factory = WorkerFactory.newInstance(workflowClient);
-    Worker worker = factory.newWorker(TASK_LIST, WorkerOptions.defaultInstance());
+    WorkerFactory factory =
+        WorkerFactory.newInstance(
+            workflowClient,
+            WorkerFactoryOptions.newBuilder()
+                .setMaxWorkflowThreadCount(MAX_WORKFLOW_THREADS)
+                .build());
+    Worker worker =
+        factory.newWorker(
+            TASK_LIST,
+            WorkerOptions.newBuilder()
+                .setMaxConcurrentActivityExecutionSize(MAX_CONCURRENT_ACTIVITIES)
+                .build());
     // Workflows are stateful. So you need a type to create instances.
     worker.registerWorkflowImplementationTypes(GreetingWorkflowImpl.class);
     // Activities are stateless and thread safe. So a shared instance is used.
@@ -130,7 +153,13 @@ public class HelloMetric {
     // Make sure to set separator to "_" for Prometheus. Default is "." and doesn't work.
     Scope scope =
         new RootScopeBuilder().separator("_").reporter(reporter).reportEvery(Duration.ofSeconds(1));
-    return new PrometheusScope(scope);
+    // Derives worker health signals such as sticky cache hit ratio and activity slot saturation
+    // from the client metrics and exports them next to them.
+    WorkerTelemetry telemetry =
+        new WorkerTelemetry(
+            new PrometheusScope(scope), MAX_WORKFLOW_THREADS, MAX_CONCURRENT_ACTIVITIES);
+    telemetry.startReporting(java.time.Duration.ofSeconds(10));
+    return new CachingScope(telemetry);
   }
 }
 
@@ -202,3 +231,82 @@ class PrometheusScope implements Scope {
     scope.close();
   }
 }
+
+/**
+ * CachingScope remembers the metrics and child scopes returned by the wrapped scope, so that the
+ * repeated lookups done by workers for every task neither translate names nor build scopes again.
+ * A metric hit is a single lookup by name. A tagged scope hit still hashes and compares every
+ * entry of the tag map, which is cheap for the few tags the client uses but not free. Entries are
+ * never evicted, so tag values must come from a bounded set, as they must for Prometheus anyway.
+ */
+class CachingScope implements Scope {
+
+  private final Scope scope;
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Map<String, String>, Scope> taggedScopes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Scope> subScopes = new ConcurrentHashMap<>();
+
+  CachingScope(Scope scope) {
+    this.scope = scope;
+  }
+
+  @Override
+  public Counter counter(final String name) {
+    // get before computeIfAbsent: computeIfAbsent locks the bin even when the key is present.
+    Counter counter = counters.get(name);
+    return counter != null ? counter : counters.computeIfAbsent(name, scope::counter);
+  }
+
+  @Override
+  public Gauge gauge(final String name) {
+    Gauge gauge = gauges.get(name);
+    return gauge != null ? gauge : gauges.computeIfAbsent(name, scope::gauge);
+  }
+
+  @Override
+  public Timer timer(final String name) {
+    Timer timer = timers.get(name);
+    return timer != null ? timer : timers.computeIfAbsent(name, scope::timer);
+  }
+
+  /** Like tally, keeps the buckets of the first call for a name. */
+  @Override
+  public Histogram histogram(final String name, final Buckets buckets) {
+    Histogram histogram = histograms.get(name);
+    return histogram != null
+        ? histogram
+        : histograms.computeIfAbsent(name, n -> scope.histogram(n, buckets));
+  }
+
+  @Override
+  public Scope tagged(final Map<String, String> tags) {
+    Scope tagged = taggedScopes.get(tags);
+    if (tagged != null) {
+      return tagged;
+    }
+    // Copy the key, callers may reuse their map.
+    return taggedScopes.computeIfAbsent(
+        new HashMap<>(tags), t -> new CachingScope(scope.tagged(t)));
+  }
+
+  @Override
+  public Scope subScope(final String name) {
+    Scope subScope = subScopes.get(name);
+    return subScope != null
+        ? subScope
+        : subScopes.computeIfAbsent(name, n -> new CachingScope(scope.subScope(n)));
+  }
+
+  @Override
+  public Capabilities capabilities() {
+    return scope.capabilities();
+  }
+
+  @Override
+  public void close() throws ScopeCloseException {
+    scope.close();
+  }
+}
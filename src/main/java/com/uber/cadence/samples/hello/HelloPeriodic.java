@@ -20,23 +20,22 @@ package com.uber.cadence.samples.hello;
 import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
 import com.google.common.base.Throwables;
+import com.uber.cadence.HistoryEvent;
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.WorkflowIdReusePolicy;
 import com.uber.cadence.activity.Activity;
 import com.uber.cadence.activity.ActivityOptions;
-import com.uber.cadence.client.DuplicateWorkflowException;
 import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowClientOptions;
-import com.uber.cadence.client.WorkflowException;
-import com.uber.cadence.client.WorkflowStub;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.ContinueAsNewPolicy;
+import com.uber.cadence.samples.common.WorkflowSupervisor;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 import com.uber.cadence.workflow.Workflow;
 import com.uber.cadence.workflow.WorkflowMethod;
 import java.time.Duration;
-import java.util.Optional;
 
 /**
  * Demonstrates how to use sleep and ContinueAsNew to executes activity periodically. In most cases,
@@ -80,12 +79,18 @@ public class HelloPeriodic {
   public static class GreetingWorkflowImpl implements GreetingWorkflow {
 
     /**
-     * This value is so low just to make the example interesting to watch. In real life you would
-     * use something like 100 or a value that matches a business cycle. For example if it runs once
-     * an hour 24 would make sense.
+     * Runs started before the history size policy was introduced continue as new after this fixed
+     * number of iterations, whatever each iteration costs.
      */
     private final int CONTINUE_AS_NEW_FREQUENCEY = 10;
 
+    /**
+     * Limits are so low just to make the example interesting to watch. In real life the defaults,
+     * or limits derived from measured replay times, allow thousands of events per run.
+     */
+    static final ContinueAsNewPolicy CONTINUE_AS_NEW_POLICY =
+        ContinueAsNewPolicy.newBuilder().setMaxHistoryLength(300).build();
+
     private final GreetingActivities activities =
         Workflow.newActivityStub(
             GreetingActivities.class,
@@ -101,11 +106,27 @@ public class HelloPeriodic {
 
     @Override
     public void greetPeriodically(String name, Duration delay) {
-      // Loop the predefined number of times then continue this workflow as new.
+      // Histories recorded before the policy existed have no version marker and keep replaying
+      // with the fixed frequency.
+      int version = Workflow.getVersion("historySizeContinueAsNew", Workflow.DEFAULT_VERSION, 1);
+      ContinueAsNewPolicy.Run run =
+          version == Workflow.DEFAULT_VERSION ? null : CONTINUE_AS_NEW_POLICY.newRun();
+      // Loop until the history has grown large enough then continue this workflow as new.
       // This is needed to periodically truncate the history size.
-      for (int i = 0; i < CONTINUE_AS_NEW_FREQUENCEY; i++) {
-        activities.greet("Hello " + name + "!");
+      for (int i = 1; ; i++) {
+        String greeting = "Hello " + name + "!";
+        activities.greet(greeting);
         Workflow.sleep(delay);
+        if (run == null) {
+          if (i == CONTINUE_AS_NEW_FREQUENCEY) {
+            break;
+          }
+        } else {
+          run.addPayloadBytes(greeting.length());
+          if (run.shouldContinueAsNew()) {
+            break;
+          }
+        }
       }
       // Current workflow run stops executing after this call.
       continueAsNew.greetPeriodically(name, delay);
@@ -139,36 +160,49 @@ public class HelloPeriodic {
     factory.start();
 
     // Start a workflow execution. Usually this is done from another program.
-    // To ensure that this daemon type workflow is always running try to start it periodically
-    // ignoring the duplicated exception.
-    // It is only to protect from application level failures.
+    // To ensure that this daemon type workflow is always running the supervisor starts it again
+    // as soon as its last run closes, and adopts the run that is already running on restarts of
+    // this process. It is only to protect from application level failures.
     // Failures of a workflow worker don't lead to workflow failures.
-    WorkflowExecution execution = null;
-    while (true) {
-      // Print reason of failure of the previous run, before restarting.
-      if (execution != null) {
-        WorkflowStub workflow = workflowClient.newUntypedWorkflowStub(execution, Optional.empty());
-        try {
-          workflow.getResult(Void.class); //
-        } catch (WorkflowException e) {
-          System.out.println("Previous instance failed:\n" + Throwables.getStackTraceAsString(e));
-        }
-      }
-      // New stub instance should be created for each new workflow start.
-      GreetingWorkflow workflow = workflowClient.newWorkflowStub(GreetingWorkflow.class);
-      try {
-        execution =
-            WorkflowClient.start(workflow::greetPeriodically, "World", Duration.ofSeconds(1));
-        System.out.println("Started " + execution);
-      } catch (DuplicateWorkflowException e) {
-        System.out.println("Still running as " + e.getExecution());
-      } catch (Throwable e) {
-        e.printStackTrace();
-        System.exit(1);
-      }
-      // This value is so low just for the sample purpose. In production workflow
-      // it is usually much higher.
-      Thread.sleep(10000);
-    }
+    // The gRPC adapter has no asynchronous history call, so every supervised workflow holds a
+    // thread while its close event is pending. Pass a WorkflowServiceTChannel to supervise
+    // thousands of workflows from one process.
+    WorkflowSupervisor supervisor =
+        new WorkflowSupervisor(
+            workflowClient.getService(),
+            DOMAIN,
+            new WorkflowSupervisor.Listener() {
+              @Override
+              public void onStarted(WorkflowExecution execution) {
+                System.out.println("Started " + execution);
+              }
+
+              @Override
+              public void onAlreadyRunning(WorkflowExecution execution) {
+                System.out.println("Still running as " + execution);
+              }
+
+              @Override
+              public void onClosed(WorkflowExecution run, HistoryEvent closeEvent) {
+                // Print reason of failure of the previous run, before restarting.
+                System.out.println("Previous instance closed:\n" + closeEvent);
+              }
+
+              @Override
+              public void onError(String workflowId, Throwable failure) {
+                System.out.println(
+                    workflowId + " failed:\n" + Throwables.getStackTraceAsString(failure));
+              }
+            });
+    // Any number of workflows can be supervised, each must use its own workflow ID.
+    supervisor.supervise(
+        PERIODIC_WORKFLOW_ID,
+        () -> {
+          // New stub instance should be created for each new workflow start.
+          GreetingWorkflow workflow = workflowClient.newWorkflowStub(GreetingWorkflow.class);
+          return WorkflowClient.start(workflow::greetPeriodically, "World", Duration.ofSeconds(1));
+        });
+    // Supervise until the process is stopped.
+    Thread.currentThread().join();
   }
 }
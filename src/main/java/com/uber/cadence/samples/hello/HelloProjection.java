@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.hello;
+
+import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
+
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowClientOptions;
+import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
+import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.projection.MappedProjectionStore;
+import com.uber.cadence.samples.projection.Projection;
+import com.uber.cadence.samples.projection.ProjectionPublisher;
+import com.uber.cadence.worker.Worker;
+import com.uber.cadence.worker.WorkerFactory;
+import com.uber.cadence.workflow.SignalMethod;
+import com.uber.cadence.workflow.Workflow;
+import com.uber.cadence.workflow.WorkflowMethod;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Demonstrates reading workflow state from a read model instead of querying the workflow, as
+ * HelloQuery and HelloConsistentQuery do. The workflow publishes a snapshot of its state at
+ * checkpoints, and the dashboard in main reads it from a memory mapped file without any call to
+ * Cadence or to the worker. Requires a local instance of Cadence server to be running.
+ */
+public class HelloProjection {
+
+  static final String TASK_LIST = "HelloProjection";
+
+  public interface GreetingWorkflow {
+
+    @WorkflowMethod(executionStartToCloseTimeoutSeconds = 300, taskList = TASK_LIST)
+    void createGreeting(String name);
+
+    @SignalMethod
+    void increase();
+
+    @SignalMethod
+    void exit();
+  }
+
+  /** State that the workflow publishes for dashboards. */
+  public static class GreetingState {
+    public String greeting;
+    public int counter;
+
+    public GreetingState() {}
+
+    GreetingState(String greeting, int counter) {
+      this.greeting = greeting;
+      this.counter = counter;
+    }
+  }
+
+  /** GreetingWorkflow implementation that publishes its counter whenever it changed. */
+  public static class GreetingWorkflowImpl implements GreetingWorkflow {
+
+    private final ProjectionPublisher projections = new ProjectionPublisher();
+    private int counter;
+    private int publishedCounter;
+    private boolean exit;
+
+    @Override
+    public void createGreeting(String name) {
+      while (!exit) {
+        publishedCounter = counter;
+        projections.publish(new GreetingState("Hello " + name + "!", counter));
+        // Signals processed together are published together at the next checkpoint.
+        Workflow.await(() -> counter != publishedCounter || exit);
+      }
+      projections.publish(new GreetingState("Bye " + name + "!", counter));
+    }
+
+    @Override
+    public void increase() {
+      counter++;
+    }
+
+    @Override
+    public void exit() {
+      exit = true;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    // The worker writes the snapshots, dashboards on the same host map the same file.
+    Path file = Files.createTempDirectory("projections").resolve("HelloProjection.log");
+    MappedProjectionStore store = new MappedProjectionStore(file);
+
+    // Get a new client
+    // NOTE: to set a different options, you can do like this:
+    // ClientOptions.newBuilder().setRpcTimeout(5 * 1000).build();
+    WorkflowClient workflowClient =
+        WorkflowClient.newInstance(
+            new Thrift2ProtoAdapter(IGrpcServiceStubs.newInstance()),
+            WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    // Get worker to poll the task list.
+    WorkerFactory factory = WorkerFactory.newInstance(workflowClient);
+    Worker worker = factory.newWorker(TASK_LIST);
+    worker.registerWorkflowImplementationTypes(GreetingWorkflowImpl.class);
+    // The local activity that stores the snapshots runs in this worker.
+    worker.registerActivitiesImplementations(new ProjectionPublisher.PublishActivitiesImpl(store));
+    factory.start();
+
+    // Start a workflow execution. Usually this is done from another program.
+    GreetingWorkflow workflow = workflowClient.newWorkflowStub(GreetingWorkflow.class);
+    WorkflowExecution execution = WorkflowClient.start(workflow::createGreeting, "World");
+    for (int i = 0; i < 5; i++) {
+      workflow.increase();
+    }
+
+    // A dashboard, usually another process, reads the file on its own. Reads are eventually
+    // consistent: the last snapshot appears once the workflow has processed the signals.
+    try (MappedProjectionStore dashboard = new MappedProjectionStore(file)) {
+      long lastVersion = 0;
+      for (int i = 0; i < 50; i++) {
+        Projection projection = dashboard.get(execution.getWorkflowId(), lastVersion + 1);
+        if (projection != null) {
+          lastVersion = projection.getVersion();
+          GreetingState state = projection.getState(GreetingState.class);
+          System.out.println(
+              "Version " + lastVersion + ": " + state.greeting + " counter=" + state.counter);
+          if (state.counter == 5) {
+            break;
+          }
+        }
+        Thread.sleep(100);
+      }
+    }
+    workflow.exit();
+    System.exit(0);
+  }
+}
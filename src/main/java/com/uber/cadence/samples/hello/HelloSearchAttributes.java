@@ -29,6 +29,7 @@ import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.client.WorkflowOptions;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.SearchAttributesBuffer;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 import com.uber.cadence.workflow.Workflow;
@@ -68,6 +69,12 @@ public class HelloSearchAttributes {
     private final HelloActivity.GreetingActivities activities =
         Workflow.newActivityStub(HelloActivity.GreetingActivities.class);
 
+    /**
+     * Merges search attribute changes, each upsert is a decision and a history event. Flushed
+     * explicitly only, so the workflow issues the same decisions as before it used the buffer.
+     */
+    private final SearchAttributesBuffer searchAttributes = new SearchAttributesBuffer(false);
+
     @Override
     public String getGreeting(String name) {
       SearchAttributes currentSearchAttributes = Workflow.getWorkflowInfo().getSearchAttributes();
@@ -75,10 +82,9 @@ public class HelloSearchAttributes {
       System.out.println("Search Attributes on start: ");
       printSearchAttributes(currentSearchAttributes);
 
-      // update some of the search attributes
-      Map<String, Object> upsertedMap = new HashMap<>();
-      upsertedMap.put("CustomKeywordField", name);
-      Workflow.upsertSearchAttributes(upsertedMap);
+      // update some of the search attributes, all changes are written by a single upsert
+      searchAttributes.put("CustomKeywordField", name);
+      searchAttributes.flush();
 
       currentSearchAttributes = Workflow.getWorkflowInfo().getSearchAttributes();
       System.out.println("Search Attributes after upsert: ");
@@ -21,29 +21,25 @@ import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
 import com.uber.cadence.DescribeWorkflowExecutionRequest;
 import com.uber.cadence.DescribeWorkflowExecutionResponse;
-import com.uber.cadence.EventType;
-import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
-import com.uber.cadence.GetWorkflowExecutionHistoryResponse;
-import com.uber.cadence.HistoryEvent;
 import com.uber.cadence.SearchAttributes;
 import com.uber.cadence.WorkflowExecution;
 import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.client.WorkflowOptions;
-import com.uber.cadence.converter.DataConverter;
 import com.uber.cadence.converter.JsonDataConverter;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
+import com.uber.cadence.samples.common.SearchAttributesBuffer;
+import com.uber.cadence.samples.common.SignalAndWaitClient;
+import com.uber.cadence.samples.common.SignalAndWaitClient.SignalWaitResult;
 import com.uber.cadence.worker.Worker;
 import com.uber.cadence.worker.WorkerFactory;
 import com.uber.cadence.workflow.SignalMethod;
 import com.uber.cadence.workflow.Workflow;
 import com.uber.cadence.workflow.WorkflowMethod;
 import com.uber.cadence.workflow.WorkflowUtils;
-import java.nio.charset.Charset;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -81,6 +77,10 @@ public class HelloSignalAndResponse {
 
     List<String> messageQueue = new ArrayList<>(10);
     boolean exit = false;
+    // Signals processed by the same decision task share one upsert.
+    SearchAttributesBuffer searchAttributes = new SearchAttributesBuffer();
+    // Whether this run uses the buffer, decided once per run.
+    Boolean buffered;
 
     @Override
     public List<String> getGreetings() {
@@ -89,6 +89,9 @@ public class HelloSignalAndResponse {
       while (true) {
         Workflow.await(() -> !messageQueue.isEmpty() || exit);
         if (messageQueue.isEmpty() && exit) {
+          if (isBuffered()) {
+            searchAttributes.flush();
+          }
           return receivedMessages;
         }
         String message = messageQueue.remove(0);
@@ -98,14 +101,19 @@ public class HelloSignalAndResponse {
 
     @Override
     public void receiveName(String name) {
-      Map<String, Object> upsertedMap = new HashMap<>();
       // Because we are going to get the response after signal, make sure first thing to do in the
-      // signal method is to upsert search attribute with the response.
+      // signal method is to set search attribute with the response. It is upserted by the end of
+      // the decision task that processes the signal, before the caller is told it was processed.
       // Use CustomKeywordField for response, in real code you may use other fields
       // If there are multiple signals processed in paralell, consider returning a map of message
       // to each status/result so that they won't overwrite each other
-      upsertedMap.put("CustomKeywordField", name + ":" + "No_Error");
-      Workflow.upsertSearchAttributes(upsertedMap);
+      if (isBuffered()) {
+        searchAttributes.put("CustomKeywordField", name + ":" + "No_Error");
+      } else {
+        Map<String, Object> upsertedMap = new HashMap<>();
+        upsertedMap.put("CustomKeywordField", name + ":" + "No_Error");
+        Workflow.upsertSearchAttributes(upsertedMap);
+      }
 
       messageQueue.add(name);
     }
@@ -114,6 +122,19 @@ public class HelloSignalAndResponse {
     public void exit() {
       exit = true;
     }
+
+    /**
+     * Runs recorded before the buffer was introduced upsert once per signal, even when a name
+     * repeats or signals share a decision task. They must keep doing so to replay.
+     */
+    private boolean isBuffered() {
+      if (buffered == null) {
+        buffered =
+            Workflow.getVersion("bufferedSearchAttributes", Workflow.DEFAULT_VERSION, 1)
+                != Workflow.DEFAULT_VERSION;
+      }
+      return buffered;
+    }
   }
 
   public static void main(String[] args) throws Exception {
@@ -151,27 +172,35 @@ public class HelloSignalAndResponse {
     // This workflow keeps receiving signals until exit is called
     String signal = "World";
 
-    final signalWaitResult result =
-        signalAndWait(
-            workflowClient,
-            workflowId,
-            "",
-            () -> {
-              workflow.receiveName(signal); // sends receiveName signal
-            },
-            JsonDataConverter.getInstance(),
-            "GreetingWorkflow::receiveName",
-            signal);
+    // The client not only sends the signal, but also waits until the workflow has processed it.
+    // One client serves any number of callers and polls the history of each workflow only once.
+    final SignalWaitResult result;
+    try (SignalAndWaitClient signalClient =
+        new SignalAndWaitClient(workflowClient.getService(), DOMAIN)) {
+      result =
+          signalClient
+              .signalAndWait(
+                  workflowId,
+                  () -> {
+                    workflow.receiveName(signal); // sends receiveName signal
+                  },
+                  "GreetingWorkflow::receiveName",
+                  JsonDataConverter.getInstance().toData(signal))
+              .get();
+    }
 
     System.out.printf(
         "result: isReceived: %b, isProccessed: %b, isRunning: %b, runID: %s \n",
-        result.isSignalReceived, result.isSignalProcessed, result.isWorkflowRunning, result.runId);
-    if (result.isSignalProcessed) {
+        result.isSignalReceived(),
+        result.isSignalProcessed(),
+        result.isWorkflowRunning(),
+        result.getRunId());
+    if (result.isSignalProcessed()) {
       // Get results from search attribute `CustomKeywordField`
       WorkflowExecution execution = new WorkflowExecution();
       execution.setWorkflowId(workflowId);
       execution.setRunId(
-          result.runId); // make sure to sure the same runID in case the current run changes
+          result.getRunId()); // make sure to sure the same runID in case the current run changes
       DescribeWorkflowExecutionRequest request = new DescribeWorkflowExecutionRequest();
       request.setDomain(DOMAIN);
       request.setExecution(execution);
@@ -186,112 +215,4 @@ public class HelloSignalAndResponse {
       System.out.printf("No result because signal was not processed");
     }
   }
-
-  /**
-   * This signal helper not only sends signal to workflow, but also wait & return after the signal
-   * has been applied. It will wait until the first decision task completed after the signal shows
-   * by in the history(meaning recieved). It compare signalName and the signal method argument to
-   * determine if that's the signal you sent. TODO: if this feature is proved to be useful, we
-   * should move to client or server implementation
-   *
-   * <p>NOTE that the signalOperation should not use requestedID for deduping. (However, this
-   * requestedID is not exposed in Java client yet anyway). Because deduping means a noop and return
-   * success, then this helper will wait for signal forever.
-   *
-   * @param workflowClient
-   * @param workflowId
-   * @param runId
-   * @param signalOperation the operation that will send signal
-   * @param dataConverter for converting signalArgs to compare and determine if the signal has
-   *     received
-   * @param signalName for comparing the signalName received in the history
-   * @param signalArgs for comparing the signalData(converted by dataConverter) received in the
-   *     history
-   */
-  private static signalWaitResult signalAndWait(
-      WorkflowClient workflowClient,
-      String workflowId,
-      String runId,
-      Runnable signalOperation,
-      DataConverter dataConverter,
-      String signalName,
-      Object... signalArgs)
-      throws Exception {
-    final byte[] signalData = dataConverter.toData(signalArgs);
-    signalWaitResult result = new signalWaitResult();
-
-    // get the current eventID
-    WorkflowExecution execution = new WorkflowExecution();
-    execution.setWorkflowId(workflowId);
-    execution.setRunId(runId);
-    DescribeWorkflowExecutionRequest request = new DescribeWorkflowExecutionRequest();
-    request.setDomain(DOMAIN);
-    request.setExecution(execution);
-    DescribeWorkflowExecutionResponse resp =
-        workflowClient.getService().DescribeWorkflowExecution(request);
-    long currentEventId = resp.workflowExecutionInfo.historyLength;
-    result.runId = resp.workflowExecutionInfo.execution.runId;
-
-    // send signal
-    signalOperation.run();
-
-    // Poll history starting from currentEventId,
-    // then wait until the signal is received, and then wait until it's
-    // processed(decisionTaskCompleted)
-    result.isSignalReceived = false;
-    result.isSignalProcessed = false;
-    result.isWorkflowRunning = !resp.workflowExecutionInfo.isSetCloseStatus();
-
-    while (result.isWorkflowRunning && !result.isSignalProcessed) {
-      GetWorkflowExecutionHistoryRequest historyReq = new GetWorkflowExecutionHistoryRequest();
-      historyReq.setDomain(DOMAIN);
-      historyReq.setExecution(execution);
-      historyReq.setWaitForNewEvent(true);
-      String token =
-          String.format(
-              "{\"RunID\":\"%s\",\"FirstEventID\":0,\"NextEventID\":%d,\"IsWorkflowRunning\":true,\"PersistenceToken\":null,\"TransientDecision\":null,\"BranchToken\":null}",
-              result.runId, currentEventId + 1);
-      historyReq.setNextPageToken(token.getBytes(Charset.defaultCharset()));
-      final GetWorkflowExecutionHistoryResponse historyResp =
-          workflowClient.getService().GetWorkflowExecutionHistory(historyReq);
-      token = new String(historyResp.getNextPageToken(), Charset.defaultCharset());
-      result.isWorkflowRunning = token.contains("\"IsWorkflowRunning\":true");
-
-      for (HistoryEvent event : historyResp.history.events) {
-        if (!result.isSignalReceived) {
-          // wait for signal received
-          if (event.getEventType() == EventType.WorkflowExecutionSignaled) {
-            final byte[] eventSignalData =
-                event.getWorkflowExecutionSignaledEventAttributes().getInput();
-            final String eventSignalName =
-                event.getWorkflowExecutionSignaledEventAttributes().getSignalName();
-            if (Arrays.equals(eventSignalData, signalData) && eventSignalName.equals(signalName)) {
-              result.isSignalReceived = true;
-            } else {
-              if (Arrays.equals(eventSignalData, signalData)
-                  || eventSignalName.equals(signalName)) {
-                System.out.println(
-                    "[WARN] either signal event data or signalName doesn't match, is the signalArgs and signalName correct?");
-              }
-            }
-          }
-        } else {
-          // signal is received, now wait for first decisioin task complete
-          if (event.getEventType() == EventType.DecisionTaskCompleted) {
-            result.isSignalProcessed = true;
-            break;
-          }
-        }
-        currentEventId = event.getEventId();
-      }
-    }
-    return result;
-  }
-
-  private static class signalWaitResult {
-    public boolean isSignalProcessed;
-    public boolean isSignalReceived;
-    public boolean isWorkflowRunning;
-    public String runId;
-  }
 }
@@ -24,12 +24,19 @@ import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowClientOptions;
 import com.uber.cadence.internal.compatibility.Thrift2ProtoAdapter;
 import com.uber.cadence.internal.compatibility.proto.serviceclient.IGrpcServiceStubs;
-import com.uber.cadence.worker.Worker;
-import com.uber.cadence.worker.WorkerFactory;
-import com.uber.cadence.worker.WorkerFactoryOptions;
-import com.uber.cadence.worker.WorkerOptions;
+import com.uber.cadence.samples.common.WorkerAutoTuner;
+import com.uber.cadence.samples.common.WorkerAutoTuner.Settings;
+import com.uber.cadence.samples.common.WorkerTelemetry;
 import com.uber.cadence.workflow.Workflow;
 import com.uber.cadence.workflow.WorkflowMethod;
+import com.uber.m3.tally.RootScopeBuilder;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.tally.prometheus.PrometheusReporter;
+import com.uber.m3.util.Duration;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.HTTPServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 
 /**
  * Hello World Cadence workflow that executes a single activity with full example of how to
@@ -39,6 +46,30 @@ public class HelloWorkerSetup {
 
   static final String TASK_LIST = "HelloActivity";
 
+  static final Settings INITIAL_SETTINGS =
+      Settings.newBuilder()
+          .setMaxWorkflowThreads(1000)
+          .setStickyCacheSize(100)
+          .setMaxConcurrentActivities(100)
+          .setMaxConcurrentWorkflows(100)
+          .build();
+  static final Settings MIN_SETTINGS =
+      INITIAL_SETTINGS
+          .toBuilder()
+          .setMaxWorkflowThreads(200)
+          .setStickyCacheSize(20)
+          .setMaxConcurrentActivities(20)
+          .build();
+  static final Settings MAX_SETTINGS =
+      INITIAL_SETTINGS
+          .toBuilder()
+          .setMaxWorkflowThreads(4000)
+          .setStickyCacheSize(2000)
+          .setMaxConcurrentActivities(500)
+          .setActivityPollers(8)
+          .setDecisionPollers(8)
+          .build();
+
   /** Workflow interface has to have at least one method annotated with @WorkflowMethod. */
   public interface GreetingWorkflow {
     /** @return greeting string */
@@ -77,14 +108,31 @@ public class HelloWorkerSetup {
     }
   }
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    // Client metrics, the health signals derived from them and the auto-tuner decisions and
+    // settings are exported to Prometheus at http://localhost:9099/metrics.
+    CollectorRegistry registry = CollectorRegistry.defaultRegistry;
+    new HTTPServer(new InetSocketAddress(9099), registry);
+    PrometheusReporter reporter = PrometheusReporter.builder().registry(registry).build();
+    // Make sure to set separator to "_" for Prometheus. Default is "." and doesn't work.
+    Scope scope =
+        new RootScopeBuilder().separator("_").reporter(reporter).reportEvery(Duration.ofSeconds(1));
+    // Derives worker health signals from the client metrics, the auto-tuner below acts on them.
+    WorkerTelemetry telemetry =
+        new WorkerTelemetry(
+            new PrometheusScope(scope),
+            INITIAL_SETTINGS.getMaxWorkflowThreads(),
+            INITIAL_SETTINGS.getMaxConcurrentActivities());
     // Get a new client
     // NOTE: to set a different options, you can do like this:
     // ClientOptions.newBuilder().setRpcTimeout(5 * 1000).build();
     WorkflowClient workflowClient =
         WorkflowClient.newInstance(
             new Thrift2ProtoAdapter(IGrpcServiceStubs.newInstance()),
-            WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+            WorkflowClientOptions.newBuilder()
+                .setDomain(DOMAIN)
+                .setMetricsScope(telemetry)
+                .build());
 
     /**
      * If you see error "Not enough threads to execute workflows" exception it indicates that there
@@ -103,28 +151,34 @@ public class HelloWorkerSetup {
      *
      * <p>maxConcurrentWorklfowExecutionSize defines how many workflow tasks can execute in
      * parallel. It's a worker level option.
+     *
+     * <p>stickyCacheSize defines how many workflows are kept in memory between decision tasks. A
+     * cached workflow only applies the new events of a decision task, an evicted one replays its
+     * whole history first. Every cached workflow holds a workflow thread and heap, so the cache
+     * trades memory for replay CPU and decision latency. StickyCacheBenchmark in src/jmh measures
+     * this trade-off for different cache sizes and thread counts.
+     *
+     * <p>Good values depend on the workload, so instead of fixing them the auto-tuner starts from
+     * the initial settings and adjusts thread count, sticky cache size, activity concurrency and
+     * poller counts within the bounds below, restarting the worker with the new options.
      */
-    WorkerFactory factory =
-        WorkerFactory.newInstance(
-            workflowClient,
-            WorkerFactoryOptions.newBuilder()
-                .setMaxWorkflowThreadCount(1000)
-                .setStickyCacheSize(100)
-                .setDisableStickyExecution(false)
-                .build());
-    Worker worker =
-        factory.newWorker(
-            TASK_LIST,
-            WorkerOptions.newBuilder()
-                .setMaxConcurrentActivityExecutionSize(100)
-                .setMaxConcurrentWorkflowExecutionSize(100)
-                .build());
-    // Workflows are stateful. So you need a type to create instances.
-    worker.registerWorkflowImplementationTypes(GreetingWorkflowImpl.class);
-    // Activities are stateless and thread safe. So a shared instance is used.
-    worker.registerActivitiesImplementations(new GreetingActivitiesImpl());
+    WorkerAutoTuner tuner =
+        WorkerAutoTuner.newBuilder(
+                workflowClient,
+                telemetry,
+                TASK_LIST,
+                worker -> {
+                  // Workflows are stateful. So you need a type to create instances.
+                  worker.registerWorkflowImplementationTypes(GreetingWorkflowImpl.class);
+                  // Activities are stateless and thread safe. So a shared instance is used.
+                  worker.registerActivitiesImplementations(new GreetingActivitiesImpl());
+                })
+            .setInitialSettings(INITIAL_SETTINGS)
+            .setMinSettings(MIN_SETTINGS)
+            .setMaxSettings(MAX_SETTINGS)
+            .build();
     // Start listening to the workflow and activity task lists.
-    factory.start();
+    tuner.start();
 
     // Start a workflow execution. Usually this is done from another program.
     // Get a workflow stub using the same task list the worker uses.
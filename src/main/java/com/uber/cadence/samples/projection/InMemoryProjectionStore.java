@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ProjectionStore} in the memory of the process. Readers must run in the worker process
+ * that publishes, use {@link MappedProjectionStore} to read from other processes.
+ */
+public class InMemoryProjectionStore implements ProjectionStore {
+
+  private final Map<String, Projection> projections = new ConcurrentHashMap<>();
+
+  @Override
+  public boolean put(String key, long version, byte[] snapshot) {
+    Projection update = new Projection(key, version, snapshot);
+    Projection stored =
+        projections.merge(
+            key,
+            update,
+            (current, candidate) ->
+                candidate.getVersion() > current.getVersion() ? candidate : current);
+    return stored == update;
+  }
+
+  @Override
+  public Projection get(String key) {
+    return projections.get(key);
+  }
+}
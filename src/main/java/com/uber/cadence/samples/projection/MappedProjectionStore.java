@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ProjectionStore} in a memory mapped, append only file. Dashboards on the host of a worker
+ * map the same file and read the snapshots published by its workflows without any call to Cadence
+ * or to the worker. Any number of processes can read a file, only one process may write to it.
+ *
+ * <p>Every stored snapshot is appended as a record: key length, version, snapshot length, UTF-8
+ * key and snapshot. The log ends at the first zero key length. The key length is written only after
+ * the rest of the record has been forced to the file, as plain writes to a mapping may become
+ * visible to other processes in any order, so readers never see a partial record. Forcing costs a
+ * disk write per snapshot, which suits workflows that publish at checkpoints. Each instance keeps
+ * an index of the latest record per key and catches up with records appended by other processes
+ * on every read.
+ *
+ * <p>Older versions stay in the file until it is deleted. Deleting it loses nothing that matters:
+ * every workflow publishes its state again at its next checkpoint.
+ */
+public class MappedProjectionStore implements ProjectionStore, Closeable {
+
+  // Key length, version and snapshot length.
+  private static final int HEADER_BYTES = 4 + 8 + 4;
+  private static final int INITIAL_CAPACITY = 1 << 20;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final Map<String, Record> index = new ConcurrentHashMap<>();
+  // Replaced by a larger mapping when the log grows, earlier mappings stay valid.
+  private volatile MappedByteBuffer mapped;
+  // End of the last indexed record, guarded by this.
+  private int end;
+
+  public MappedProjectionStore(Path file) throws IOException {
+    this.file = file;
+    this.channel =
+        FileChannel.open(
+            file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    map(Math.max(INITIAL_CAPACITY, channel.size()));
+    refresh();
+  }
+
+  @Override
+  public synchronized boolean put(String key, long version, byte[] snapshot) throws IOException {
+    if (key.isEmpty()) {
+      throw new IllegalArgumentException("empty key");
+    }
+    refresh();
+    Record current = index.get(key);
+    if (current != null && current.version >= version) {
+      return false;
+    }
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int size = HEADER_BYTES + keyBytes.length + snapshot.length;
+    // The zero key length that follows the record ends the log.
+    ensureCapacity((long) end + size + 4);
+    ByteBuffer buffer = mapped.duplicate();
+    buffer.position(end + 4);
+    buffer.putLong(version);
+    buffer.putInt(snapshot.length);
+    buffer.put(keyBytes);
+    buffer.put(snapshot);
+    mapped.force();
+    mapped.putInt(end, keyBytes.length);
+    index.put(key, new Record(version, end + HEADER_BYTES + keyBytes.length, snapshot.length));
+    end += size;
+    return true;
+  }
+
+  @Override
+  public Projection get(String key) throws IOException {
+    refresh();
+    Record record = index.get(key);
+    if (record == null) {
+      return null;
+    }
+    // The mapping is read after the index, so it covers the record.
+    ByteBuffer buffer = mapped.duplicate();
+    buffer.position(record.snapshotPosition);
+    byte[] snapshot = new byte[record.snapshotLength];
+    buffer.get(snapshot);
+    return new Projection(key, record.version, snapshot);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /** Indexes the records appended since the last call, by this or another process. */
+  private synchronized void refresh() throws IOException {
+    while (true) {
+      if (end + 4 > mapped.capacity() && !remap(end + 4)) {
+        return;
+      }
+      int keyLength = mapped.getInt(end);
+      if (keyLength <= 0) {
+        return;
+      }
+      long version = mapped.getLong(end + 4);
+      int snapshotLength = mapped.getInt(end + 12);
+      int size = HEADER_BYTES + keyLength + snapshotLength;
+      if (end + size > mapped.capacity() && !remap(end + size)) {
+        throw new IOException("truncated record at " + end + " in " + file);
+      }
+      byte[] keyBytes = new byte[keyLength];
+      ByteBuffer buffer = mapped.duplicate();
+      buffer.position(end + HEADER_BYTES);
+      buffer.get(keyBytes);
+      index.put(
+          new String(keyBytes, StandardCharsets.UTF_8),
+          new Record(version, end + HEADER_BYTES + keyLength, snapshotLength));
+      end += size;
+    }
+  }
+
+  /** Maps the whole file when another process has grown it beyond the current mapping. */
+  private boolean remap(long required) throws IOException {
+    long size = channel.size();
+    if (size < required) {
+      return false;
+    }
+    map(size);
+    return true;
+  }
+
+  private void ensureCapacity(long required) throws IOException {
+    int capacity = mapped.capacity();
+    if (required <= capacity) {
+      return;
+    }
+    long grown = Math.max(required, 2L * capacity);
+    if (required > Integer.MAX_VALUE) {
+      throw new IOException("projection log " + file + " is full, delete it to start over");
+    }
+    map(Math.min(grown, Integer.MAX_VALUE));
+  }
+
+  private void map(long capacity) throws IOException {
+    mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  private static final class Record {
+    final long version;
+    final int snapshotPosition;
+    final int snapshotLength;
+
+    Record(long version, int snapshotPosition, int snapshotLength) {
+      this.version = version;
+      this.snapshotPosition = snapshotPosition;
+      this.snapshotLength = snapshotLength;
+    }
+  }
+}
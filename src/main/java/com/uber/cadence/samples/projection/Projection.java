@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import com.uber.cadence.converter.JsonDataConverter;
+
+/** A state snapshot published by a workflow, see {@link ProjectionPublisher}. */
+public final class Projection {
+
+  private final String key;
+  private final long version;
+  private final byte[] snapshot;
+
+  public Projection(String key, long version, byte[] snapshot) {
+    this.key = key;
+    this.version = version;
+    this.snapshot = snapshot;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /** @return version of the snapshot, later snapshots of the same key have higher versions */
+  public long getVersion() {
+    return version;
+  }
+
+  /** @return serialized state, should not be modified */
+  public byte[] getSnapshot() {
+    return snapshot;
+  }
+
+  /** Deserializes the state, which the publisher serialized with JsonDataConverter. */
+  public <T> T getState(Class<T> stateClass) {
+    return JsonDataConverter.getInstance().fromData(snapshot, stateClass, stateClass);
+  }
+
+  @Override
+  public String toString() {
+    return "Projection{key=" + key + ", version=" + version + ", bytes=" + snapshot.length + "}";
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import com.uber.cadence.activity.ActivityMethod;
+import com.uber.cadence.converter.JsonDataConverter;
+import com.uber.cadence.workflow.ActivityException;
+import com.uber.cadence.workflow.Workflow;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Publishes state snapshots of a workflow to a {@link ProjectionStore}, so that dashboards read
+ * them from the store instead of querying the workflow. Every query is answered by a worker that
+ * may have to replay the workflow first, which puts the load of every dashboard refresh on the
+ * workers. Publishing costs one local activity per checkpoint, however often the state is read.
+ *
+ * <p>Snapshots are serialized with JsonDataConverter in the workflow and stored by a local
+ * activity, which runs in the worker within the current decision task. Versions are ordered by
+ * workflow time and then by publishing order, so they also grow across runs that continue as new.
+ * Publishing is best effort: a store that fails or times out is logged and the next checkpoint
+ * publishes the newer state.
+ *
+ * <p>Register {@link PublishActivitiesImpl} with the workers of the workflows that publish.
+ */
+public final class ProjectionPublisher {
+
+  // Leaves room for 2^20 snapshots per millisecond of workflow time.
+  private static final int SEQUENCE_BITS = 20;
+
+  /** Local activity that stores snapshots. */
+  public interface PublishActivities {
+    @ActivityMethod(scheduleToCloseTimeoutSeconds = 5)
+    boolean publish(String key, long version, byte[] snapshot);
+  }
+
+  public static class PublishActivitiesImpl implements PublishActivities {
+    private final ProjectionStore store;
+
+    public PublishActivitiesImpl(ProjectionStore store) {
+      this.store = store;
+    }
+
+    @Override
+    public boolean publish(String key, long version, byte[] snapshot) {
+      try {
+        return store.put(key, version, snapshot);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private final PublishActivities activities =
+      Workflow.newLocalActivityStub(PublishActivities.class);
+  private long sequence;
+
+  /**
+   * Publishes the state under the workflow ID.
+   *
+   * @return the version of the snapshot, or -1 if it could not be stored
+   */
+  public long publish(Object state) {
+    return publish(Workflow.getWorkflowInfo().getWorkflowId(), state);
+  }
+
+  /**
+   * Publishes the state under a key, for workflows that publish more than one projection.
+   *
+   * @return the version of the snapshot, or -1 if it could not be stored
+   */
+  public long publish(String key, Object state) {
+    long version =
+        (Workflow.currentTimeMillis() << SEQUENCE_BITS) | (sequence++ & ((1 << SEQUENCE_BITS) - 1));
+    byte[] snapshot = JsonDataConverter.getInstance().toData(state);
+    try {
+      activities.publish(key, version, snapshot);
+      return version;
+    } catch (ActivityException e) {
+      Workflow.getLogger(ProjectionPublisher.class)
+          .warn("Failed to publish projection " + key + " version " + version, e);
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import java.io.IOException;
+
+/**
+ * Read store for the state snapshots that workflows publish. It keeps the latest version per key
+ * and ignores versions that are not newer than the stored one, so snapshots that are published
+ * twice, for example when a decision task is retried, or that arrive out of order never replace a
+ * newer one.
+ *
+ * <p>Reads are eventually consistent: a snapshot becomes visible once its publishing local
+ * activity completed, and reflects the workflow at its checkpoint rather than now.
+ */
+public interface ProjectionStore {
+
+  /**
+   * Stores a snapshot unless the store has the same or a newer version of the key.
+   *
+   * @return whether the snapshot was stored
+   */
+  boolean put(String key, long version, byte[] snapshot) throws IOException;
+
+  /** @return latest snapshot of the key, null if none was published */
+  Projection get(String key) throws IOException;
+
+  /**
+   * Returns the latest snapshot if it is at least the given version. Clients that know the version
+   * of an earlier read use it to never observe state going back.
+   *
+   * @return latest snapshot, null if none was published with at least this version
+   */
+  default Projection get(String key, long minVersion) throws IOException {
+    Projection projection = get(key);
+    return projection == null || projection.getVersion() < minVersion ? null : projection;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.shadowing;
+
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.samples.common.HistoryFiles;
+import com.uber.cadence.samples.common.WorkflowExecutionHistoryExporter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shadows archived traffic without a Cadence service. Replays every history found in a directory
+ * against the given workflow implementations on a pool of threads, so determinism can be checked
+ * on machines that cannot reach a frontend. Histories are read as JSON arrays, as downloaded by the
+ * Cadence CLI and stored in src/test/resources/replaytests, or as the NDJSON written by {@link
+ * WorkflowExecutionHistoryExporter}, optionally gzip compressed.
+ *
+ * <p>Prints every failed history, the replay throughput and the failure rate. Exits with 1 if any
+ * replay failed.
+ */
+public class OfflineShadowing {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      printUsage();
+    }
+    Path directory = Paths.get(args[0]);
+    List<String> workflowClasses = new ArrayList<>();
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int i = 1; i < args.length; i++) {
+      if ("--workflowClass".equals(args[i]) && i + 1 < args.length) {
+        workflowClasses.add(args[++i]);
+      } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else {
+        printUsage();
+      }
+    }
+    if (workflowClasses.isEmpty()) {
+      printUsage();
+    }
+
+    ReplayReport report = new ReplayReport(ReplayReport.loadClasses(workflowClasses));
+    run(directory, threads, report);
+    report.print(System.out);
+    System.exit(report.getFailed() == 0 ? 0 : 1);
+  }
+
+  private static void printUsage() {
+    System.err.println(
+        "Usage: java "
+            + OfflineShadowing.class.getName()
+            + " <historyDirectory> --workflowClass <implementationClass>... [--threads <n>]");
+    System.exit(1);
+  }
+
+  /** Replays all histories below the directory and adds their outcome to the report. */
+  static void run(Path directory, int threads, ReplayReport report) throws Exception {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      files =
+          paths
+              .filter(Files::isRegularFile)
+              .filter(HistoryFiles::isHistoryFile)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Path file : files) {
+        String name = directory.relativize(file).toString();
+        executor.execute(
+            () -> {
+              List<HistoryEvent> events = new ArrayList<>();
+              try {
+                HistoryFiles.read(file, events::add);
+              } catch (Exception e) {
+                report.recordFailure(name, e);
+                return;
+              }
+              report.replay(name, events);
+            });
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+  }
+}
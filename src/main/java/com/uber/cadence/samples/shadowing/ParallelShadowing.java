@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.shadowing;
+
+import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
+
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.ListClosedWorkflowExecutionsRequest;
+import com.uber.cadence.ListClosedWorkflowExecutionsResponse;
+import com.uber.cadence.ListOpenWorkflowExecutionsRequest;
+import com.uber.cadence.ListOpenWorkflowExecutionsResponse;
+import com.uber.cadence.StartTimeFilter;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionInfo;
+import com.uber.cadence.WorkflowTypeFilter;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
+import com.uber.cadence.samples.common.WorkflowExecutionHistoryExporter;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.thrift.TException;
+
+/**
+ * Shadows production traffic with many replay threads. {@link ShadowTraffic} replays the matching
+ * workflows one at a time, so shadowing a day of traffic takes hours. Here the start time range is
+ * split into windows that are listed concurrently, and every listed workflow is fetched and
+ * replayed on a pool of replay threads. To spread the work over several processes, give each of
+ * them a different --shard: workflows are assigned to shards by the hash of their workflow ID.
+ *
+ * <p>Prints every failed workflow, the replay throughput and the failure rate. Exits with 1 if any
+ * replay failed.
+ */
+public class ParallelShadowing {
+
+  private static final int LIST_PAGE_SIZE = 1000;
+
+  private final IWorkflowService service;
+  private final String workflowType;
+  private final int shard;
+  private final int shardCount;
+  private final ReplayReport report;
+  private final ExecutorService replayExecutor;
+  // Bounds the number of histories that are fetched but not yet replayed.
+  private final Semaphore pendingReplays;
+
+  ParallelShadowing(
+      IWorkflowService service,
+      String workflowType,
+      int shard,
+      int shardCount,
+      int threads,
+      ReplayReport report) {
+    this.service = service;
+    this.workflowType = workflowType;
+    this.shard = shard;
+    this.shardCount = shardCount;
+    this.report = report;
+    this.replayExecutor = Executors.newFixedThreadPool(threads);
+    this.pendingReplays = new Semaphore(threads * 2);
+  }
+
+  public static void main(String[] args) throws Exception {
+    String workflowType = "GreetingWorkflow::getGreeting";
+    List<String> workflowClasses = new ArrayList<>();
+    Instant to = Instant.now();
+    Instant from = to.minus(Duration.ofDays(1));
+    int partitions = 24;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int shard = 0;
+    int shardCount = 1;
+    for (int i = 0; i < args.length; i++) {
+      if (i + 1 == args.length) {
+        printUsage();
+      }
+      switch (args[i]) {
+        case "--workflowType":
+          workflowType = args[++i];
+          break;
+        case "--workflowClass":
+          workflowClasses.add(args[++i]);
+          break;
+        case "--from":
+          from = Instant.parse(args[++i]);
+          break;
+        case "--to":
+          to = Instant.parse(args[++i]);
+          break;
+        case "--partitions":
+          partitions = Integer.parseInt(args[++i]);
+          break;
+        case "--threads":
+          threads = Integer.parseInt(args[++i]);
+          break;
+        case "--shard":
+          String[] parts = args[++i].split("/");
+          shard = Integer.parseInt(parts[0]);
+          shardCount = Integer.parseInt(parts[1]);
+          break;
+        default:
+          printUsage();
+      }
+    }
+    if (workflowClasses.isEmpty()) {
+      workflowClasses.add("com.uber.cadence.samples.hello.HelloActivity$GreetingWorkflowImpl");
+    }
+
+    ReplayReport report = new ReplayReport(ReplayReport.loadClasses(workflowClasses));
+    ParallelShadowing shadowing =
+        new ParallelShadowing(
+            CadenceUtil.getService(), workflowType, shard, shardCount, threads, report);
+    shadowing.run(from, to, partitions);
+    report.print(System.out);
+    System.exit(report.getFailed() == 0 ? 0 : 1);
+  }
+
+  private static void printUsage() {
+    System.err.println(
+        "Usage: java "
+            + ParallelShadowing.class.getName()
+            + " [--workflowType <type>] [--workflowClass <implementationClass>]..."
+            + " [--from <instant>] [--to <instant>] [--partitions <n>] [--threads <n>]"
+            + " [--shard <index>/<count>]");
+    System.exit(1);
+  }
+
+  /** Lists the workflows started in [from, to) in the given number of windows and replays them. */
+  void run(Instant from, Instant to, int partitions) throws Exception {
+    long fromNanos = TimeUnit.MILLISECONDS.toNanos(from.toEpochMilli());
+    long toNanos = TimeUnit.MILLISECONDS.toNanos(to.toEpochMilli());
+    long windowNanos = Math.max(1, (toNanos - fromNanos + partitions - 1) / partitions);
+
+    ExecutorService scanExecutor = Executors.newFixedThreadPool(Math.min(partitions, 8));
+    try {
+      List<Future<?>> scans = new ArrayList<>();
+      for (long start = fromNanos; start < toNanos; start += windowNanos) {
+        StartTimeFilter window =
+            new StartTimeFilter()
+                .setEarliestTime(start)
+                // Both ends of the filter are inclusive.
+                .setLatestTime(Math.min(start + windowNanos, toNanos) - 1);
+        scans.add(
+            scanExecutor.submit(
+                () -> {
+                  // A workflow that closes between the two scans is listed by both when open
+                  // workflows are scanned first, and by neither the other way around.
+                  Set<String> listedRunIds = new HashSet<>();
+                  scanOpen(window, listedRunIds);
+                  scanClosed(window, listedRunIds);
+                  return null;
+                }));
+      }
+      for (Future<?> scan : scans) {
+        scan.get();
+      }
+    } finally {
+      scanExecutor.shutdownNow();
+      replayExecutor.shutdown();
+      replayExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void scanClosed(StartTimeFilter window, Set<String> listedRunIds)
+      throws TException, InterruptedException {
+    ListClosedWorkflowExecutionsRequest request =
+        new ListClosedWorkflowExecutionsRequest()
+            .setDomain(DOMAIN)
+            .setStartTimeFilter(window)
+            .setTypeFilter(new WorkflowTypeFilter().setName(workflowType))
+            .setMaximumPageSize(LIST_PAGE_SIZE);
+    do {
+      ListClosedWorkflowExecutionsResponse response =
+          service.ListClosedWorkflowExecutions(request);
+      submitAll(response.getExecutions(), listedRunIds);
+      request.setNextPageToken(response.getNextPageToken());
+    } while (request.getNextPageToken() != null && request.getNextPageToken().length > 0);
+  }
+
+  private void scanOpen(StartTimeFilter window, Set<String> listedRunIds)
+      throws TException, InterruptedException {
+    ListOpenWorkflowExecutionsRequest request =
+        new ListOpenWorkflowExecutionsRequest()
+            .setDomain(DOMAIN)
+            .setStartTimeFilter(window)
+            .setTypeFilter(new WorkflowTypeFilter().setName(workflowType))
+            .setMaximumPageSize(LIST_PAGE_SIZE);
+    do {
+      ListOpenWorkflowExecutionsResponse response = service.ListOpenWorkflowExecutions(request);
+      submitAll(response.getExecutions(), listedRunIds);
+      request.setNextPageToken(response.getNextPageToken());
+    } while (request.getNextPageToken() != null && request.getNextPageToken().length > 0);
+  }
+
+  private void submitAll(List<WorkflowExecutionInfo> executions, Set<String> listedRunIds)
+      throws InterruptedException {
+    if (executions == null) {
+      return;
+    }
+    for (WorkflowExecutionInfo info : executions) {
+      WorkflowExecution execution = info.getExecution();
+      if (Math.floorMod(execution.getWorkflowId().hashCode(), shardCount) != shard
+          || !listedRunIds.add(execution.getRunId())) {
+        continue;
+      }
+      pendingReplays.acquire();
+      replayExecutor.execute(
+          () -> {
+            try {
+              replay(execution);
+            } finally {
+              pendingReplays.release();
+            }
+          });
+    }
+  }
+
+  private void replay(WorkflowExecution execution) {
+    String name = execution.getWorkflowId() + "/" + execution.getRunId();
+    List<HistoryEvent> events = new ArrayList<>();
+    try {
+      WorkflowExecutionHistoryExporter.readHistory(service, DOMAIN, execution, events::addAll);
+    } catch (Exception e) {
+      report.recordFailure(name, e);
+      return;
+    }
+    report.replay(name, events);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.shadowing;
+
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.common.WorkflowExecutionHistory;
+import com.uber.cadence.samples.common.LatencyRecorder;
+import com.uber.cadence.testing.WorkflowReplayer;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays histories against the registered workflow implementations and collects the outcome.
+ * Safe to use from many replay threads at once: every replay runs in its own test environment.
+ */
+class ReplayReport {
+
+  private final Class<?>[] workflowClasses;
+  private final LatencyRecorder passed = new LatencyRecorder();
+  private final Map<String, String> failures = new ConcurrentSkipListMap<>();
+  private final long startTime = System.nanoTime();
+
+  ReplayReport(Class<?>... workflowClasses) {
+    if (workflowClasses.length == 0) {
+      throw new IllegalArgumentException("at least one workflow implementation is required");
+    }
+    this.workflowClasses = workflowClasses;
+  }
+
+  /**
+   * Replays one history.
+   *
+   * @param name identifies the history in the report, for example its workflow ID or file
+   * @return true if the replay succeeded, false if the history is not compatible with the code
+   */
+  boolean replay(String name, List<HistoryEvent> events) {
+    long replayStart = System.nanoTime();
+    try {
+      WorkflowReplayer.replayWorkflowExecution(
+          new WorkflowExecutionHistory(events),
+          workflowClasses[0],
+          Arrays.copyOfRange(workflowClasses, 1, workflowClasses.length));
+      passed.record(System.nanoTime() - replayStart, TimeUnit.NANOSECONDS);
+      return true;
+    } catch (Exception e) {
+      recordFailure(name, e);
+      return false;
+    }
+  }
+
+  /** Records a history that could not be replayed, for example because it failed to load. */
+  void recordFailure(String name, Throwable failure) {
+    failures.put(name, String.valueOf(failure));
+  }
+
+  int getPassed() {
+    return passed.count();
+  }
+
+  int getFailed() {
+    return failures.size();
+  }
+
+  Map<String, String> getFailures() {
+    return failures;
+  }
+
+  void print(PrintStream out) {
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    int total = getPassed() + getFailed();
+    for (Map.Entry<String, String> failure : failures.entrySet()) {
+      out.println("FAILED " + failure.getKey() + ": " + failure.getValue());
+    }
+    out.printf(
+        "Replayed %d histories in %.1fs (%.1f replays/s): %d passed, %d failed (%.2f%%)%n",
+        total,
+        seconds,
+        total / seconds,
+        getPassed(),
+        getFailed(),
+        total == 0 ? 0.0 : 100.0 * getFailed() / total);
+    out.println("Replay latency: " + passed.summary());
+  }
+
+  /** Loads workflow implementation classes by name, for use in command line tools. */
+  static Class<?>[] loadClasses(List<String> classNames) throws ClassNotFoundException {
+    Class<?>[] classes = new Class<?>[classNames.size()];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = Class.forName(classNames.get(i));
+    }
+    return classes;
+  }
+}
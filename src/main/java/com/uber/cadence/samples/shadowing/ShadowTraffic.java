@@ -21,10 +21,8 @@ import static com.uber.cadence.samples.common.SampleConstants.DOMAIN;
 
 import com.google.common.collect.Lists;
 import com.uber.cadence.client.WorkflowClient;
-import com.uber.cadence.client.WorkflowClientOptions;
+import com.uber.cadence.samples.clientsamples.CadenceUtil;
 import com.uber.cadence.samples.hello.HelloActivity;
-import com.uber.cadence.serviceclient.ClientOptions;
-import com.uber.cadence.serviceclient.WorkflowServiceTChannel;
 import com.uber.cadence.shadower.ExitCondition;
 import com.uber.cadence.shadower.Mode;
 import com.uber.cadence.worker.ShadowingOptions;
@@ -35,13 +33,10 @@ import java.util.concurrent.CountDownLatch;
 
 public class ShadowTraffic {
   public static void main(String[] args) throws InterruptedException {
-    // Get a new client
-    // NOTE: to set a different options, you can do like this:
+    // Get the shared client
+    // NOTE: to set a different options, build your own client from options like this:
     // ClientOptions.newBuilder().setRpcTimeout(5 * 1000).build();
-    WorkflowClient workflowClient =
-        WorkflowClient.newInstance(
-            new WorkflowServiceTChannel(ClientOptions.defaultInstance()),
-            WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+    WorkflowClient workflowClient = CadenceUtil.getWorkflowClient();
     ShadowingOptions options =
         ShadowingOptions.newBuilder()
             .setDomain(DOMAIN)
@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.activities;
+
+import com.uber.cadence.activity.ActivityMethod;
+
+public interface FanOutActivities {
+  /**
+   * Processes the items [start, end) of a leaf partition in one activity, so that the history of a
+   * leaf workflow stays small however many items it covers.
+   *
+   * @return number of items processed
+   */
+  @ActivityMethod(scheduleToCloseTimeoutSeconds = 300)
+  long processRange(long start, long end);
+}
@@ -22,7 +22,9 @@ import static com.uber.cadence.samples.spring.common.Constant.TASK_LIST;
 
 import com.uber.cadence.client.WorkflowClient;
 import com.uber.cadence.client.WorkflowClientOptions;
+import com.uber.cadence.samples.spring.activities.impl.FanOutActivitiesImpl;
 import com.uber.cadence.samples.spring.workflows.impl.ChildWorkflowImpl;
+import com.uber.cadence.samples.spring.workflows.impl.FanOutWorkflowImpl;
 import com.uber.cadence.samples.spring.workflows.impl.HelloWorldWorkflowImpl;
 import com.uber.cadence.samples.spring.workflows.impl.ParentWorkflowImpl;
 import com.uber.cadence.samples.spring.workflows.impl.SignalWorkflowImpl;
@@ -42,7 +44,10 @@ public class CadenceAutoConfiguration {
   public WorkflowClient workflowClient() {
     return WorkflowClient.newInstance(
         new WorkflowServiceTChannel(ClientOptions.defaultInstance()),
-        WorkflowClientOptions.newBuilder().setDomain(DOMAIN).build());
+        WorkflowClientOptions.newBuilder()
+            .setDomain(DOMAIN)
+            .setDataConverter(CadenceDataConverter.cadenceJsonDataConverter())
+            .build());
   }
 
   @EventListener(ApplicationStartedEvent.class)
@@ -58,7 +63,9 @@ public class CadenceAutoConfiguration {
         HelloWorldWorkflowImpl.class,
         SignalWorkflowImpl.class,
         ParentWorkflowImpl.class,
-        ChildWorkflowImpl.class);
+        ChildWorkflowImpl.class,
+        FanOutWorkflowImpl.class);
+    worker.registerActivitiesImplementations(new FanOutActivitiesImpl());
     factory.start();
   }
 }
@@ -19,20 +19,40 @@ package com.uber.cadence.samples.spring.cadence;
 
 import com.google.gson.TypeAdapterFactory;
 import com.uber.cadence.converter.JsonDataConverter;
+import com.uber.cadence.samples.spring.models.SampleMessage;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ServiceLoader;
 
 // This singleton JsonDataConverter should be universally used in all components that require a
 // JsonDataConverter. Specifically in Cadence's case, WorkflowClient uses Json serialize function
 // and Worker uses deserialize function, therefore they have to match with one another.
 public class CadenceDataConverter {
+  // Built once per process: ServiceLoader scans the classpath on every load and Gson only caches
+  // the TypeAdapter resolved for each Type inside a single Gson instance, so both costs are paid
+  // once here instead of on every call.
+  private static final JsonDataConverter INSTANCE = newJsonDataConverter();
+
   public static JsonDataConverter cadenceJsonDataConverter() {
+    return INSTANCE;
+  }
+
+  private static JsonDataConverter newJsonDataConverter() {
+    List<TypeAdapterFactory> factories = new ArrayList<>();
+    for (TypeAdapterFactory factory : ServiceLoader.load(TypeAdapterFactory.class)) {
+      factories.add(factory);
+    }
     return new JsonDataConverter(
         gsonBuilder -> {
-          for (TypeAdapterFactory factory : ServiceLoader.load(TypeAdapterFactory.class)) {
+          for (TypeAdapterFactory factory : factories) {
             gsonBuilder.registerTypeAdapterFactory(factory);
           }
-          return gsonBuilder.registerTypeAdapter(ZonedDateTime.class, new ZonedDatetimeConverter());
+          // Streaming adapters read and write tokens directly instead of building a JsonElement
+          // tree for every value.
+          return gsonBuilder
+              .registerTypeAdapter(ZonedDateTime.class, new ZonedDatetimeConverter())
+              .registerTypeAdapter(SampleMessage.class, new SampleMessageTypeAdapter());
         });
   }
 }
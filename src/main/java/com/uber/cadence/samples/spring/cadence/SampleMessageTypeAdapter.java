@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.cadence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.uber.cadence.samples.spring.models.SampleMessage;
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link SampleMessage}. It produces the same {"message": "..."} layout as
+ * Gson's reflective adapter, so payloads already stored in history keep decoding.
+ */
+public class SampleMessageTypeAdapter extends TypeAdapter<SampleMessage> {
+  private static final String MESSAGE_FIELD = "message";
+
+  @Override
+  public void write(JsonWriter out, SampleMessage value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name(MESSAGE_FIELD).value(value.GetMessage());
+    out.endObject();
+  }
+
+  @Override
+  public SampleMessage read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String message = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      if (MESSAGE_FIELD.equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+        message = in.nextString();
+      } else {
+        in.skipValue();
+      }
+    }
+    in.endObject();
+    return new SampleMessage(message);
+  }
+}
@@ -17,31 +17,32 @@
 
 package com.uber.cadence.samples.spring.cadence;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import java.lang.reflect.Type;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 
-public class ZonedDatetimeConverter
-    implements JsonSerializer<ZonedDateTime>, JsonDeserializer<ZonedDateTime> {
+public class ZonedDatetimeConverter extends TypeAdapter<ZonedDateTime> {
   private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
 
   @Override
-  public JsonElement serialize(
-      ZonedDateTime src, Type type, JsonSerializationContext jsonSerializationContext) {
-    return new JsonPrimitive(FORMATTER.format(src));
+  public void write(JsonWriter out, ZonedDateTime value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.value(FORMATTER.format(value));
   }
 
   @Override
-  public ZonedDateTime deserialize(
-      JsonElement json, Type type, JsonDeserializationContext jsonDeserializationContext)
-      throws JsonParseException {
-    return FORMATTER.parse(json.getAsString(), ZonedDateTime::from);
+  public ZonedDateTime read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return FORMATTER.parse(in.nextString(), ZonedDateTime::from);
   }
 }
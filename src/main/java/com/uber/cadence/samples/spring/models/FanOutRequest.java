@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of items [start, end) to be processed by {@link
+ * com.uber.cadence.samples.spring.workflows.FanOutWorkflow}, together with the fan-out limits that
+ * are passed down to every child.
+ */
+public class FanOutRequest {
+  private long start;
+  private long end;
+  private int maxChildren;
+  private int maxConcurrentChildren;
+  private long leafSize;
+
+  /**
+   * @param start first item of the range, inclusive
+   * @param end last item of the range, exclusive
+   * @param maxChildren maximum number of children a single workflow starts. Bounds the history
+   *     size of every workflow in the tree.
+   * @param maxConcurrentChildren maximum number of leaves of the tree under this request that are
+   *     processed at once, shared among the children running at the same time
+   * @param leafSize ranges of at most this many items are processed without starting children
+   */
+  public FanOutRequest(
+      long start, long end, int maxChildren, int maxConcurrentChildren, long leafSize) {
+    if (end < start) {
+      throw new IllegalArgumentException("end < start: " + end + " < " + start);
+    }
+    if (maxChildren < 2) {
+      throw new IllegalArgumentException("maxChildren must be at least 2: " + maxChildren);
+    }
+    if (maxConcurrentChildren < 1) {
+      throw new IllegalArgumentException(
+          "maxConcurrentChildren must be positive: " + maxConcurrentChildren);
+    }
+    if (leafSize < 1) {
+      throw new IllegalArgumentException("leafSize must be positive: " + leafSize);
+    }
+    this.start = start;
+    this.end = end;
+    this.maxChildren = maxChildren;
+    this.maxConcurrentChildren = maxConcurrentChildren;
+    this.leafSize = leafSize;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  public long size() {
+    return end - start;
+  }
+
+  public int getMaxChildren() {
+    return maxChildren;
+  }
+
+  public int getMaxConcurrentChildren() {
+    return maxConcurrentChildren;
+  }
+
+  public long getLeafSize() {
+    return leafSize;
+  }
+
+  public boolean isLeaf() {
+    return size() <= leafSize;
+  }
+
+  /**
+   * Splits this range into at most maxChildren contiguous parts of at least leafSize items. Parts
+   * that are still larger than leafSize fan out again, which turns a large input into a tree of
+   * children instead of one parent with an unbounded history.
+   *
+   * <p>The parent runs at most maxConcurrentChildren parts at once and each part gets an equal
+   * share of that budget, at least 1, so the whole tree never processes more than
+   * maxConcurrentChildren leaves at the same time.
+   */
+  public List<FanOutRequest> partition() {
+    long parts = Math.min(maxChildren, (size() + leafSize - 1) / leafSize);
+    long partSize = (size() + parts - 1) / parts;
+    long runningParts = Math.max(1, Math.min(maxConcurrentChildren, parts));
+    int childConcurrency = (int) Math.max(1, maxConcurrentChildren / runningParts);
+    List<FanOutRequest> result = new ArrayList<>((int) parts);
+    for (long from = start; from < end; from += partSize) {
+      result.add(
+          new FanOutRequest(
+              from, Math.min(end, from + partSize), maxChildren, childConcurrency, leafSize));
+    }
+    return result;
+  }
+}
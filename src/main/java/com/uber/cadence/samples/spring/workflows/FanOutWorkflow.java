@@ -0,0 +1,29 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.workflows;
+
+import static com.uber.cadence.samples.spring.common.Constant.TASK_LIST;
+
+import com.uber.cadence.samples.spring.models.FanOutRequest;
+import com.uber.cadence.workflow.WorkflowMethod;
+
+public interface FanOutWorkflow {
+  /** @return number of items processed by this workflow and all of its descendants */
+  @WorkflowMethod(executionStartToCloseTimeoutSeconds = 3600, taskList = TASK_LIST)
+  long process(FanOutRequest request);
+}
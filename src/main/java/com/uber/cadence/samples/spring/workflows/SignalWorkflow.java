@@ -18,6 +18,7 @@
 package com.uber.cadence.samples.spring.workflows;
 
 import com.uber.cadence.samples.spring.models.SampleMessage;
+import com.uber.cadence.workflow.QueryMethod;
 import com.uber.cadence.workflow.SignalMethod;
 import com.uber.cadence.workflow.WorkflowMethod;
 
@@ -30,4 +31,8 @@ public interface SignalWorkflow {
 
   @SignalMethod
   void cancel();
+
+  /** @return number of greetings processed by the current run */
+  @QueryMethod
+  int getGreetingCount();
 }
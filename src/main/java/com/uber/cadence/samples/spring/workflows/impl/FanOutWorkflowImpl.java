@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.workflows.impl;
+
+import com.uber.cadence.samples.spring.activities.FanOutActivities;
+import com.uber.cadence.samples.spring.models.FanOutRequest;
+import com.uber.cadence.samples.spring.workflows.FanOutWorkflow;
+import com.uber.cadence.workflow.Async;
+import com.uber.cadence.workflow.ChildWorkflowOptions;
+import com.uber.cadence.workflow.Promise;
+import com.uber.cadence.workflow.Workflow;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import org.slf4j.Logger;
+
+/**
+ * Processes a large range of items by partitioning it across child workflows. At most
+ * maxConcurrentChildren children run at the same time and their results are aggregated as soon as
+ * each one completes. Partitions that are larger than leafSize fan out again, so no single workflow
+ * ever starts more than maxChildren children and every history stays small. Each running child
+ * gets a share of its parent's maxConcurrentChildren, so across the whole tree at most
+ * maxConcurrentChildren leaves are processed at once.
+ */
+public class FanOutWorkflowImpl implements FanOutWorkflow {
+  private final Logger logger = Workflow.getLogger(FanOutWorkflowImpl.class);
+  private final FanOutActivities activities = Workflow.newActivityStub(FanOutActivities.class);
+
+  @Override
+  public long process(FanOutRequest request) {
+    if (request.isLeaf()) {
+      return processLeaf(request);
+    }
+
+    Deque<FanOutRequest> pending = new ArrayDeque<>(request.partition());
+    List<Promise<Long>> running = new ArrayList<>(request.getMaxConcurrentChildren());
+    String workflowId = Workflow.getWorkflowInfo().getWorkflowId();
+    long processed = 0;
+    while (!pending.isEmpty() || !running.isEmpty()) {
+      while (running.size() < request.getMaxConcurrentChildren() && !pending.isEmpty()) {
+        FanOutRequest partition = pending.poll();
+        // Workflows are stateful. So a new stub must be created for each new child.
+        // A deterministic ID makes every partition visible and unique in the Cadence UI.
+        FanOutWorkflow child =
+            Workflow.newChildWorkflowStub(
+                FanOutWorkflow.class,
+                new ChildWorkflowOptions.Builder()
+                    .setWorkflowId(
+                        workflowId + "/" + partition.getStart() + "-" + partition.getEnd())
+                    .build());
+        running.add(Async.function(child::process, partition));
+      }
+
+      // Block until at least one child completes, then collect every completed one.
+      Promise.anyOf(running).get();
+      Iterator<Promise<Long>> iterator = running.iterator();
+      while (iterator.hasNext()) {
+        Promise<Long> child = iterator.next();
+        if (child.isCompleted()) {
+          processed += child.get();
+          iterator.remove();
+        }
+      }
+    }
+    logger.info(
+        String.format(
+            "processed %d items in [%d, %d)", processed, request.getStart(), request.getEnd()));
+    return processed;
+  }
+
+  private long processLeaf(FanOutRequest request) {
+    return activities.processRange(request.getStart(), request.getEnd());
+  }
+}
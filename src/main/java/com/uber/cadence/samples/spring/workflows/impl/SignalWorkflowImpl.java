@@ -20,37 +20,47 @@ package com.uber.cadence.samples.spring.workflows.impl;
 import com.uber.cadence.samples.spring.models.SampleMessage;
 import com.uber.cadence.samples.spring.workflows.SignalWorkflow;
 import com.uber.cadence.workflow.Workflow;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import org.slf4j.Logger;
 
 public class SignalWorkflowImpl implements SignalWorkflow {
+  // A workflow execution cannot receive infinite number of signals due to history limit
+  // By default 10000 is MaximumSignalsPerExecution which can be configured by DynamicConfig
+  // of Cadence cluster. Every signal adds one event to the history, so continuing as new once the
+  // history reaches this length also keeps each run well below the signal limit.
+  public static final int CONTINUE_AS_NEW_HISTORY_LENGTH = 5000;
+
   private final Logger logger = Workflow.getLogger(SignalWorkflowImpl.class);
-  private String name;
-  private String greetingMsg = "";
+  // Signal handlers only enqueue. All signals delivered in the same decision task are drained
+  // together by the workflow thread, so a burst of signals is never collapsed into the last one.
+  private final Deque<String> inbox = new ArrayDeque<>();
   private boolean cancel = false;
+  private int count = 0;
 
   @Override
   public void getGreeting(SampleMessage sampleMessage) {
     logger.info("executing SignalWorkflow::getGreeting");
-    this.name = sampleMessage.GetMessage();
-    int count = 0;
+    String name = sampleMessage.GetMessage();
 
-    while (!cancel) {
-      Workflow.await(() -> cancel || !this.greetingMsg.isEmpty());
-      if (!this.greetingMsg.isEmpty()) {
-        logger.info(++count + ": " + this.greetingMsg + "!");
-        this.greetingMsg = "";
+    while (true) {
+      Workflow.await(() -> cancel || !inbox.isEmpty());
+      while (!inbox.isEmpty()) {
+        String greetingMsg = String.format("%s, %s!", inbox.poll(), name);
+        logger.info(++count + ": " + greetingMsg + "!");
+      }
+      if (cancel) {
+        break;
+      }
 
-        // A workflow execution cannot receive infinite number of signals due to history limit
-        // By default 10000 is MaximumSignalsPerExecution which can be configured by DynamicConfig
-        // of Cadence cluster.
-        // But it's recommended to do continueAsNew after receiving certain number of signals.
-        // in production, use a number <1000.
-        if (count == 3) {
-          Workflow.continueAsNew(
-              Optional.of("SignalWorkflow::getGreeting"), Optional.empty(), sampleMessage);
-          return;
-        }
+      if (Workflow.getWorkflowInfo().getHistoryLength() >= CONTINUE_AS_NEW_HISTORY_LENGTH) {
+        // The inbox was just drained. Signals that arrive while this decision is being made fail
+        // its completion, so they are delivered to a new decision of this run instead of being
+        // lost, and nothing needs to be handed to the next run.
+        Workflow.continueAsNew(
+            Optional.of("SignalWorkflow::getGreeting"), Optional.empty(), sampleMessage);
+        return;
       }
     }
 
@@ -65,11 +75,16 @@ public class SignalWorkflowImpl implements SignalWorkflow {
     }
 
     logger.info("received signal from SignalWorkflow:waitForName");
-    this.greetingMsg = String.format("%s, %s!", greeting, this.name);
+    inbox.add(greeting);
   }
 
   @Override
   public void cancel() {
     this.cancel = true;
   }
+
+  @Override
+  public int getGreetingCount() {
+    return count;
+  }
 }
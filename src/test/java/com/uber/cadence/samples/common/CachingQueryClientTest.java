@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import com.uber.cadence.QueryConsistencyLevel;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.QueryOptions;
+import com.uber.cadence.client.WorkflowStub;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link CachingQueryClient}. */
+public class CachingQueryClientTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return nanos.get();
+        }
+      };
+
+  private WorkflowStub workflow;
+  private CachingQueryClient client;
+
+  @Before
+  public void setUp() {
+    workflow = mock(WorkflowStub.class);
+    when(workflow.getExecution())
+        .thenReturn(new WorkflowExecution().setWorkflowId("workflow").setRunId("run"));
+    client = new CachingQueryClient(Duration.ofSeconds(1), 100, ticker);
+  }
+
+  @Test
+  public void testCachesUntilExpired() {
+    when(workflow.query("getCounter", Integer.class)).thenReturn(1, 2);
+
+    assertEquals(1, (int) client.query(workflow, "getCounter", Integer.class));
+    assertEquals(1, (int) client.query(workflow, "getCounter", Integer.class));
+    verify(workflow, times(1)).query("getCounter", Integer.class);
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    assertEquals(2, (int) client.query(workflow, "getCounter", Integer.class));
+    verify(workflow, times(2)).query("getCounter", Integer.class);
+  }
+
+  @Test
+  public void testArgumentsArePartOfTheKey() {
+    when(workflow.query("getValue", String.class, "a")).thenReturn("A");
+    when(workflow.query("getValue", String.class, "b")).thenReturn("B");
+
+    assertEquals("A", client.query(workflow, "getValue", String.class, "a"));
+    assertEquals("B", client.query(workflow, "getValue", String.class, "b"));
+    assertEquals("A", client.query(workflow, "getValue", String.class, "a"));
+    verify(workflow, times(1)).query("getValue", String.class, "a");
+    verify(workflow, times(1)).query("getValue", String.class, "b");
+  }
+
+  @Test
+  public void testStrongConsistencyBypassesCache() {
+    QueryOptions strong =
+        new QueryOptions.Builder().setQueryConsistencyLevel(QueryConsistencyLevel.STRONG).build();
+    when(workflow.queryWithOptions("getCounter", strong, Integer.class, Integer.class))
+        .thenReturn(1, 2);
+
+    for (int expected = 1; expected <= 2; expected++) {
+      int counter =
+          client.queryWithOptions(workflow, "getCounter", strong, Integer.class, Integer.class);
+      assertEquals(expected, counter);
+    }
+    assertEquals(0, client.stats().requestCount());
+  }
+
+  @Test
+  public void testFailuresAreNotCached() {
+    when(workflow.query("getCounter", Integer.class))
+        .thenThrow(new IllegalStateException("worker unavailable"))
+        .thenReturn(3);
+
+    try {
+      client.query(workflow, "getCounter", Integer.class);
+      fail("unreachable");
+    } catch (IllegalStateException e) {
+      assertEquals("worker unavailable", e.getMessage());
+    }
+    assertEquals(3, (int) client.query(workflow, "getCounter", Integer.class));
+  }
+
+  @Test
+  public void testInvalidate() {
+    when(workflow.query("getCounter", Integer.class)).thenReturn(1, 2);
+
+    assertEquals(1, (int) client.query(workflow, "getCounter", Integer.class));
+    client.invalidate(workflow.getExecution());
+    assertEquals(2, (int) client.query(workflow, "getCounter", Integer.class));
+  }
+
+  @Test
+  public void testNullResultsAreCached() {
+    when(workflow.query("getValue", String.class)).thenReturn(null, "A");
+
+    assertNull(client.query(workflow, "getValue", String.class));
+    assertNull(client.query(workflow, "getValue", String.class));
+    verify(workflow, times(1)).query("getValue", String.class);
+  }
+
+  @Test
+  public void testConcurrentQueriesAreCoalesced() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(workflow.query("getCounter", Integer.class))
+        .thenAnswer(
+            invocation -> {
+              started.countDown();
+              release.await();
+              return 7;
+            });
+
+    List<Thread> callers = new ArrayList<>();
+    Map<Thread, Integer> results = new ConcurrentHashMap<>();
+    for (int i = 0; i < 4; i++) {
+      Thread caller =
+          new Thread(
+              () ->
+                  results.put(
+                      Thread.currentThread(),
+                      client.query(workflow, "getCounter", Integer.class)));
+      callers.add(caller);
+    }
+    callers.get(0).start();
+    started.await();
+    for (Thread caller : callers.subList(1, callers.size())) {
+      caller.start();
+    }
+    // Only release the loading query once every other caller is parked waiting for it.
+    for (Thread caller : callers) {
+      while (caller.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    release.countDown();
+    for (Thread caller : callers) {
+      caller.join();
+    }
+
+    assertEquals(callers.size(), results.size());
+    for (int result : results.values()) {
+      assertEquals(7, result);
+    }
+    verify(workflow, times(1)).query("getCounter", Integer.class);
+    assertEquals(1, client.stats().loadCount());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import org.junit.Test;
+
+public class ContinueAsNewPolicyTest {
+
+  @Test
+  public void testContinuesBeforeNextIterationExceedsHistoryLength() {
+    ContinueAsNewPolicy policy = ContinueAsNewPolicy.newBuilder().setMaxHistoryLength(100).build();
+    ContinueAsNewPolicy.Run run = policy.newRun(3);
+    // 11 events per iteration: 3 + 8 * 11 = 91, the next iteration would reach 102.
+    for (int i = 1; i < 8; i++) {
+      assertFalse(run.shouldContinueAsNew(3 + i * 11));
+    }
+    assertTrue(run.shouldContinueAsNew(3 + 8 * 11));
+  }
+
+  @Test
+  public void testExpensiveIterationsRollOverSooner() {
+    ContinueAsNewPolicy policy = ContinueAsNewPolicy.newBuilder().setMaxHistoryLength(100).build();
+    ContinueAsNewPolicy.Run run = policy.newRun(3);
+    assertFalse(run.shouldContinueAsNew(14));
+    // One iteration that added many events is assumed to repeat.
+    assertTrue(run.shouldContinueAsNew(60));
+  }
+
+  @Test
+  public void testHistoryBytes() {
+    ContinueAsNewPolicy policy =
+        ContinueAsNewPolicy.newBuilder().setMaxHistoryBytes(10_000).build();
+    ContinueAsNewPolicy.Run run = policy.newRun(3);
+    run.addPayloadBytes(4_000);
+    assertFalse(run.shouldContinueAsNew(14));
+    run.addPayloadBytes(4_000);
+    assertTrue(run.shouldContinueAsNew(25));
+    assertEquals(8_000, run.getPayloadBytes());
+  }
+
+  @Test
+  public void testReplayTime() {
+    ContinueAsNewPolicy policy =
+        ContinueAsNewPolicy.newBuilder()
+            .setReplayCostPerEvent(Duration.ofMillis(1))
+            .setMaxReplayTime(Duration.ofMillis(50))
+            .build();
+    assertEquals(Duration.ofMillis(30), policy.estimateReplayTime(30, 0));
+    ContinueAsNewPolicy.Run run = policy.newRun(3);
+    assertFalse(run.shouldContinueAsNew(14));
+    assertFalse(run.shouldContinueAsNew(25));
+    assertFalse(run.shouldContinueAsNew(36));
+    assertTrue(run.shouldContinueAsNew(47));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLimits() {
+    ContinueAsNewPolicy.newBuilder().setMaxHistoryLength(0).build();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class CronJitterTest {
+
+  @Test
+  public void testSpreadFixedMinute() {
+    Set<String> minutes = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      String schedule = CronJitter.spreadSchedule("0 3 * * *", "workflow-" + i);
+      assertEquals(schedule, CronJitter.spreadSchedule("0 3 * * *", "workflow-" + i));
+      String[] fields = schedule.split(" ");
+      int minute = Integer.parseInt(fields[0]);
+      assertTrue(minute >= 0 && minute < 60);
+      assertEquals("3 * * * *", schedule.substring(schedule.indexOf(' ') + 1));
+      minutes.add(fields[0]);
+    }
+    assertEquals(60, minutes.size());
+  }
+
+  @Test
+  public void testSpreadStep() {
+    int[] counts = new int[5];
+    for (int i = 0; i < 1000; i++) {
+      String schedule = CronJitter.spreadSchedule("*/5 * * * *", "workflow-" + i);
+      String minute = schedule.substring(0, schedule.indexOf(' '));
+      assertTrue(schedule, minute.endsWith("/5"));
+      counts[Integer.parseInt(minute.substring(0, minute.indexOf('/')))]++;
+    }
+    for (int count : counts) {
+      assertTrue("count: " + count, count > 150 && count < 250);
+    }
+  }
+
+  @Test
+  public void testUnchangedSchedules() {
+    assertEquals("*/1 * * * *", CronJitter.spreadSchedule("*/1 * * * *", "workflow"));
+    assertEquals("*/7 * * * *", CronJitter.spreadSchedule("*/7 * * * *", "workflow"));
+    assertEquals("1-5 * * * *", CronJitter.spreadSchedule("1-5 * * * *", "workflow"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSchedule() {
+    CronJitter.spreadSchedule("@every 1m", "workflow");
+  }
+
+  @Test
+  public void testOffset() {
+    Duration window = Duration.ofMinutes(1);
+    int[] counts = new int[60];
+    for (int i = 0; i < 6000; i++) {
+      Duration offset = CronJitter.offset("workflow-" + i, window);
+      assertEquals(offset, CronJitter.offset("workflow-" + i, window));
+      assertTrue(!offset.isNegative() && offset.compareTo(window) < 0);
+      counts[(int) offset.getSeconds()]++;
+    }
+    for (int count : counts) {
+      assertTrue("count: " + count, count > 50 && count < 150);
+    }
+    assertEquals(Duration.ZERO, CronJitter.offset("workflow", Duration.ZERO));
+  }
+
+  @Test
+  public void testShardOffset() {
+    Set<Duration> offsets = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      offsets.add(CronJitter.shardOffset("workflow-" + i, 4, Duration.ofMinutes(1)));
+    }
+    Set<Duration> expected = new HashSet<>();
+    for (int shard = 0; shard < 4; shard++) {
+      expected.add(Duration.ofSeconds(15 * shard));
+    }
+    assertEquals(expected, offsets);
+  }
+}
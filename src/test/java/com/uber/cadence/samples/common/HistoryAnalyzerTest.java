@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit test for {@link HistoryAnalyzer}. */
+public class HistoryAnalyzerTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testJsonArrayHistory() throws Exception {
+    HistoryAnalyzer.HistoryStats stats =
+        HistoryAnalyzer.analyze(resource("calculation.workflow.history.json"));
+
+    assertEquals(1, stats.getHistories());
+    assertEquals(76, stats.getEvents());
+    assertEquals(13, stats.getEventCount(EventType.DecisionTaskCompleted));
+    assertEquals(11, stats.getEventCount(EventType.ActivityTaskCompleted));
+    assertEquals(13, stats.getDecisionStartToClose().count());
+    LatencyRecorder activity = stats.getActivityStartToClose("Activities::multiple");
+    assertNotNull(activity);
+    assertEquals(11, activity.count());
+    assertNull(stats.getActivityStartToClose("Activities::unknown"));
+    assertTrue(stats.getPhaseNanos(HistoryAnalyzer.Phase.TIMER) > 0);
+  }
+
+  @Test
+  public void testGzippedNdjsonHistoryMatchesJsonArray() throws Exception {
+    Path source = resource("replaytests/HelloActivity.json");
+    HistoryAnalyzer.HistoryStats expected = HistoryAnalyzer.analyze(source);
+
+    // Rewrite the history the way WorkflowExecutionHistoryExporter writes it.
+    Path ndjson = folder.getRoot().toPath().resolve("HelloActivity.ndjson.gz");
+    HistoryEvent[] events =
+        WorkflowExecutionHistoryExporter.HISTORY_GSON.fromJson(
+            new String(Files.readAllBytes(source), StandardCharsets.UTF_8), HistoryEvent[].class);
+    try (Writer writer =
+        new OutputStreamWriter(
+            new GZIPOutputStream(Files.newOutputStream(ndjson)), StandardCharsets.UTF_8)) {
+      for (HistoryEvent event : events) {
+        writer.write(WorkflowExecutionHistoryExporter.HISTORY_GSON.toJson(event));
+        writer.write('\n');
+      }
+    }
+    HistoryAnalyzer.HistoryStats actual = HistoryAnalyzer.analyze(ndjson);
+
+    assertEquals(11, actual.getEvents());
+    assertEquals(expected.getEvents(), actual.getEvents());
+    assertEquals(
+        expected.getActivityStartToClose("GreetingActivities::composeGreeting").total(),
+        actual.getActivityStartToClose("GreetingActivities::composeGreeting").total());
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    HistoryAnalyzer.HistoryStats total = new HistoryAnalyzer.HistoryStats();
+    total.merge(HistoryAnalyzer.analyze(resource("replaytests/HelloPeriodic.json")));
+    total.merge(HistoryAnalyzer.analyze(resource("replaytests/HelloActivity.json")));
+
+    assertEquals(2, total.getHistories());
+    assertEquals(126, total.getEvents());
+    assertEquals(1, total.getEventCount(EventType.WorkflowExecutionContinuedAsNew));
+    assertEquals(10, total.getActivityStartToClose("GreetingActivities::greet").count());
+    assertEquals(1, total.getActivityStartToClose("GreetingActivities::composeGreeting").count());
+  }
+
+  private static Path resource(String name) throws URISyntaxException, IOException {
+    return Paths.get(HistoryAnalyzerTest.class.getClassLoader().getResource(name).toURI());
+  }
+}
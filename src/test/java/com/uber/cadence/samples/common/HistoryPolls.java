@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.GetWorkflowExecutionHistoryResponse;
+import com.uber.cadence.History;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+
+/**
+ * Captures the GetWorkflowExecutionHistory calls made to a mocked service, so that tests can
+ * inspect each long poll and answer it when they choose.
+ */
+final class HistoryPolls {
+
+  /** A history poll that the test answers. */
+  static class Poll {
+    final GetWorkflowExecutionHistoryRequest request;
+    final AsyncMethodCallback<GetWorkflowExecutionHistoryResponse> callback;
+
+    Poll(
+        GetWorkflowExecutionHistoryRequest request,
+        AsyncMethodCallback<GetWorkflowExecutionHistoryResponse> callback) {
+      this.request = request;
+      this.callback = callback;
+    }
+
+    void respond(String nextPageToken, HistoryEvent... events) {
+      callback.onComplete(
+          new GetWorkflowExecutionHistoryResponse()
+              .setHistory(new History().setEvents(Arrays.asList(events)))
+              .setNextPageToken(
+                  nextPageToken == null ? null : nextPageToken.getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+
+  private final BlockingQueue<Poll> polls = new LinkedBlockingQueue<>();
+
+  /** Records every asynchronous history call made to the service from now on. */
+  HistoryPolls(IWorkflowService service) throws TException {
+    this(service, false);
+  }
+
+  /**
+   * Makes the service behave like a transport without an asynchronous history call, such as the
+   * gRPC adapter: every poll blocks its calling thread until the test answers it.
+   */
+  static HistoryPolls blocking(IWorkflowService service) throws TException {
+    return new HistoryPolls(service, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private HistoryPolls(IWorkflowService service, boolean blocking) throws TException {
+    if (blocking) {
+      doThrow(new UnsupportedOperationException("no async history call"))
+          .when(service)
+          .GetWorkflowExecutionHistory(
+              any(GetWorkflowExecutionHistoryRequest.class), any(AsyncMethodCallback.class));
+      when(service.GetWorkflowExecutionHistory(any(GetWorkflowExecutionHistoryRequest.class)))
+          .thenAnswer(
+              invocation -> {
+                CompletableFuture<GetWorkflowExecutionHistoryResponse> response =
+                    new CompletableFuture<>();
+                polls.add(
+                    new Poll(
+                        (GetWorkflowExecutionHistoryRequest) invocation.getArguments()[0],
+                        new AsyncMethodCallback<GetWorkflowExecutionHistoryResponse>() {
+                          @Override
+                          public void onComplete(GetWorkflowExecutionHistoryResponse result) {
+                            response.complete(result);
+                          }
+
+                          @Override
+                          public void onError(Exception e) {
+                            response.completeExceptionally(e);
+                          }
+                        }));
+                try {
+                  return response.get();
+                } catch (ExecutionException e) {
+                  throw e.getCause();
+                }
+              });
+      return;
+    }
+    doAnswer(
+            invocation -> {
+              Object[] arguments = invocation.getArguments();
+              polls.add(
+                  new Poll(
+                      (GetWorkflowExecutionHistoryRequest) arguments[0],
+                      (AsyncMethodCallback<GetWorkflowExecutionHistoryResponse>) arguments[1]));
+              return null;
+            })
+        .when(service)
+        .GetWorkflowExecutionHistory(
+            any(GetWorkflowExecutionHistoryRequest.class), any(AsyncMethodCallback.class));
+  }
+
+  /** Waits up to a second for the next poll. */
+  Poll next() throws InterruptedException {
+    Poll poll = polls.poll(1, TimeUnit.SECONDS);
+    assertTrue("expected a history poll", poll != null);
+    return poll;
+  }
+
+  boolean isEmpty() {
+    return polls.isEmpty();
+  }
+}
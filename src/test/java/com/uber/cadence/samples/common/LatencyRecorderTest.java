@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/** Unit test for {@link LatencyRecorder}. */
+public class LatencyRecorderTest {
+
+  @Test
+  public void testPercentiles() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    // Recorded out of order, percentiles sort the samples.
+    for (int i = 100; i >= 1; i--) {
+      recorder.record(i, TimeUnit.MILLISECONDS);
+    }
+
+    assertEquals(100, recorder.count());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(5050), recorder.total());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), recorder.percentile(0));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(50), recorder.percentile(50));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(90), recorder.percentile(90));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(99), recorder.percentile(99));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), recorder.percentile(100));
+    assertEquals(
+        "count=100 p50=50.00ms p90=90.00ms p99=99.00ms max=100.00ms", recorder.summary());
+  }
+
+  @Test
+  public void testPercentileRoundsUpToASample() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    recorder.record(1, TimeUnit.MILLISECONDS);
+    recorder.record(2, TimeUnit.MILLISECONDS);
+    recorder.record(3, TimeUnit.MILLISECONDS);
+
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), recorder.percentile(50));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(3), recorder.percentile(90));
+  }
+
+  @Test
+  public void testEmpty() {
+    LatencyRecorder recorder = new LatencyRecorder();
+
+    assertEquals(0, recorder.count());
+    assertEquals(0, recorder.total());
+    assertEquals(0, recorder.percentile(99));
+    assertEquals("count=0", recorder.summary());
+  }
+
+  @Test
+  public void testGrowsAndMerges() {
+    LatencyRecorder first = new LatencyRecorder();
+    LatencyRecorder second = new LatencyRecorder();
+    for (int i = 0; i < 3000; i++) {
+      first.record(1, TimeUnit.MICROSECONDS);
+      second.record(2, TimeUnit.MICROSECONDS);
+    }
+
+    first.merge(second);
+
+    assertEquals(6000, first.count());
+    assertEquals(3000, second.count());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(9000), first.total());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(1), first.percentile(50));
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(2), first.percentile(51));
+  }
+}
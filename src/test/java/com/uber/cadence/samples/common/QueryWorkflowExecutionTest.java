@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowStub;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for the bulk mode of {@link QueryWorkflowExecution}. */
+public class QueryWorkflowExecutionTest {
+
+  private final Map<String, WorkflowStub> stubs = new HashMap<>();
+  private WorkflowClient client;
+
+  @Before
+  public void setUp() {
+    client = mock(WorkflowClient.class);
+    when(client.newUntypedWorkflowStub(any(WorkflowExecution.class), any()))
+        .thenAnswer(
+            invocation -> {
+              WorkflowExecution execution = invocation.getArgument(0);
+              return stubs.get(execution.getWorkflowId());
+            });
+  }
+
+  @Test
+  public void testHangingQueryTimesOut() throws Exception {
+    stub(
+        "hanging",
+        () -> {
+          Thread.sleep(Long.MAX_VALUE);
+          return null;
+        });
+    stub("fast", () -> "result");
+
+    Map<String, JsonObject> results = run(1, Duration.ofMillis(200), "hanging", "fast");
+
+    assertEquals("TIMEOUT", results.get("hanging").get("status").getAsString());
+    assertEquals("OK", results.get("fast").get("status").getAsString());
+    assertEquals("result", results.get("fast").get("result").getAsString());
+  }
+
+  @Test
+  public void testQueuedQueryIsTimedFromItsStart() throws Exception {
+    // Ignores the interrupt, so the only thread stays busy after the timeout.
+    stub("uninterruptible", () -> sleepUninterruptibly(Duration.ofMillis(600)));
+    stub("queued", () -> sleepUninterruptibly(Duration.ofMillis(200)));
+
+    Map<String, JsonObject> results = run(1, Duration.ofMillis(300), "uninterruptible", "queued");
+
+    assertEquals("TIMEOUT", results.get("uninterruptible").get("status").getAsString());
+    assertEquals("OK", results.get("queued").get("status").getAsString());
+  }
+
+  private interface Query {
+    String call() throws Exception;
+  }
+
+  private void stub(String workflowId, Query query) {
+    WorkflowStub workflow = mock(WorkflowStub.class);
+    when(workflow.query("getState", String.class)).thenAnswer(invocation -> query.call());
+    stubs.put(workflowId, workflow);
+  }
+
+  private Map<String, JsonObject> run(int concurrency, Duration timeout, String... workflowIds)
+      throws InterruptedException {
+    StringWriter writer = new StringWriter();
+    QueryWorkflowExecution.BulkQuery bulk =
+        new QueryWorkflowExecution.BulkQuery(client, "getState", concurrency, timeout, writer);
+    try {
+      for (String workflowId : workflowIds) {
+        bulk.submit(new WorkflowExecution().setWorkflowId(workflowId));
+      }
+    } finally {
+      bulk.close();
+    }
+    Map<String, JsonObject> results = new HashMap<>();
+    for (String line : writer.toString().split("\n")) {
+      JsonObject result = new JsonParser().parse(line).getAsJsonObject();
+      results.put(result.get("workflowId").getAsString(), result);
+    }
+    assertEquals(workflowIds.length, results.size());
+    return results;
+  }
+
+  private static String sleepUninterruptibly(Duration duration) {
+    long deadline = System.nanoTime() + duration.toNanos();
+    boolean interrupted = false;
+    while (System.nanoTime() < deadline) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return "slow";
+  }
+}
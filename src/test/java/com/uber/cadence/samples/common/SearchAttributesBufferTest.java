@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.client.WorkflowStub;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
+import com.uber.cadence.worker.Worker;
+import com.uber.cadence.workflow.Workflow;
+import com.uber.cadence.workflow.WorkflowMethod;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link SearchAttributesBuffer}. Doesn't use an external Cadence service. */
+public class SearchAttributesBufferTest {
+
+  private static final String TASK_LIST = "SearchAttributesBufferTest";
+
+  public interface StatusWorkflow {
+    /** @return number of upserts made by the buffer */
+    @WorkflowMethod
+    int updateStatus(int updates, boolean flushEveryDecisionTask);
+  }
+
+  public static class StatusWorkflowImpl implements StatusWorkflow {
+
+    @Override
+    public int updateStatus(int updates, boolean flushEveryDecisionTask) {
+      SearchAttributesBuffer searchAttributes = new SearchAttributesBuffer(flushEveryDecisionTask);
+      for (int i = 1; i <= updates; i++) {
+        searchAttributes.put("CustomIntField", i);
+        searchAttributes.put("CustomKeywordField", "step-" + i);
+      }
+      Workflow.sleep(Duration.ofSeconds(1));
+      // Unchanged values are not upserted again.
+      searchAttributes.put("CustomIntField", updates);
+      Workflow.sleep(Duration.ofSeconds(1));
+      searchAttributes.put("CustomKeywordField", "done");
+      searchAttributes.flush();
+      return searchAttributes.getUpsertCount();
+    }
+  }
+
+  private TestWorkflowEnvironment testEnv;
+  private WorkflowClient workflowClient;
+
+  @Before
+  public void setUp() {
+    testEnv = TestWorkflowEnvironment.newInstance();
+    Worker worker = testEnv.newWorker(TASK_LIST);
+    worker.registerWorkflowImplementationTypes(StatusWorkflowImpl.class);
+    testEnv.start();
+    workflowClient = testEnv.newWorkflowClient();
+  }
+
+  @After
+  public void tearDown() {
+    testEnv.close();
+  }
+
+  @Test
+  public void testFlushEveryDecisionTask() throws Exception {
+    // One upsert for the 100 updates and one for the final status.
+    assertEquals(2, run(true));
+  }
+
+  @Test
+  public void testFlushAtCheckpoint() throws Exception {
+    assertEquals(1, run(false));
+  }
+
+  /** Runs the workflow and checks that every upsert of the buffer is one history event. */
+  private int run(boolean flushEveryDecisionTask) throws Exception {
+    StatusWorkflow workflow =
+        workflowClient.newWorkflowStub(
+            StatusWorkflow.class,
+            new WorkflowOptions.Builder()
+                .setTaskList(TASK_LIST)
+                .setExecutionStartToCloseTimeout(Duration.ofMinutes(1))
+                .build());
+    int upserts = workflow.updateStatus(100, flushEveryDecisionTask);
+    WorkflowExecution execution = WorkflowStub.fromTyped(workflow).getExecution();
+
+    int upsertEvents = 0;
+    for (HistoryEvent event :
+        testEnv
+            .getWorkflowService()
+            .GetWorkflowExecutionHistory(
+                new GetWorkflowExecutionHistoryRequest()
+                    .setDomain(testEnv.getDomain())
+                    .setExecution(execution))
+            .getHistory()
+            .getEvents()) {
+      if (event.getEventType() == EventType.UpsertWorkflowSearchAttributes) {
+        upsertEvents++;
+      }
+    }
+    assertEquals(upserts, upsertEvents);
+    return upserts;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.uber.cadence.DescribeWorkflowExecutionRequest;
+import com.uber.cadence.DescribeWorkflowExecutionResponse;
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionInfo;
+import com.uber.cadence.WorkflowExecutionSignaledEventAttributes;
+import com.uber.cadence.samples.common.SignalAndWaitClient.SignalWaitResult;
+import com.uber.cadence.samples.common.HistoryPolls.Poll;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link SignalAndWaitClient}. */
+public class SignalAndWaitClientTest {
+
+  private static final String SIGNAL = "GreetingWorkflow::receiveName";
+
+  private HistoryPolls polls;
+  private IWorkflowService service;
+  private SignalAndWaitClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    service = mock(IWorkflowService.class);
+    when(service.DescribeWorkflowExecution(any(DescribeWorkflowExecutionRequest.class)))
+        .thenReturn(
+            new DescribeWorkflowExecutionResponse()
+                .setWorkflowExecutionInfo(
+                    new WorkflowExecutionInfo()
+                        .setExecution(
+                            new WorkflowExecution().setWorkflowId("workflow").setRunId("run"))
+                        .setHistoryLength(5)));
+    polls = new HistoryPolls(service);
+    client = new SignalAndWaitClient(service, "domain");
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+  }
+
+  @Test
+  public void testWaitersShareOneWatcher() throws Exception {
+    CompletableFuture<SignalWaitResult> first = signalAndWait("first");
+    CompletableFuture<SignalWaitResult> second = signalAndWait("second");
+
+    Poll poll = polls.next();
+    assertTrue(poll.request.isWaitForNewEvent());
+    assertNull(poll.request.getNextPageToken());
+    assertTrue(polls.isEmpty());
+    poll.respond(
+        "page1",
+        event(3, EventType.DecisionTaskCompleted),
+        signaled(6, "first"),
+        event(7, EventType.DecisionTaskScheduled),
+        event(8, EventType.DecisionTaskStarted),
+        event(9, EventType.DecisionTaskCompleted),
+        signaled(10, "second"));
+
+    SignalWaitResult result = first.get(1, TimeUnit.SECONDS);
+    assertTrue(result.isSignalReceived());
+    assertTrue(result.isSignalProcessed());
+    assertTrue(result.isWorkflowRunning());
+    assertEquals("run", result.getRunId());
+    assertFalse(second.isDone());
+
+    poll = polls.next();
+    assertArrayEquals("page1".getBytes(StandardCharsets.UTF_8), poll.request.getNextPageToken());
+    poll.respond(
+        "page2",
+        event(11, EventType.DecisionTaskScheduled),
+        event(12, EventType.DecisionTaskStarted),
+        event(13, EventType.DecisionTaskCompleted));
+    assertTrue(second.get(1, TimeUnit.SECONDS).isSignalProcessed());
+
+    verify(service, times(1))
+        .DescribeWorkflowExecution(any(DescribeWorkflowExecutionRequest.class));
+  }
+
+  @Test
+  public void testSignalsBeforeRegistrationAreIgnored() throws Exception {
+    CompletableFuture<SignalWaitResult> future = signalAndWait("name");
+    polls.next()
+        .respond(
+            "page1",
+            signaled(4, "name"),
+            event(5, EventType.DecisionTaskCompleted),
+            signaled(6, "other"),
+            event(7, EventType.DecisionTaskCompleted));
+    assertFalse(future.isDone());
+
+    polls.next().respond("page2", signaled(8, "name"), event(9, EventType.DecisionTaskCompleted));
+    assertTrue(future.get(1, TimeUnit.SECONDS).isSignalProcessed());
+  }
+
+  @Test
+  public void testWorkflowClosedBeforeProcessing() throws Exception {
+    CompletableFuture<SignalWaitResult> future = signalAndWait("name");
+    polls.next().respond(null, signaled(6, "name"), event(7, EventType.WorkflowExecutionTimedOut));
+
+    SignalWaitResult result = future.get(1, TimeUnit.SECONDS);
+    assertTrue(result.isSignalReceived());
+    assertFalse(result.isSignalProcessed());
+    assertFalse(result.isWorkflowRunning());
+    assertTrue(polls.isEmpty());
+  }
+
+  @Test
+  public void testIdleWatcherIsReused() throws Exception {
+    CompletableFuture<SignalWaitResult> future = signalAndWait("first");
+    polls.next().respond("page1", signaled(6, "first"), event(7, EventType.DecisionTaskCompleted));
+    assertTrue(future.get(1, TimeUnit.SECONDS).isSignalProcessed());
+
+    // The idle watcher keeps following the history instead of reading it again from the start.
+    future = signalAndWait("second");
+    Poll poll = polls.next();
+    assertArrayEquals("page1".getBytes(StandardCharsets.UTF_8), poll.request.getNextPageToken());
+    verify(service, times(1))
+        .DescribeWorkflowExecution(any(DescribeWorkflowExecutionRequest.class));
+    poll.respond("page2", signaled(10, "second"), event(11, EventType.DecisionTaskCompleted));
+    assertTrue(future.get(1, TimeUnit.SECONDS).isSignalProcessed());
+  }
+
+  @Test
+  public void testIdleWatcherIsClosed() throws Exception {
+    useClientWithoutIdleTimeout();
+    CompletableFuture<SignalWaitResult> future = signalAndWait("first");
+    polls.next().respond("page1", signaled(6, "first"), event(7, EventType.DecisionTaskCompleted));
+    assertTrue(future.get(1, TimeUnit.SECONDS).isSignalProcessed());
+
+    future = signalAndWait("second");
+    // Depending on timing the stopped watcher has issued one more poll, which is never answered.
+    Poll poll = polls.next();
+    if (poll.request.getNextPageToken() != null) {
+      poll = polls.next();
+    }
+    assertNull(poll.request.getNextPageToken());
+    verify(service, times(2))
+        .DescribeWorkflowExecution(any(DescribeWorkflowExecutionRequest.class));
+    poll.respond("page1", signaled(10, "second"), event(11, EventType.DecisionTaskCompleted));
+    assertTrue(future.get(1, TimeUnit.SECONDS).isSignalProcessed());
+  }
+
+  @Test
+  public void testFailedSignalOperation() throws Exception {
+    useClientWithoutIdleTimeout();
+    CompletableFuture<SignalWaitResult> future =
+        client.signalAndWait(
+            "workflow",
+            () -> {
+              throw new IllegalStateException("signal failed");
+            },
+            SIGNAL,
+            input("name"));
+    assertTrue(future.isCompletedExceptionally());
+
+    // The failed caller released the watcher.
+    signalAndWait("name");
+    verify(service, times(2))
+        .DescribeWorkflowExecution(any(DescribeWorkflowExecutionRequest.class));
+  }
+
+  private void useClientWithoutIdleTimeout() {
+    client.close();
+    client = new SignalAndWaitClient(service, "domain", Duration.ZERO);
+  }
+
+  private CompletableFuture<SignalWaitResult> signalAndWait(String name) {
+    return client.signalAndWait("workflow", () -> {}, SIGNAL, input(name));
+  }
+
+  private static byte[] input(String name) {
+    return ("\"" + name + "\"").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static HistoryEvent event(long eventId, EventType type) {
+    return new HistoryEvent().setEventId(eventId).setEventType(type);
+  }
+
+  private static HistoryEvent signaled(long eventId, String name) {
+    return event(eventId, EventType.WorkflowExecutionSignaled)
+        .setWorkflowExecutionSignaledEventAttributes(
+            new WorkflowExecutionSignaledEventAttributes()
+                .setSignalName(SIGNAL)
+                .setInput(input(name)));
+  }
+}
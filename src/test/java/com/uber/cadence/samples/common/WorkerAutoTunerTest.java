@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.samples.common.WorkerAutoTuner.Decision;
+import com.uber.cadence.samples.common.WorkerAutoTuner.Reason;
+import com.uber.cadence.samples.common.WorkerAutoTuner.Settings;
+import com.uber.cadence.samples.common.WorkerTelemetry.Snapshot;
+import com.uber.m3.tally.NoopScope;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/** Unit test for {@link WorkerAutoTuner}. */
+public class WorkerAutoTunerTest {
+
+  private static final Settings INITIAL = Settings.newBuilder().build();
+  private static final Settings MIN =
+      INITIAL.toBuilder().setMaxWorkflowThreads(200).setStickyCacheSize(20).build();
+  private static final Settings MAX =
+      INITIAL
+          .toBuilder()
+          .setMaxWorkflowThreads(1200)
+          .setStickyCacheSize(1000)
+          .setMaxConcurrentActivities(120)
+          .setActivityPollers(4)
+          .setDecisionPollers(4)
+          .build();
+
+  private static final Map<String, Long> NO_LAG = Collections.emptyMap();
+  private static final long LAG = TimeUnit.SECONDS.toNanos(5);
+
+  private final WorkerAutoTuner tuner =
+      WorkerAutoTuner.newBuilder(
+              mock(WorkflowClient.class),
+              new WorkerTelemetry(NoopScope.getInstance(), 1000, 100),
+              "taskList",
+              worker -> {})
+          .setInitialSettings(INITIAL)
+          .setMinSettings(MIN)
+          .setMaxSettings(MAX)
+          .build();
+
+  @Test
+  public void testHealthyWorkerIsLeftAlone() {
+    assertNull(tuner.decide(snapshot(0.95, 0.5, 0.5, NO_LAG), 0.5, 0.5));
+    // No sticky lookups in the interval.
+    assertNull(tuner.decide(snapshot(Double.NaN, 0, 0, NO_LAG), 0, 0));
+  }
+
+  @Test
+  public void testSaturatedActivitySlotsGrowWithinBounds() {
+    Decision decision = tuner.decide(snapshot(1, 0.5, 0.9, NO_LAG), 0.5, 0.5);
+    assertEquals(Reason.ACTIVITY_SLOTS_SATURATED, decision.reason);
+    // 150 is capped by the maximum.
+    assertEquals(120, decision.settings.getMaxConcurrentActivities());
+    assertEquals(INITIAL.getMaxWorkflowThreads(), decision.settings.getMaxWorkflowThreads());
+  }
+
+  @Test
+  public void testBusyCpuBlocksActivityGrowth() {
+    assertNull(tuner.decide(snapshot(1, 0.5, 0.9, NO_LAG), 0.95, 0.5));
+  }
+
+  @Test
+  public void testHeapPressureShrinksStickyCacheFirst() {
+    Decision decision = tuner.decide(snapshot(0.5, 0.9, 0.9, NO_LAG), 0.5, 0.9);
+    assertEquals(Reason.HEAP_PRESSURE, decision.reason);
+    assertEquals(75, decision.settings.getStickyCacheSize());
+    assertEquals(INITIAL.getMaxWorkflowThreads(), decision.settings.getMaxWorkflowThreads());
+  }
+
+  @Test
+  public void testShrinkingSettingsAreBelow() {
+    Decision heap = tuner.decide(snapshot(0.5, 0.9, 0.9, NO_LAG), 0.5, 0.9);
+    Decision activities = tuner.decide(snapshot(1, 0.5, 0.9, NO_LAG), 0.5, 0.5);
+
+    // Shrinking restarts drain the old worker before the new one starts.
+    assertTrue(heap.settings.isBelow(INITIAL));
+    assertFalse(activities.settings.isBelow(INITIAL));
+    assertFalse(INITIAL.isBelow(INITIAL));
+  }
+
+  @Test
+  public void testSaturatedWorkflowThreadsGrow() {
+    Decision decision = tuner.decide(snapshot(1, 0.9, 0.1, NO_LAG), 0.5, 0.5);
+    assertEquals(Reason.WORKFLOW_THREADS_SATURATED, decision.reason);
+    assertEquals(1200, decision.settings.getMaxWorkflowThreads());
+  }
+
+  @Test
+  public void testLagWithSpareCapacityAddsPollers() {
+    Decision decision =
+        tuner.decide(snapshot(1, 0.1, 0.1, Collections.singletonMap("activity:tl", LAG)), 0.5, 0.5);
+    assertEquals(Reason.ACTIVITY_TASKS_WAIT, decision.reason);
+    assertEquals(2, decision.settings.getActivityPollers());
+    assertEquals(1, decision.settings.getDecisionPollers());
+
+    decision =
+        tuner.decide(snapshot(1, 0.1, 0.1, Collections.singletonMap("decision:tl", LAG)), 0.5, 0.5);
+    assertEquals(Reason.DECISION_TASKS_WAIT, decision.reason);
+    assertEquals(2, decision.settings.getDecisionPollers());
+  }
+
+  @Test
+  public void testStickyCacheMissesGrowCache() {
+    Decision decision = tuner.decide(snapshot(0.5, 0.1, 0.1, NO_LAG), 0.5, 0.5);
+    assertEquals(Reason.STICKY_CACHE_MISSES, decision.reason);
+    assertEquals(150, decision.settings.getStickyCacheSize());
+  }
+
+  private static Snapshot snapshot(
+      double stickyCacheHitRatio,
+      double workflowThreadUtilization,
+      double activitySlotSaturation,
+      Map<String, Long> scheduleToStartP90Nanos) {
+    return new Snapshot(
+        10,
+        stickyCacheHitRatio,
+        workflowThreadUtilization,
+        activitySlotSaturation,
+        scheduleToStartP90Nanos);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.m3.tally.NoopScope;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.tally.Stopwatch;
+import com.uber.m3.util.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link WorkerTelemetry}. */
+public class WorkerTelemetryTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+  private WorkerTelemetry telemetry;
+
+  @Before
+  public void setUp() {
+    telemetry = new WorkerTelemetry(NoopScope.getInstance(), 100, 10, nanos::get);
+  }
+
+  @Test
+  public void testStickyCacheHitRatio() {
+    telemetry.counter(WorkerTelemetry.STICKY_CACHE_HIT).inc(3);
+    telemetry.subScope("worker").counter(WorkerTelemetry.STICKY_CACHE_MISS).inc(1);
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    assertEquals(0.75, telemetry.snapshot().getStickyCacheHitRatio(), 1e-9);
+    // Every snapshot covers the interval since the previous one.
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertTrue(Double.isNaN(telemetry.snapshot().getStickyCacheHitRatio()));
+  }
+
+  @Test
+  public void testActivitySlotSaturationFollowsLittlesLaw() {
+    // 20 activities of 2 seconds each over 10 seconds keep 4 of the 10 slots busy on average.
+    for (int i = 0; i < 20; i++) {
+      telemetry.timer(WorkerTelemetry.ACTIVITY_EXECUTION_LATENCY).record(Duration.ofSeconds(2));
+    }
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+    WorkerTelemetry.Snapshot snapshot = telemetry.snapshot();
+    assertEquals(0.4, snapshot.getActivitySlotSaturation(), 1e-9);
+    assertEquals("healthy", snapshot.getRecommendation());
+  }
+
+  @Test
+  public void testWorkflowThreadUtilization() {
+    telemetry.gauge(WorkerTelemetry.WORKFLOW_ACTIVE_THREAD_COUNT).update(90);
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    WorkerTelemetry.Snapshot snapshot = telemetry.snapshot();
+    assertEquals(0.9, snapshot.getWorkflowThreadUtilization(), 1e-9);
+    assertTrue(snapshot.getRecommendation().startsWith("workflow threads are saturated"));
+  }
+
+  @Test
+  public void testScheduleToStartLagPerTaskList() {
+    Scope taskList =
+        telemetry.tagged(Collections.singletonMap(WorkerTelemetry.TASK_LIST_TAG, "HelloActivity"));
+    for (int i = 0; i < 10; i++) {
+      taskList
+          .timer(WorkerTelemetry.ACTIVITY_SCHEDULE_TO_START_LATENCY)
+          .record(Duration.ofSeconds(5));
+    }
+    Stopwatch stopwatch =
+        taskList.timer(WorkerTelemetry.DECISION_SCHEDULE_TO_START_LATENCY).start();
+    stopwatch.stop();
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    WorkerTelemetry.Snapshot snapshot = telemetry.snapshot();
+    assertEquals(
+        TimeUnit.SECONDS.toNanos(5),
+        (long) snapshot.getScheduleToStartP90Nanos().get("activity:HelloActivity"));
+    assertTrue(snapshot.getScheduleToStartP90Nanos().containsKey("decision:HelloActivity"));
+    assertEquals(
+        "tasks wait while the worker has spare capacity: add activity task list pollers",
+        snapshot.getRecommendation());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.uber.cadence.ActivityTaskScheduledEventAttributes;
+import com.uber.cadence.ActivityType;
+import com.uber.cadence.EventType;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.GetWorkflowExecutionHistoryResponse;
+import com.uber.cadence.History;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/** Unit test for {@link WorkflowExecutionHistoryExporter}. */
+public class WorkflowExecutionHistoryExporterTest {
+
+  @Test
+  public void testEventLayout() {
+    HistoryEvent event =
+        new HistoryEvent()
+            .setEventId(5)
+            .setEventType(EventType.ActivityTaskScheduled)
+            .setActivityTaskScheduledEventAttributes(
+                new ActivityTaskScheduledEventAttributes()
+                    .setActivityType(new ActivityType().setName("Activities::compute"))
+                    .setInput("[4]".getBytes(StandardCharsets.UTF_8)));
+
+    String json = WorkflowExecutionHistoryExporter.HISTORY_GSON.toJson(event);
+
+    assertTrue(json, json.contains("\"eventId\":5"));
+    assertTrue(json, json.contains("\"eventType\":\"ActivityTaskScheduled\""));
+    assertTrue(json, json.contains("\"name\":\"Activities::compute\""));
+    // Binary payloads are base64 encoded like in histories exported by the Cadence CLI.
+    assertTrue(json, json.contains("\"input\":\"WzRd\""));
+    assertFalse(json, json.contains("__isset"));
+  }
+
+  @Test
+  public void testExportPagesThroughHistory() throws Exception {
+    IWorkflowService service = mock(IWorkflowService.class);
+    GetWorkflowExecutionHistoryResponse firstPage =
+        new GetWorkflowExecutionHistoryResponse()
+            .setHistory(new History().setEvents(Arrays.asList(event(1), event(2))))
+            .setNextPageToken(new byte[] {1});
+    GetWorkflowExecutionHistoryResponse lastPage =
+        new GetWorkflowExecutionHistoryResponse()
+            .setHistory(new History().setEvents(Collections.singletonList(event(3))));
+    when(service.GetWorkflowExecutionHistory(any(GetWorkflowExecutionHistoryRequest.class)))
+        .thenReturn(firstPage, lastPage);
+
+    StringWriter writer = new StringWriter();
+    long exported =
+        WorkflowExecutionHistoryExporter.export(
+            service, "domain", new WorkflowExecution().setWorkflowId("id"), writer);
+
+    assertEquals(3, exported);
+    String[] lines = writer.toString().split("\n");
+    assertEquals(3, lines.length);
+    assertTrue(lines[2], lines[2].contains("\"eventId\":3"));
+
+    ArgumentCaptor<GetWorkflowExecutionHistoryRequest> requests =
+        ArgumentCaptor.forClass(GetWorkflowExecutionHistoryRequest.class);
+    verify(service, times(2)).GetWorkflowExecutionHistory(requests.capture());
+    assertNull(requests.getAllValues().get(0).getNextPageToken());
+    assertEquals(1, requests.getAllValues().get(1).getNextPageToken()[0]);
+  }
+
+  private static HistoryEvent event(long eventId) {
+    return new HistoryEvent().setEventId(eventId).setEventType(EventType.TimerFired);
+  }
+}
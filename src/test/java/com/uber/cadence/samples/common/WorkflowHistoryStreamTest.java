@@ -0,0 +1,254 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import com.uber.cadence.BadRequestError;
+import com.uber.cadence.EntityNotExistsError;
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.HistoryEventFilterType;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionContinuedAsNewEventAttributes;
+import com.uber.cadence.samples.common.WorkflowHistoryStream.Listener;
+import com.uber.cadence.samples.common.WorkflowHistoryStream.Subscription;
+import com.uber.cadence.samples.common.HistoryPolls.Poll;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link WorkflowHistoryStream}. */
+public class WorkflowHistoryStreamTest {
+
+  private static final WorkflowExecution RUN =
+      new WorkflowExecution().setWorkflowId("workflow").setRunId("run1");
+
+  /** Records delivered events as "runId:eventId" strings. */
+  private static class RecordingListener implements Listener {
+    final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    final CompletableFuture<WorkflowExecution> closed = new CompletableFuture<>();
+    final long initialDemand;
+    volatile Subscription subscription;
+
+    RecordingListener(long initialDemand) {
+      this.initialDemand = initialDemand;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(initialDemand);
+    }
+
+    @Override
+    public void onEvent(WorkflowExecution run, HistoryEvent event) {
+      events.add(run.getRunId() + ":" + event.getEventId());
+    }
+
+    @Override
+    public void onClosed(WorkflowExecution lastRun) {
+      closed.complete(lastRun);
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+      closed.completeExceptionally(failure);
+    }
+
+    String next() throws InterruptedException {
+      return events.poll(1, TimeUnit.SECONDS);
+    }
+  }
+
+  private HistoryPolls polls;
+  private WorkflowHistoryStream stream;
+
+  @Before
+  public void setUp() throws Exception {
+    IWorkflowService service = mock(IWorkflowService.class);
+    polls = new HistoryPolls(service);
+    stream = new WorkflowHistoryStream(service, "domain");
+  }
+
+  @After
+  public void tearDown() {
+    stream.close();
+  }
+
+  @Test
+  public void testFollowsContinueAsNew() throws Exception {
+    RecordingListener listener = new RecordingListener(Long.MAX_VALUE);
+    stream.subscribe(RUN, 0, true, listener);
+
+    Poll poll = polls.next();
+    assertEquals("run1", poll.request.getExecution().getRunId());
+    assertTrue(poll.request.isWaitForNewEvent());
+    poll.respond("page1", event(1), event(2));
+    assertEquals("run1:1", listener.next());
+    assertEquals("run1:2", listener.next());
+
+    poll = polls.next();
+    assertEquals("page1", new String(poll.request.getNextPageToken(), StandardCharsets.UTF_8));
+    poll.respond(null, event(3), continuedAsNew(4, "run2"));
+    assertEquals("run1:3", listener.next());
+    assertEquals("run1:4", listener.next());
+
+    poll = polls.next();
+    assertEquals("run2", poll.request.getExecution().getRunId());
+    assertNull(poll.request.getNextPageToken());
+    poll.respond(null, event(1), event(2));
+    assertEquals("run2:1", listener.next());
+    assertEquals("run2:2", listener.next());
+    assertEquals("run2", listener.closed.get(1, TimeUnit.SECONDS).getRunId());
+    assertTrue(polls.isEmpty());
+  }
+
+  @Test
+  public void testCloseEventsOnly() throws Exception {
+    RecordingListener listener = new RecordingListener(Long.MAX_VALUE);
+    stream.subscribeToCloseEvents(RUN, true, listener);
+
+    Poll poll = polls.next();
+    assertEquals(HistoryEventFilterType.CLOSE_EVENT, poll.request.getHistoryEventFilterType());
+    assertTrue(poll.request.isWaitForNewEvent());
+    // Long polls that time out while the run is open are repeated.
+    poll.respond("token");
+    poll = polls.next();
+    assertEquals("token", new String(poll.request.getNextPageToken(), StandardCharsets.UTF_8));
+    poll.respond(null);
+    poll = polls.next();
+    assertEquals("run1", poll.request.getExecution().getRunId());
+    poll.respond(null, continuedAsNew(20, "run2"));
+    assertEquals("run1:20", listener.next());
+
+    poll = polls.next();
+    assertEquals("run2", poll.request.getExecution().getRunId());
+    assertEquals(HistoryEventFilterType.CLOSE_EVENT, poll.request.getHistoryEventFilterType());
+    poll.respond(
+        null, new HistoryEvent().setEventId(7).setEventType(EventType.WorkflowExecutionFailed));
+    assertEquals("run2:7", listener.next());
+    assertEquals("run2", listener.closed.get(1, TimeUnit.SECONDS).getRunId());
+    assertTrue(polls.isEmpty());
+  }
+
+  @Test
+  public void testBackpressure() throws Exception {
+    RecordingListener listener = new RecordingListener(1);
+    stream.subscribe(RUN, 0, false, listener);
+
+    polls.next().respond("page1", event(1), event(2), event(3));
+    assertEquals("run1:1", listener.next());
+    assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+    // The next page is not requested while events are buffered.
+    assertTrue(polls.isEmpty());
+
+    listener.subscription.request(2);
+    assertEquals("run1:2", listener.next());
+    assertEquals("run1:3", listener.next());
+    assertEquals(3, listener.subscription.getLastEventId());
+    Poll poll = polls.next();
+    assertEquals("page1", new String(poll.request.getNextPageToken(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testResumesAfterRejectedToken() throws Exception {
+    RecordingListener listener = new RecordingListener(Long.MAX_VALUE);
+    stream.subscribe(RUN, 1, false, listener);
+
+    polls.next().respond("page1", event(1), event(2), event(3));
+    assertEquals("run1:2", listener.next());
+    assertEquals("run1:3", listener.next());
+
+    polls.next().callback.onError(new BadRequestError("invalid page token"));
+    Poll poll = polls.next();
+    assertNull(poll.request.getNextPageToken());
+    poll.respond(null, event(1), event(2), event(3), event(4));
+    assertEquals("run1:4", listener.next());
+    listener.closed.get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testBlockingPollsDoNotHoldUpDelivery() throws Exception {
+    IWorkflowService service = mock(IWorkflowService.class);
+    HistoryPolls blockingPolls = HistoryPolls.blocking(service);
+    WorkflowHistoryStream blockingStream = new WorkflowHistoryStream(service, "domain", 1);
+    try {
+      RecordingListener[] listeners = new RecordingListener[3];
+      for (int i = 0; i < listeners.length; i++) {
+        listeners[i] = new RecordingListener(Long.MAX_VALUE);
+        blockingStream.subscribe(
+            new WorkflowExecution().setWorkflowId("workflow" + i).setRunId("run" + i),
+            0,
+            false,
+            listeners[i]);
+      }
+
+      // Every run has a poll pending at once, although the stream has a single thread.
+      Map<String, Poll> pending = new HashMap<>();
+      for (int i = 0; i < listeners.length; i++) {
+        Poll poll = blockingPolls.next();
+        pending.put(poll.request.getExecution().getWorkflowId(), poll);
+      }
+      pending.get("workflow2").respond("page1", event(1));
+      assertEquals("run2:1", listeners[2].next());
+      assertEquals("workflow2", blockingPolls.next().request.getExecution().getWorkflowId());
+    } finally {
+      blockingStream.close();
+    }
+  }
+
+  @Test
+  public void testDeletedHistory() throws Exception {
+    RecordingListener listener = new RecordingListener(Long.MAX_VALUE);
+    Subscription subscription = stream.subscribe(RUN, listener);
+    polls.next().callback.onError(new EntityNotExistsError("not found"));
+    try {
+      listener.closed.get(1, TimeUnit.SECONDS);
+      fail("expected the subscription to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof EntityNotExistsError);
+    }
+    assertEquals(0, subscription.getLastEventId());
+  }
+
+  private static HistoryEvent event(long eventId) {
+    return new HistoryEvent().setEventId(eventId).setEventType(EventType.DecisionTaskCompleted);
+  }
+
+  private static HistoryEvent continuedAsNew(long eventId, String newRunId) {
+    return new HistoryEvent()
+        .setEventId(eventId)
+        .setEventType(EventType.WorkflowExecutionContinuedAsNew)
+        .setWorkflowExecutionContinuedAsNewEventAttributes(
+            new WorkflowExecutionContinuedAsNewEventAttributes().setNewExecutionRunId(newRunId));
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.HistoryEventFilterType;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionContinuedAsNewEventAttributes;
+import com.uber.cadence.client.DuplicateWorkflowException;
+import com.uber.cadence.samples.common.HistoryPolls.Poll;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link WorkflowSupervisor}. */
+public class WorkflowSupervisorTest {
+
+  private final BlockingQueue<String> notifications = new LinkedBlockingQueue<>();
+  private final AtomicInteger starts = new AtomicInteger();
+  private final WorkflowSupervisor.Listener listener =
+      new WorkflowSupervisor.Listener() {
+        @Override
+        public void onStarted(WorkflowExecution execution) {
+          notifications.add("started " + execution.getRunId());
+        }
+
+        @Override
+        public void onAlreadyRunning(WorkflowExecution execution) {
+          notifications.add("running " + execution.getRunId());
+        }
+
+        @Override
+        public void onClosed(WorkflowExecution run, HistoryEvent closeEvent) {
+          notifications.add("closed " + run.getRunId() + " " + closeEvent.getEventType());
+        }
+
+        @Override
+        public void onError(String workflowId, Throwable failure) {
+          notifications.add("error " + failure.getMessage());
+        }
+      };
+  private HistoryPolls polls;
+  private WorkflowSupervisor supervisor;
+
+  @Before
+  public void setUp() throws Exception {
+    IWorkflowService service = mock(IWorkflowService.class);
+    polls = new HistoryPolls(service);
+    supervisor = new WorkflowSupervisor(service, "domain", listener);
+  }
+
+  @After
+  public void tearDown() {
+    supervisor.close();
+  }
+
+  @Test
+  public void testRestartsWhenLastRunCloses() throws Exception {
+    supervisor.supervise("workflow", () -> execution("run" + starts.incrementAndGet()));
+    assertEquals("started run1", nextNotification());
+
+    Poll poll = polls.next();
+    assertEquals("run1", poll.request.getExecution().getRunId());
+    assertEquals(HistoryEventFilterType.CLOSE_EVENT, poll.request.getHistoryEventFilterType());
+    assertTrue(poll.request.isWaitForNewEvent());
+    assertNull(poll.request.getNextPageToken());
+    // The long poll timed out, the run is still open.
+    poll.respond("token");
+    poll = polls.next();
+    assertEquals("run1", poll.request.getExecution().getRunId());
+    assertArrayEquals("token".getBytes(StandardCharsets.UTF_8), poll.request.getNextPageToken());
+
+    // Continue as new is followed without a restart.
+    poll.respond(
+        null,
+        new HistoryEvent()
+            .setEventId(20)
+            .setEventType(EventType.WorkflowExecutionContinuedAsNew)
+            .setWorkflowExecutionContinuedAsNewEventAttributes(
+                new WorkflowExecutionContinuedAsNewEventAttributes()
+                    .setNewExecutionRunId("next")));
+    poll = polls.next();
+    assertEquals("next", poll.request.getExecution().getRunId());
+    assertNull(poll.request.getNextPageToken());
+    assertEquals(1, starts.get());
+
+    poll.respond(
+        null, new HistoryEvent().setEventId(7).setEventType(EventType.WorkflowExecutionCompleted));
+    assertEquals("closed next WorkflowExecutionCompleted", nextNotification());
+    assertEquals("started run2", nextNotification());
+    assertEquals("run2", polls.next().request.getExecution().getRunId());
+  }
+
+  @Test
+  public void testAdoptsRunningWorkflow() throws Exception {
+    supervisor.supervise(
+        "workflow",
+        () -> {
+          throw new DuplicateWorkflowException(execution("running"), "GreetingWorkflow", "dup");
+        });
+    assertEquals("running running", nextNotification());
+    assertEquals("running", polls.next().request.getExecution().getRunId());
+  }
+
+  @Test
+  public void testRetriesFailedStarts() throws Exception {
+    supervisor.supervise(
+        "workflow",
+        () -> {
+          if (starts.incrementAndGet() < 3) {
+            throw new IllegalStateException("unavailable");
+          }
+          return execution("run");
+        });
+    assertEquals("error unavailable", nextNotification());
+    assertEquals("error unavailable", nextNotification());
+    assertEquals("started run", nextNotification());
+    assertEquals("run", polls.next().request.getExecution().getRunId());
+  }
+
+  @Test
+  public void testStopSupervising() throws Exception {
+    supervisor.supervise("workflow", () -> execution("run" + starts.incrementAndGet()));
+    Poll poll = polls.next();
+    supervisor.stopSupervising("workflow");
+    poll.respond(
+        null, new HistoryEvent().setEventId(7).setEventType(EventType.WorkflowExecutionFailed));
+
+    assertEquals("started run1", nextNotification());
+    assertNull(notifications.poll(100, TimeUnit.MILLISECONDS));
+    assertTrue(polls.isEmpty());
+    assertEquals(1, starts.get());
+  }
+
+  @Test
+  public void testSupervisesMoreWorkflowsThanThreadsOverBlockingTransport() throws Exception {
+    supervisor.close();
+    IWorkflowService service = mock(IWorkflowService.class);
+    polls = HistoryPolls.blocking(service);
+    supervisor = new WorkflowSupervisor(service, "domain", listener, 2);
+    int workflows = 10;
+    for (int i = 0; i < workflows; i++) {
+      String workflowId = "workflow" + i;
+      supervisor.supervise(
+          workflowId,
+          () ->
+              new WorkflowExecution()
+                  .setWorkflowId(workflowId)
+                  .setRunId(workflowId + "-run" + starts.incrementAndGet()));
+    }
+
+    // Every workflow waits for its close event at once.
+    Map<String, Poll> pending = new HashMap<>();
+    for (int i = 0; i < workflows; i++) {
+      Poll poll = polls.next();
+      pending.put(poll.request.getExecution().getWorkflowId(), poll);
+    }
+    assertEquals(workflows, pending.size());
+    for (int i = 0; i < workflows; i++) {
+      assertTrue(nextNotification().startsWith("started "));
+    }
+
+    // The last workflow restarts as soon as its run closes, while all others are still polling.
+    Poll last = pending.get("workflow" + (workflows - 1));
+    last.respond(
+        null, new HistoryEvent().setEventId(7).setEventType(EventType.WorkflowExecutionCompleted));
+    String closedRunId = last.request.getExecution().getRunId();
+    assertEquals("closed " + closedRunId + " WorkflowExecutionCompleted", nextNotification());
+    assertEquals("started workflow9-run" + (workflows + 1), nextNotification());
+    assertEquals("workflow9", polls.next().request.getExecution().getWorkflowId());
+  }
+
+  private String nextNotification() throws InterruptedException {
+    String notification = notifications.poll(1, TimeUnit.SECONDS);
+    if (notification == null) {
+      throw new AssertionError("no notification");
+    }
+    return notification;
+  }
+
+  private static WorkflowExecution execution(String runId) {
+    return new WorkflowExecution().setWorkflowId("workflow").setRunId(runId);
+  }
+}
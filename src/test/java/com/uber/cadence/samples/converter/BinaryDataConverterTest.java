@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.JsonDataConverter;
+import com.uber.cadence.samples.hello.HelloDataConverter.MyStruct;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/** Unit test for {@link BinaryDataConverter}. */
+public class BinaryDataConverterTest {
+
+  private static final Codec<MyStruct> MY_STRUCT_CODEC =
+      new Codec<MyStruct>() {
+        @Override
+        public void encode(MyStruct value, BinaryWriter out) {
+          out.writeInt(value.num);
+          out.writeString(value.str);
+        }
+
+        @Override
+        public MyStruct decode(BinaryReader in) {
+          return new MyStruct(in.readInt(), in.readString());
+        }
+      };
+
+  private final DataConverter converter =
+      BinaryDataConverter.newBuilder().register(MyStruct.class, MY_STRUCT_CODEC).build();
+
+  @Test
+  public void testArgumentsRoundTrip() {
+    byte[] data =
+        converter.toData("Gr\u00fc\u00dfe #1", 42, null, 7L, true, 1.5, new byte[] {1, 2});
+    assertEquals(BinaryDataConverter.MARKER, data[0]);
+
+    Object[] values =
+        converter.fromDataArray(
+            data,
+            String.class,
+            int.class,
+            String.class,
+            Long.class,
+            boolean.class,
+            double.class,
+            byte[].class);
+
+    assertEquals("Gr\u00fc\u00dfe #1", values[0]);
+    assertEquals(42, values[1]);
+    assertNull(values[2]);
+    assertEquals(7L, values[3]);
+    assertEquals(true, values[4]);
+    assertEquals(1.5, values[5]);
+    assertArrayEquals(new byte[] {1, 2}, (byte[]) values[6]);
+  }
+
+  @Test
+  public void testRegisteredCodec() {
+    byte[] data = converter.toData(new MyStruct(100, "Hello"));
+
+    MyStruct value = converter.fromData(data, MyStruct.class, MyStruct.class);
+
+    assertEquals(100, value.num);
+    assertEquals("Hello", value.str);
+  }
+
+  @Test
+  public void testRegisteredCodecDeclaredAsObject() {
+    byte[] data = converter.toData(new MyStruct(100, "Hello"), 5L);
+
+    Object[] values = converter.fromDataArray(data, Object.class, Number.class);
+    Object value = converter.fromData(data, Object.class, Object.class);
+
+    assertEquals(100, ((MyStruct) values[0]).num);
+    assertEquals("Hello", ((MyStruct) values[0]).str);
+    assertEquals(5L, values[1]);
+    assertEquals("Hello", ((MyStruct) value).str);
+  }
+
+  @Test
+  public void testValuesWithoutCodecUseJson() {
+    List<Integer> list = Arrays.asList(1, 2, 3);
+    byte[] data = converter.toData("numbers", list);
+    assertNotEquals(BinaryDataConverter.MARKER, data[0]);
+
+    Object[] values = converter.fromDataArray(data, String.class, List.class);
+
+    assertEquals("numbers", values[0]);
+    assertEquals(3, ((List<?>) values[1]).size());
+  }
+
+  @Test
+  public void testReadsJsonPayloads() {
+    byte[] data = JsonDataConverter.getInstance().toData("Hello", 5);
+
+    Object[] values = converter.fromDataArray(data, String.class, int.class);
+
+    assertEquals("Hello", values[0]);
+    assertEquals(5, values[1]);
+  }
+
+  @Test
+  public void testChangedSignature() {
+    byte[] data = converter.toData("Hello");
+
+    assertArrayEquals(
+        new Object[] {"Hello", null}, converter.fromDataArray(data, String.class, Integer.class));
+    assertArrayEquals(new Object[0], converter.fromDataArray(data));
+  }
+
+  @Test
+  public void testLargePayload() {
+    char[] chars = new char[200_000];
+    Arrays.fill(chars, 'x');
+    String large = new String(chars);
+
+    assertEquals(large, converter.fromData(converter.toData(large), String.class, String.class));
+    // The buffer that grew for the large payload is not reused.
+    byte[] small = converter.toData("small");
+    assertEquals("small", converter.fromData(small, String.class, String.class));
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.DataConverterException;
+import com.uber.cadence.converter.JsonDataConverter;
+import com.uber.m3.tally.Counter;
+import com.uber.m3.tally.Scope;
+import com.uber.m3.tally.Timer;
+import com.uber.m3.util.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/** Unit test for {@link CompressingDataConverter}. */
+public class CompressingDataConverterTest {
+
+  private final DataConverter json = JsonDataConverter.getInstance();
+  private final DataConverter converter =
+      CompressingDataConverter.newBuilder(json).setThreshold(1024).build();
+
+  @Test
+  public void testLargePayloadIsCompressed() {
+    String large = repeat("Hello Cadence! ", 1000);
+
+    byte[] data = converter.toData(large, 7);
+
+    assertEquals(CompressingDataConverter.MARKER, data[0]);
+    assertTrue(data.length < json.toData(large, 7).length / 10);
+    assertArrayEquals(
+        new Object[] {large, 7}, converter.fromDataArray(data, String.class, int.class));
+    assertEquals(large, converter.fromData(converter.toData(large), String.class, String.class));
+  }
+
+  @Test
+  public void testSmallPayloadIsUnchanged() {
+    assertArrayEquals(json.toData("Hello"), converter.toData("Hello"));
+  }
+
+  @Test
+  public void testUncompressedPayloadsStillDecode() {
+    String large = repeat("x", 10_000);
+
+    assertEquals(large, converter.fromData(json.toData(large), String.class, String.class));
+  }
+
+  @Test
+  public void testIncompressiblePayloadIsStoredUncompressed() {
+    byte[] random = new byte[8192];
+    new Random(42).nextBytes(random);
+    DataConverter binary = BinaryDataConverter.newBuilder().build();
+    DataConverter compressing =
+        CompressingDataConverter.newBuilder(binary).setThreshold(1024).build();
+
+    byte[] data = compressing.toData((Object) random);
+
+    assertArrayEquals(binary.toData((Object) random), data);
+    assertArrayEquals(random, compressing.fromData(data, byte[].class, byte[].class));
+  }
+
+  @Test
+  public void testRejectsSizeAboveMaximum() {
+    DataConverter limited =
+        CompressingDataConverter.newBuilder(json)
+            .setThreshold(1024)
+            .setMaxUncompressedSize(8192)
+            .build();
+    byte[] data = converter.toData(repeat("a", 10_000));
+
+    try {
+      limited.fromData(data, String.class, String.class);
+      fail("unreachable");
+    } catch (DataConverterException e) {
+      assertTrue(e.getCause().getMessage().contains("exceeds the maximum"));
+    }
+    // Payloads that could not be read back are not compressed.
+    assertArrayEquals(json.toData(repeat("a", 10_000)), limited.toData(repeat("a", 10_000)));
+  }
+
+  @Test
+  public void testRejectsLengthMismatch() {
+    byte[] data = converter.toData(repeat("a", 10_000));
+
+    for (int delta : new int[] {-1, 1}) {
+      byte[] corrupt = data.clone();
+      int size = json.toData(repeat("a", 10_000)).length + delta;
+      corrupt[1] = (byte) (size >>> 24);
+      corrupt[2] = (byte) (size >>> 16);
+      corrupt[3] = (byte) (size >>> 8);
+      corrupt[4] = (byte) size;
+      try {
+        converter.fromData(corrupt, String.class, String.class);
+        fail("unreachable");
+      } catch (DataConverterException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testValidatesBuilder() {
+    CompressingDataConverter.Builder builder = CompressingDataConverter.newBuilder(json);
+    for (Runnable invalid :
+        Arrays.<Runnable>asList(
+            () -> builder.setLevel(0),
+            () -> builder.setLevel(10),
+            () -> builder.setPoolSize(0),
+            () -> builder.setMaxUncompressedSize(0))) {
+      try {
+        invalid.run();
+        fail("unreachable");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testMetrics() {
+    Scope scope = mock(Scope.class);
+    Counter payloads = mock(Counter.class);
+    Counter uncompressedBytes = mock(Counter.class);
+    Counter compressedBytes = mock(Counter.class);
+    when(scope.counter("data-converter-compressed-payloads")).thenReturn(payloads);
+    when(scope.counter("data-converter-uncompressed-bytes")).thenReturn(uncompressedBytes);
+    when(scope.counter("data-converter-compressed-bytes")).thenReturn(compressedBytes);
+    Timer timer = mock(Timer.class);
+    when(scope.timer(anyString())).thenReturn(timer);
+    DataConverter metered =
+        CompressingDataConverter.newBuilder(json).setThreshold(1024).setMetricsScope(scope).build();
+    String large = repeat("a", 4096);
+
+    byte[] data = metered.toData(large);
+    metered.fromData(data, String.class, String.class);
+
+    verify(payloads).inc(1);
+    verify(uncompressedBytes).inc(json.toData(large).length);
+    verify(compressedBytes).inc(data.length);
+    verify(scope).timer("data-converter-compress-latency");
+    verify(scope).timer("data-converter-decompress-latency");
+    verify(timer, times(2)).record(any(Duration.class));
+  }
+
+  @Test
+  public void testConcurrentUse() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        String value = repeat("payload " + i + " ", 500);
+        results.add(
+            executor.submit(
+                () -> converter.fromData(converter.toData(value), String.class, String.class)));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(repeat("payload " + i + " ", 500), results.get(i).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static String repeat(String s, int times) {
+    char[] chars = new char[s.length() * times];
+    for (int i = 0; i < times; i++) {
+      s.getChars(0, s.length(), chars, i * s.length());
+    }
+    return new String(chars);
+  }
+}
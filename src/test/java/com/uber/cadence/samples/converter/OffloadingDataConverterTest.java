@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.converter.DataConverterException;
+import com.uber.cadence.converter.JsonDataConverter;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit test for {@link OffloadingDataConverter} and {@link FileBlobStore}. */
+public class OffloadingDataConverterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final DataConverter json = JsonDataConverter.getInstance();
+  private Path root;
+  private DataConverter converter;
+
+  @Before
+  public void setUp() throws Exception {
+    root = folder.getRoot().toPath().resolve("blobs");
+    converter = new OffloadingDataConverter(json, new FileBlobStore(root, 1024 * 1024), 1024);
+  }
+
+  @Test
+  public void testLargePayloadIsOffloaded() {
+    String large = repeat('a', 100_000);
+
+    byte[] reference = converter.toData(large, 3);
+
+    assertEquals(OffloadingDataConverter.MARKER, reference[0]);
+    assertEquals(65, reference.length);
+    assertArrayEquals(
+        new Object[] {large, 3}, converter.fromDataArray(reference, String.class, int.class));
+  }
+
+  @Test
+  public void testSmallPayloadStaysInHistory() throws Exception {
+    assertArrayEquals(json.toData("Hello"), converter.toData("Hello"));
+    assertEquals(0, countBlobs());
+  }
+
+  @Test
+  public void testIdenticalPayloadsAreStoredOnce() throws Exception {
+    String large = repeat('b', 10_000);
+
+    byte[] first = converter.toData(large);
+    byte[] second = converter.toData(large);
+    converter.toData(repeat('c', 10_000));
+
+    assertArrayEquals(first, second);
+    assertEquals(2, countBlobs());
+  }
+
+  @Test
+  public void testReadsAreCached() throws Exception {
+    FileBlobStore store = new FileBlobStore(root, 1024 * 1024);
+    String key = store.put(new byte[] {1, 2, 3});
+    assertArrayEquals(new byte[] {1, 2, 3}, store.get(key));
+
+    deleteBlobs();
+
+    assertArrayEquals(new byte[] {1, 2, 3}, store.get(key));
+    try {
+      new FileBlobStore(root, 1024 * 1024).get(key);
+      fail("unreachable");
+    } catch (FileNotFoundException e) {
+      assertTrue(e.getMessage().contains(key));
+    }
+  }
+
+  @Test
+  public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+    FileBlobStore store = new FileBlobStore(root, 10);
+    String first = store.put(new byte[6]);
+    String second = store.put(new byte[] {1, 1, 1, 1, 1, 1});
+    store.get(first);
+    // Both blobs do not fit at the same time, reading the second evicts the first.
+    store.get(second);
+
+    deleteBlobs();
+
+    assertArrayEquals(new byte[] {1, 1, 1, 1, 1, 1}, store.get(second));
+    try {
+      store.get(first);
+      fail("unreachable");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMissingBlob() throws Exception {
+    byte[] reference = converter.toData(repeat('d', 10_000));
+    deleteBlobs();
+    DataConverter uncached =
+        new OffloadingDataConverter(json, new FileBlobStore(root, 1024 * 1024), 1024);
+
+    try {
+      uncached.fromData(reference, String.class, String.class);
+      fail("unreachable");
+    } catch (DataConverterException e) {
+      assertTrue(e.getCause() instanceof FileNotFoundException);
+    }
+  }
+
+  private long countBlobs() throws Exception {
+    if (!Files.exists(root)) {
+      return 0;
+    }
+    try (Stream<Path> files = Files.walk(root)) {
+      return files.filter(Files::isRegularFile).count();
+    }
+  }
+
+  private void deleteBlobs() throws Exception {
+    try (Stream<Path> files = Files.walk(root)) {
+      for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static String repeat(char c, int times) {
+    char[] chars = new char[times];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
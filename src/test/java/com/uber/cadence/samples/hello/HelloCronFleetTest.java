@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.hello;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.activity.Activity;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
+import com.uber.cadence.worker.Worker;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Load test for {@link HelloCronFleet}. Doesn't use an external Cadence service. Runs a fleet of
+ * cron workflows with and without jitter and compares how many first decision tasks are scheduled
+ * in the same minute, which is the burst the task list has to absorb, and how many activities
+ * start in the same second, which is the burst the services called by the activities have to
+ * absorb. Both are read from the test clock, so the counts are the same on every run.
+ */
+public class HelloCronFleetTest {
+
+  @Test
+  public void testJitterFlattensRunStarts() throws Exception {
+    FleetRun plain = runFleet(false);
+    FleetRun jittered = runFleet(true);
+
+    // Without jitter every run of a period gets its first decision task in the same minute. The
+    // spread cron minute puts each workflow on one of the five minutes of the period.
+    int plainDecisionPeak = peak(plain.firstDecisionsPerMinute);
+    int jitteredDecisionPeak = peak(jittered.firstDecisionsPerMinute);
+    assertEquals(HelloCronFleet.FLEET_SIZE, plainDecisionPeak);
+    assertTrue(
+        "jittered decision peak " + jitteredDecisionPeak,
+        jitteredDecisionPeak * 3 <= plainDecisionPeak);
+    assertTrue(
+        "jittered decision minutes " + jittered.firstDecisionsPerMinute,
+        jittered.firstDecisionsPerMinute.size() >= 5);
+
+    // The offset slept within the minute spreads the activities further.
+    int plainPeak = peak(plain.greetingsPerSecond);
+    int jitteredPeak = peak(jittered.greetingsPerSecond);
+    assertTrue("plain peak " + plainPeak, plainPeak >= HelloCronFleet.FLEET_SIZE / 2);
+    assertTrue(
+        "jittered peak " + jitteredPeak + ", plain peak " + plainPeak,
+        jitteredPeak * 5 <= plainPeak);
+    assertTrue(
+        "jittered seconds "
+            + jittered.greetingsPerSecond.size()
+            + ", plain seconds "
+            + plain.greetingsPerSecond.size(),
+        jittered.greetingsPerSecond.size() > 5 * plain.greetingsPerSecond.size());
+  }
+
+  private static class FleetRun {
+    /** Number of greetings by second of the test clock. */
+    final Map<Long, Integer> greetingsPerSecond;
+
+    /** Number of runs by the minute of the test clock their first decision task was scheduled. */
+    final Map<Long, Integer> firstDecisionsPerMinute;
+
+    FleetRun(Map<Long, Integer> greetingsPerSecond, Map<Long, Integer> firstDecisionsPerMinute) {
+      this.greetingsPerSecond = greetingsPerSecond;
+      this.firstDecisionsPerMinute = firstDecisionsPerMinute;
+    }
+  }
+
+  /** Runs the fleet over two schedule periods. */
+  private static FleetRun runFleet(boolean jitter) throws Exception {
+    TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance();
+    Map<Long, Integer> starts = new TreeMap<>();
+    Set<WorkflowExecution> runs = new HashSet<>();
+    Map<Long, Integer> firstDecisions = new TreeMap<>();
+    try {
+      Worker worker = testEnv.newWorker(HelloCronFleet.TASK_LIST);
+      worker.registerWorkflowImplementationTypes(HelloCronFleet.FleetWorkflowImpl.class);
+      worker.registerActivitiesImplementations(
+          new HelloCronFleet.GreetingActivities() {
+            @Override
+            public void greet(String greeting) {
+              synchronized (starts) {
+                starts.merge(testEnv.currentTimeMillis() / 1000, 1, Integer::sum);
+                runs.add(Activity.getWorkflowExecution());
+              }
+            }
+          });
+      testEnv.start();
+
+      HelloCronFleet.startFleet(testEnv.newWorkflowClient(), HelloCronFleet.FLEET_SIZE, jitter);
+      // Use TestWorkflowEnvironment.sleep to execute the test without really sleeping.
+      testEnv.sleep(Duration.ofMinutes(11));
+
+      synchronized (starts) {
+        for (WorkflowExecution run : runs) {
+          for (HistoryEvent event :
+              testEnv
+                  .getWorkflowService()
+                  .GetWorkflowExecutionHistory(
+                      new GetWorkflowExecutionHistoryRequest()
+                          .setDomain(testEnv.getDomain())
+                          .setExecution(run))
+                  .getHistory()
+                  .getEvents()) {
+            if (event.getEventType() == EventType.DecisionTaskScheduled) {
+              firstDecisions.merge(
+                  TimeUnit.NANOSECONDS.toMinutes(event.getTimestamp()), 1, Integer::sum);
+              break;
+            }
+          }
+        }
+        return new FleetRun(new TreeMap<>(starts), firstDecisions);
+      }
+    } finally {
+      testEnv.close();
+    }
+  }
+
+  private static int peak(Map<Long, Integer> counts) {
+    int peak = 0;
+    for (int count : counts.values()) {
+      peak = Math.max(peak, count);
+    }
+    return peak;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.hello;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowStub;
+import com.uber.cadence.samples.hello.HelloProjection.GreetingState;
+import com.uber.cadence.samples.hello.HelloProjection.GreetingWorkflow;
+import com.uber.cadence.samples.projection.InMemoryProjectionStore;
+import com.uber.cadence.samples.projection.Projection;
+import com.uber.cadence.samples.projection.ProjectionPublisher;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
+import com.uber.cadence.worker.Worker;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link HelloProjection}. Doesn't use an external Cadence service. */
+public class HelloProjectionTest {
+
+  private TestWorkflowEnvironment testEnv;
+  private WorkflowClient workflowClient;
+  private InMemoryProjectionStore store;
+
+  @Before
+  public void setUp() {
+    testEnv = TestWorkflowEnvironment.newInstance();
+    store = new InMemoryProjectionStore();
+    Worker worker = testEnv.newWorker(HelloProjection.TASK_LIST);
+    worker.registerWorkflowImplementationTypes(HelloProjection.GreetingWorkflowImpl.class);
+    worker.registerActivitiesImplementations(new ProjectionPublisher.PublishActivitiesImpl(store));
+    testEnv.start();
+    workflowClient = testEnv.newWorkflowClient();
+  }
+
+  @After
+  public void tearDown() {
+    testEnv.close();
+  }
+
+  @Test
+  public void testStateIsReadFromStore() {
+    GreetingWorkflow workflow = workflowClient.newWorkflowStub(GreetingWorkflow.class);
+    WorkflowExecution execution = WorkflowClient.start(workflow::createGreeting, "World");
+    testEnv.sleep(Duration.ofSeconds(1));
+    Projection first = store.get(execution.getWorkflowId());
+    assertEquals(0, first.getState(GreetingState.class).counter);
+    assertEquals("Hello World!", first.getState(GreetingState.class).greeting);
+
+    workflow.increase();
+    workflow.increase();
+    workflow.increase();
+    testEnv.sleep(Duration.ofSeconds(1));
+    Projection second = store.get(execution.getWorkflowId());
+    assertEquals(3, second.getState(GreetingState.class).counter);
+    assertTrue(second.getVersion() > first.getVersion());
+
+    workflow.exit();
+    WorkflowStub.fromTyped(workflow).getResult(Void.class);
+    GreetingState last = store.get(execution.getWorkflowId()).getState(GreetingState.class);
+    assertEquals("Bye World!", last.greeting);
+    assertEquals(3, last.counter);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class InMemoryProjectionStoreTest {
+
+  @Test
+  public void testKeepsLatestVersion() {
+    InMemoryProjectionStore store = new InMemoryProjectionStore();
+    assertNull(store.get("workflow"));
+    assertTrue(store.put("workflow", 2, new byte[] {2}));
+    assertFalse(store.put("workflow", 2, new byte[] {3}));
+    assertFalse(store.put("workflow", 1, new byte[] {1}));
+    assertEquals(2, store.get("workflow").getSnapshot()[0]);
+    assertTrue(store.put("workflow", 5, new byte[] {5}));
+    assertEquals(5, store.get("workflow").getVersion());
+  }
+}
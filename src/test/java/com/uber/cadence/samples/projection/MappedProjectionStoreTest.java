@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.projection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedProjectionStoreTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testKeepsLatestVersion() throws Exception {
+    try (MappedProjectionStore store = new MappedProjectionStore(file())) {
+      assertNull(store.get("workflow"));
+      assertTrue(store.put("workflow", 2, bytes("second")));
+      // Retried and late snapshots do not replace a newer one.
+      assertFalse(store.put("workflow", 2, bytes("retried")));
+      assertFalse(store.put("workflow", 1, bytes("first")));
+      assertTrue(store.put("other", 1, bytes("other")));
+
+      Projection projection = store.get("workflow");
+      assertEquals(2, projection.getVersion());
+      assertArrayEquals(bytes("second"), projection.getSnapshot());
+      assertArrayEquals(bytes("other"), store.get("other").getSnapshot());
+      assertNull(store.get("workflow", 3));
+      assertEquals(2, store.get("workflow", 2).getVersion());
+    }
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    Path file = file();
+    try (MappedProjectionStore store = new MappedProjectionStore(file)) {
+      store.put("workflow", 1, bytes("first"));
+      store.put("workflow", 2, bytes("second"));
+    }
+    try (MappedProjectionStore store = new MappedProjectionStore(file)) {
+      assertArrayEquals(bytes("second"), store.get("workflow").getSnapshot());
+      assertFalse(store.put("workflow", 2, bytes("again")));
+      assertTrue(store.put("workflow", 3, bytes("third")));
+    }
+  }
+
+  @Test
+  public void testReaderSeesAppendedRecordsAndGrowth() throws Exception {
+    Path file = file();
+    try (MappedProjectionStore writer = new MappedProjectionStore(file);
+        MappedProjectionStore reader = new MappedProjectionStore(file)) {
+      writer.put("workflow", 1, bytes("first"));
+      assertEquals(1, reader.get("workflow").getVersion());
+
+      // Outgrow the initial mapping of both instances.
+      byte[] large = new byte[300 * 1024];
+      for (int version = 2; version <= 10; version++) {
+        large[0] = (byte) version;
+        writer.put("workflow", version, large);
+      }
+      Projection projection = reader.get("workflow");
+      assertEquals(10, projection.getVersion());
+      assertEquals(10, projection.getSnapshot()[0]);
+      assertEquals(large.length, projection.getSnapshot().length);
+    }
+  }
+
+  private Path file() {
+    return folder.getRoot().toPath().resolve("projections.log");
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -17,8 +17,22 @@
 
 package com.uber.cadence.samples.replaytests;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.common.WorkflowExecutionHistory;
 import com.uber.cadence.samples.hello.HelloPeriodic;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
 import com.uber.cadence.testing.WorkflowReplayer;
+import com.uber.cadence.worker.Worker;
+import java.time.Duration;
+import java.util.List;
 import org.junit.Test;
 
 public class HelloPeriodicReplayTest {
@@ -56,4 +70,49 @@ public class HelloPeriodicReplayTest {
 //        "replaytests/HelloPeriodic.json",
 //        HelloPeriodic_withChildWorkflows.GreetingWorkflowImpl.class);
 //  }
+
+  // Continue as new case: runs started after the switch to the history size policy record a
+  // version marker and continue as new once the history nears the policy limit. The history of
+  // such a run must replay, and the run must batch more iterations than the old fixed frequency.
+  @Test
+  public void testReplay_continueAsNew_historySizePolicy() throws Exception {
+    TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance();
+    try {
+      Worker worker = testEnv.newWorker("HelloPeriodic");
+      worker.registerWorkflowImplementationTypes(HelloPeriodic.GreetingWorkflowImpl.class);
+      worker.registerActivitiesImplementations(mock(HelloPeriodic.GreetingActivities.class));
+      testEnv.start();
+
+      HelloPeriodic.GreetingWorkflow workflow =
+          testEnv.newWorkflowClient().newWorkflowStub(HelloPeriodic.GreetingWorkflow.class);
+      WorkflowExecution firstRun =
+          WorkflowClient.start(workflow::greetPeriodically, "World", Duration.ofSeconds(1));
+      testEnv.sleep(Duration.ofMinutes(1));
+
+      List<HistoryEvent> events =
+          testEnv
+              .getWorkflowService()
+              .GetWorkflowExecutionHistory(
+                  new GetWorkflowExecutionHistoryRequest()
+                      .setDomain(testEnv.getDomain())
+                      .setExecution(firstRun))
+              .getHistory()
+              .getEvents();
+      assertEquals(
+          EventType.WorkflowExecutionContinuedAsNew,
+          events.get(events.size() - 1).getEventType());
+      assertTrue(events.size() <= 300);
+      long greetings =
+          events
+              .stream()
+              .filter(e -> e.getEventType() == EventType.ActivityTaskScheduled)
+              .count();
+      assertTrue("greetings: " + greetings, greetings > 10);
+
+      WorkflowReplayer.replayWorkflowExecution(
+          new WorkflowExecutionHistory(events), HelloPeriodic.GreetingWorkflowImpl.class);
+    } finally {
+      testEnv.close();
+    }
+  }
 }
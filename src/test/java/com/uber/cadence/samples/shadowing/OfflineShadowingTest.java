@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.shadowing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.cadence.samples.hello.HelloActivity;
+import com.uber.cadence.samples.hello.HelloPeriodic;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit test for {@link OfflineShadowing}. */
+public class OfflineShadowingTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAllHistoriesReplay() throws Exception {
+    ReplayReport report =
+        new ReplayReport(
+            HelloActivity.GreetingWorkflowImpl.class, HelloPeriodic.GreetingWorkflowImpl.class);
+
+    OfflineShadowing.run(replayTests(), 2, report);
+
+    assertEquals(report.getFailures().toString(), 0, report.getFailed());
+    assertEquals(2, report.getPassed());
+  }
+
+  @Test
+  public void testMissingImplementationIsReported() throws Exception {
+    ReplayReport report = new ReplayReport(HelloPeriodic.GreetingWorkflowImpl.class);
+
+    OfflineShadowing.run(replayTests(), 2, report);
+
+    assertEquals(1, report.getPassed());
+    assertEquals(1, report.getFailed());
+    assertTrue(report.getFailures().containsKey("HelloActivity.json"));
+  }
+
+  @Test
+  public void testUnreadableHistoryIsReported() throws Exception {
+    Files.write(
+        folder.newFile("broken.json").toPath(), "[{\"eventId\":".getBytes(StandardCharsets.UTF_8));
+    ReplayReport report = new ReplayReport(HelloActivity.GreetingWorkflowImpl.class);
+
+    OfflineShadowing.run(folder.getRoot().toPath(), 1, report);
+
+    assertEquals(0, report.getPassed());
+    assertTrue(report.getFailures().containsKey("broken.json"));
+  }
+
+  private static Path replayTests() throws Exception {
+    return Paths.get(
+        OfflineShadowingTest.class.getClassLoader().getResource("replaytests").toURI());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.shadowing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.uber.cadence.EntityNotExistsError;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.GetWorkflowExecutionHistoryResponse;
+import com.uber.cadence.History;
+import com.uber.cadence.ListClosedWorkflowExecutionsRequest;
+import com.uber.cadence.ListClosedWorkflowExecutionsResponse;
+import com.uber.cadence.ListOpenWorkflowExecutionsRequest;
+import com.uber.cadence.ListOpenWorkflowExecutionsResponse;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.WorkflowExecutionInfo;
+import com.uber.cadence.samples.hello.HelloActivity;
+import com.uber.cadence.serviceclient.IWorkflowService;
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit test for {@link ParallelShadowing}. */
+public class ParallelShadowingTest {
+
+  private static final Instant FROM = Instant.parse("2024-01-01T00:00:00Z");
+  private static final Instant TO = Instant.parse("2024-01-01T01:00:00Z");
+
+  private IWorkflowService service;
+  private ReplayReport report;
+
+  @Before
+  public void setUp() throws Exception {
+    service = mock(IWorkflowService.class);
+    // The first workflow closed after the open workflows were listed, so both scans return it.
+    when(service.ListOpenWorkflowExecutions(any(ListOpenWorkflowExecutionsRequest.class)))
+        .thenReturn(
+            new ListOpenWorkflowExecutionsResponse().setExecutions(Arrays.asList(info("first"))));
+    when(service.ListClosedWorkflowExecutions(any(ListClosedWorkflowExecutionsRequest.class)))
+        .thenReturn(
+            new ListClosedWorkflowExecutionsResponse()
+                .setExecutions(Arrays.asList(info("first"), info("second"))));
+    report = new ReplayReport(HelloActivity.GreetingWorkflowImpl.class);
+  }
+
+  @Test
+  public void testWorkflowListedByBothScansIsReplayedOnce() throws Exception {
+    when(service.GetWorkflowExecutionHistory(any(GetWorkflowExecutionHistoryRequest.class)))
+        .thenReturn(
+            new GetWorkflowExecutionHistoryResponse()
+                .setHistory(
+                    new History().setEvents(ReplayReportTest.history("HelloActivity.json"))));
+
+    new ParallelShadowing(service, "GreetingWorkflow::getGreeting", 0, 1, 2, report)
+        .run(FROM, TO, 1);
+
+    assertEquals(report.getFailures().toString(), 0, report.getFailed());
+    assertEquals(2, report.getPassed());
+    verify(service, times(2))
+        .GetWorkflowExecutionHistory(any(GetWorkflowExecutionHistoryRequest.class));
+  }
+
+  @Test
+  public void testFailedFetchIsReported() throws Exception {
+    when(service.GetWorkflowExecutionHistory(any(GetWorkflowExecutionHistoryRequest.class)))
+        .thenThrow(new EntityNotExistsError("history is gone"));
+
+    new ParallelShadowing(service, "GreetingWorkflow::getGreeting", 0, 1, 2, report)
+        .run(FROM, TO, 1);
+
+    assertEquals(0, report.getPassed());
+    assertEquals(2, report.getFailed());
+    assertTrue(report.getFailures().containsKey("first/first-run"));
+  }
+
+  private static WorkflowExecutionInfo info(String workflowId) {
+    return new WorkflowExecutionInfo()
+        .setExecution(
+            new WorkflowExecution().setWorkflowId(workflowId).setRunId(workflowId + "-run"));
+  }
+}
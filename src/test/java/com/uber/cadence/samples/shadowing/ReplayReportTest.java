@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.shadowing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.samples.common.HistoryFiles;
+import com.uber.cadence.samples.hello.HelloActivity;
+import com.uber.cadence.samples.hello.HelloPeriodic;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Unit test for {@link ReplayReport}. */
+public class ReplayReportTest {
+
+  @Test
+  public void testAggregatesOutcomes() throws Exception {
+    ReplayReport report = new ReplayReport(HelloActivity.GreetingWorkflowImpl.class);
+    List<HistoryEvent> activity = history("HelloActivity.json");
+
+    assertTrue(report.replay("first", activity));
+    assertTrue(report.replay("second", activity));
+    // No implementation of the workflow type is registered.
+    assertFalse(report.replay("periodic", history("HelloPeriodic.json")));
+    report.recordFailure("unreadable", new IllegalStateException("truncated"));
+
+    assertEquals(2, report.getPassed());
+    assertEquals(2, report.getFailed());
+    assertEquals("[periodic, unreadable]", report.getFailures().keySet().toString());
+    assertEquals(
+        "java.lang.IllegalStateException: truncated", report.getFailures().get("unreadable"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    report.print(new PrintStream(out, true, "UTF-8"));
+    String printed = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(printed, printed.contains("FAILED unreadable: "));
+    assertTrue(printed, printed.contains(": 2 passed, 2 failed (50.00%)"));
+    assertTrue(printed, printed.contains("Replay latency: count=2 "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresAWorkflowImplementation() {
+    new ReplayReport();
+  }
+
+  @Test
+  public void testLoadClasses() throws Exception {
+    List<String> names = new ArrayList<>();
+    names.add(HelloActivity.GreetingWorkflowImpl.class.getName());
+    names.add(HelloPeriodic.GreetingWorkflowImpl.class.getName());
+
+    Class<?>[] classes = ReplayReport.loadClasses(names);
+
+    assertEquals(HelloActivity.GreetingWorkflowImpl.class, classes[0]);
+    assertEquals(HelloPeriodic.GreetingWorkflowImpl.class, classes[1]);
+  }
+
+  static List<HistoryEvent> history(String resource) throws Exception {
+    List<HistoryEvent> events = new ArrayList<>();
+    HistoryFiles.read(
+        Paths.get(
+            ReplayReportTest.class.getClassLoader().getResource("replaytests/" + resource).toURI()),
+        events::add);
+    return events;
+  }
+}
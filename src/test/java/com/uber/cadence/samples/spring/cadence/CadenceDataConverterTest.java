@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.cadence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.gson.Gson;
+import com.uber.cadence.converter.DataConverter;
+import com.uber.cadence.samples.spring.models.SampleMessage;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import org.junit.Test;
+
+/** Unit test for {@link CadenceDataConverter}. */
+public class CadenceDataConverterTest {
+
+  private final DataConverter converter = CadenceDataConverter.cadenceJsonDataConverter();
+
+  @Test
+  public void testSingleton() {
+    assertSame(converter, CadenceDataConverter.cadenceJsonDataConverter());
+  }
+
+  @Test
+  public void testZonedDateTimeRoundTrip() {
+    ZonedDateTime value = ZonedDateTime.parse("2021-06-01T10:15:30+02:00[Europe/Paris]");
+    byte[] data = converter.toData(value);
+    assertEquals(value, converter.fromData(data, ZonedDateTime.class, ZonedDateTime.class));
+  }
+
+  @Test
+  public void testSampleMessageRoundTrip() {
+    byte[] data = converter.toData(new SampleMessage("Uber"));
+    SampleMessage result = converter.fromData(data, SampleMessage.class, SampleMessage.class);
+    assertEquals("Uber", result.GetMessage());
+  }
+
+  @Test
+  public void testSampleMessageReadsReflectiveLayout() {
+    // Payloads written before the streaming adapter was registered must still decode.
+    byte[] data = new Gson().toJson(new SampleMessage("Uber")).getBytes(StandardCharsets.UTF_8);
+    SampleMessage result = converter.fromData(data, SampleMessage.class, SampleMessage.class);
+    assertEquals("Uber", result.GetMessage());
+  }
+
+  @Test
+  public void testMultipleArguments() {
+    ZonedDateTime time = ZonedDateTime.parse("2021-06-01T10:15:30Z");
+    byte[] data = converter.toData(new SampleMessage(null), time);
+    Object[] result = converter.fromDataArray(data, SampleMessage.class, ZonedDateTime.class);
+    assertNull(((SampleMessage) result[0]).GetMessage());
+    assertEquals(time, result[1]);
+  }
+}
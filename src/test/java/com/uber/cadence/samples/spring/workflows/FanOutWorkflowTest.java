@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.workflows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.samples.spring.activities.impl.FanOutActivitiesImpl;
+import com.uber.cadence.samples.spring.common.Constant;
+import com.uber.cadence.samples.spring.models.FanOutRequest;
+import com.uber.cadence.samples.spring.workflows.impl.FanOutWorkflowImpl;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
+import com.uber.cadence.worker.Worker;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+/** Unit test for {@link FanOutWorkflowImpl}. Doesn't use an external Cadence service. */
+public class FanOutWorkflowTest {
+
+  /** Prints workflow histories under test in case of a test failure. */
+  @Rule
+  public TestWatcher watchman =
+      new TestWatcher() {
+        @Override
+        protected void failed(Throwable e, Description description) {
+          if (testEnv != null) {
+            System.err.println(testEnv.getDiagnostics());
+            testEnv.close();
+          }
+        }
+      };
+
+  private final AtomicInteger runningLeaves = new AtomicInteger();
+  private final AtomicInteger maxRunningLeaves = new AtomicInteger();
+  private TestWorkflowEnvironment testEnv;
+  private WorkflowClient workflowClient;
+
+  @Before
+  public void setUp() {
+    testEnv = TestWorkflowEnvironment.newInstance();
+    Worker worker = testEnv.newWorker(Constant.TASK_LIST);
+    worker.registerWorkflowImplementationTypes(FanOutWorkflowImpl.class);
+    worker.registerActivitiesImplementations(
+        new FanOutActivitiesImpl() {
+          @Override
+          public long processRange(long start, long end) {
+            maxRunningLeaves.accumulateAndGet(runningLeaves.incrementAndGet(), Math::max);
+            try {
+              // Long enough for leaves started together to overlap.
+              Thread.sleep(20);
+              return super.processRange(start, end);
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            } finally {
+              runningLeaves.decrementAndGet();
+            }
+          }
+        });
+    testEnv.start();
+
+    workflowClient = testEnv.newWorkflowClient();
+  }
+
+  @After
+  public void tearDown() {
+    testEnv.close();
+  }
+
+  @Test
+  public void testPartition() {
+    List<FanOutRequest> partitions = new FanOutRequest(0, 1000, 4, 2, 10).partition();
+    assertEquals(4, partitions.size());
+    assertEquals(0, partitions.get(0).getStart());
+    assertEquals(250, partitions.get(0).getEnd());
+    assertEquals(1000, partitions.get(3).getEnd());
+    // Two of the four parts run at once and share the parent's budget of 2.
+    assertEquals(1, partitions.get(0).getMaxConcurrentChildren());
+    assertEquals(
+        2, new FanOutRequest(0, 1000, 4, 8, 10).partition().get(0).getMaxConcurrentChildren());
+
+    // Does not split into more parts than the leaf size requires.
+    assertEquals(3, new FanOutRequest(0, 25, 100, 2, 10).partition().size());
+  }
+
+  @Test
+  public void testLeafOnly() {
+    FanOutWorkflow workflow = workflowClient.newWorkflowStub(FanOutWorkflow.class);
+    assertEquals(7, workflow.process(new FanOutRequest(0, 7, 4, 2, 10)));
+  }
+
+  @Test
+  public void testConcurrencyIsBoundedAcrossTheTree() {
+    FanOutWorkflow workflow = workflowClient.newWorkflowStub(FanOutWorkflow.class);
+    // Every workflow may run 3 children at once, the leaves of the whole tree share that limit.
+    assertEquals(203, workflow.process(new FanOutRequest(0, 203, 4, 3, 10)));
+    assertTrue("max running leaves " + maxRunningLeaves, maxRunningLeaves.get() <= 3);
+  }
+
+  @Test
+  public void testTreeOfChildren() {
+    FanOutWorkflow workflow = workflowClient.newWorkflowStub(FanOutWorkflow.class);
+    // 203 items with 4 children per workflow and 10 items per leaf is a tree three levels deep.
+    assertEquals(203, workflow.process(new FanOutRequest(0, 203, 4, 2, 10)));
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.uber.cadence.samples.spring.workflows;
+
+import static org.junit.Assert.assertEquals;
+
+import com.uber.cadence.EventType;
+import com.uber.cadence.GetWorkflowExecutionHistoryRequest;
+import com.uber.cadence.HistoryEvent;
+import com.uber.cadence.WorkflowExecution;
+import com.uber.cadence.client.WorkflowClient;
+import com.uber.cadence.client.WorkflowOptions;
+import com.uber.cadence.samples.spring.common.Constant;
+import com.uber.cadence.samples.spring.models.SampleMessage;
+import com.uber.cadence.samples.spring.workflows.impl.SignalWorkflowImpl;
+import com.uber.cadence.testing.TestWorkflowEnvironment;
+import com.uber.cadence.worker.Worker;
+import java.time.Duration;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+/** Unit test for {@link SignalWorkflowImpl}. Doesn't use an external Cadence service. */
+public class SignalWorkflowTest {
+
+  private static final String WORKFLOW_ID = "SignalWorkflowTest";
+
+  /** Prints workflow histories under test in case of a test failure. */
+  @Rule
+  public TestWatcher watchman =
+      new TestWatcher() {
+        @Override
+        protected void failed(Throwable e, Description description) {
+          if (testEnv != null) {
+            System.err.println(testEnv.getDiagnostics());
+            testEnv.close();
+          }
+        }
+      };
+
+  private TestWorkflowEnvironment testEnv;
+  private WorkflowClient workflowClient;
+  private SignalWorkflow workflow;
+
+  @Before
+  public void setUp() {
+    testEnv = TestWorkflowEnvironment.newInstance();
+    Worker worker = testEnv.newWorker(Constant.TASK_LIST);
+    worker.registerWorkflowImplementationTypes(SignalWorkflowImpl.class);
+    workflowClient = testEnv.newWorkflowClient();
+    workflow =
+        workflowClient.newWorkflowStub(
+            SignalWorkflow.class,
+            new WorkflowOptions.Builder()
+                .setWorkflowId(WORKFLOW_ID)
+                .setExecutionStartToCloseTimeout(Duration.ofHours(1))
+                .setTaskList(Constant.TASK_LIST)
+                .build());
+  }
+
+  @After
+  public void tearDown() {
+    testEnv.close();
+  }
+
+  @Test
+  public void testBurstIsDrainedInOneDecision() throws Exception {
+    // The worker is not polling yet, so all signals are waiting for the first decision task.
+    WorkflowExecution run = WorkflowClient.start(workflow::getGreeting, new SampleMessage("Uber"));
+    for (int i = 0; i < 10; i++) {
+      workflow.waitForGreeting("Hello " + i);
+    }
+    testEnv.start();
+
+    assertEquals(10, awaitGreetingCount(10));
+    List<HistoryEvent> events = history(run);
+    assertEquals(1, count(events, EventType.DecisionTaskCompleted));
+    assertEquals(10, count(events, EventType.WorkflowExecutionSignaled));
+  }
+
+  @Test
+  public void testNoSignalIsLostAcrossContinueAsNew() throws Exception {
+    WorkflowExecution firstRun =
+        WorkflowClient.start(workflow::getGreeting, new SampleMessage("Uber"));
+    int burst = SignalWorkflowImpl.CONTINUE_AS_NEW_HISTORY_LENGTH;
+    for (int i = 0; i < burst; i++) {
+      workflow.waitForGreeting("Hello " + i);
+    }
+    testEnv.start();
+
+    // The whole burst is handled by the decision that continues the run as new.
+    List<HistoryEvent> events = awaitClosed(firstRun);
+    assertEquals(burst, count(events, EventType.WorkflowExecutionSignaled));
+    assertEquals(1, count(events, EventType.DecisionTaskCompleted));
+    assertEquals(
+        EventType.WorkflowExecutionContinuedAsNew, events.get(events.size() - 1).getEventType());
+
+    // Signals sent to the workflow ID after the continuation reach the new run.
+    SignalWorkflow current = workflowClient.newWorkflowStub(SignalWorkflow.class, WORKFLOW_ID);
+    for (int i = 0; i < 3; i++) {
+      current.waitForGreeting("Hello again " + i);
+    }
+    assertEquals(3, awaitGreetingCount(3));
+    WorkflowExecution secondRun =
+        new WorkflowExecution()
+            .setWorkflowId(WORKFLOW_ID)
+            .setRunId(
+                events
+                    .get(events.size() - 1)
+                    .getWorkflowExecutionContinuedAsNewEventAttributes()
+                    .getNewExecutionRunId());
+    assertEquals(3, count(history(secondRun), EventType.WorkflowExecutionSignaled));
+  }
+
+  /** Queries the current run until it processed the expected number of greetings. */
+  private int awaitGreetingCount(int expected) throws InterruptedException {
+    SignalWorkflow current = workflowClient.newWorkflowStub(SignalWorkflow.class, WORKFLOW_ID);
+    long deadline = System.currentTimeMillis() + 10_000;
+    int count = current.getGreetingCount();
+    while (count < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      count = current.getGreetingCount();
+    }
+    return count;
+  }
+
+  private List<HistoryEvent> awaitClosed(WorkflowExecution run) throws Exception {
+    long deadline = System.currentTimeMillis() + 10_000;
+    List<HistoryEvent> events = history(run);
+    while (!isClosed(events) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      events = history(run);
+    }
+    return events;
+  }
+
+  private List<HistoryEvent> history(WorkflowExecution run) throws Exception {
+    return testEnv
+        .getWorkflowService()
+        .GetWorkflowExecutionHistory(
+            new GetWorkflowExecutionHistoryRequest()
+                .setDomain(testEnv.getDomain())
+                .setExecution(run)
+                .setMaximumPageSize(Integer.MAX_VALUE))
+        .getHistory()
+        .getEvents();
+  }
+
+  private static boolean isClosed(List<HistoryEvent> events) {
+    return events.get(events.size() - 1).getEventType()
+        == EventType.WorkflowExecutionContinuedAsNew;
+  }
+
+  private static long count(List<HistoryEvent> events, EventType type) {
+    return events.stream().filter(e -> e.getEventType() == type).count();
+  }
+}